@@ -22,16 +22,18 @@ package net.william278.husksync;
 import com.google.gson.Gson;
 import net.kyori.adventure.platform.bukkit.BukkitAudiences;
 import net.william278.desertwell.util.Version;
+import net.william278.husksync.adapter.BinaryAdapter;
 import net.william278.husksync.adapter.DataAdapter;
-import net.william278.husksync.adapter.GsonAdapter;
-import net.william278.husksync.adapter.SnappyGsonAdapter;
 import net.william278.husksync.api.BukkitHuskSyncAPI;
 import net.william278.husksync.command.BukkitCommand;
 import net.william278.husksync.config.Locales;
 import net.william278.husksync.config.Settings;
 import net.william278.husksync.data.BukkitSerializer;
 import net.william278.husksync.data.Data;
+import net.william278.husksync.data.DirtyDataTracker;
+import net.william278.husksync.data.EncodedItemCache;
 import net.william278.husksync.data.Identifier;
+import net.william278.husksync.data.IdentifierRegistry;
 import net.william278.husksync.data.Serializer;
 import net.william278.husksync.database.Database;
 import net.william278.husksync.database.MySqlDatabase;
@@ -39,6 +41,7 @@ import net.william278.husksync.event.BukkitEventDispatcher;
 import net.william278.husksync.hook.PlanHook;
 import net.william278.husksync.listener.BukkitEventListener;
 import net.william278.husksync.listener.EventListener;
+import net.william278.husksync.listener.SnapshotCapturePipeline;
 import net.william278.husksync.migrator.LegacyMigrator;
 import net.william278.husksync.migrator.Migrator;
 import net.william278.husksync.migrator.MpdbMigrator;
@@ -50,6 +53,8 @@ import net.william278.husksync.util.BukkitLegacyConverter;
 import net.william278.husksync.util.BukkitMapPersister;
 import net.william278.husksync.util.BukkitTask;
 import net.william278.husksync.util.LegacyConverter;
+import net.william278.husksync.util.PerformanceMetrics;
+import net.william278.mapdataapi.MapData;
 import org.bstats.bukkit.Metrics;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
@@ -75,18 +80,25 @@ public class BukkitHuskSync extends JavaPlugin implements HuskSync, BukkitTask.S
      */
     private static final int METRICS_ID = 13140;
     private static final String PLATFORM_TYPE_ID = "bukkit";
+    // The number of deserialized locked map canvases to keep in memory
+    private static final int MAP_CANVAS_CACHE_SIZE = 64;
 
     private Database database;
     private RedisManager redisManager;
     private EventListener eventListener;
     private DataAdapter dataAdapter;
+    private PerformanceMetrics performanceMetrics;
+    private DirtyDataTracker dirtyDataTracker;
     private Map<Identifier, Serializer<? extends Data>> serializers;
+    private IdentifierRegistry identifierRegistry;
     private Map<UUID, Map<Identifier, Data>> playerCustomDataStore;
+    private Map<UUID, EncodedItemCache> encodedItemCaches;
     private Settings settings;
     private Locales locales;
     private List<Migrator> availableMigrators;
     private LegacyConverter legacyConverter;
     private Map<Integer, MapView> mapViews;
+    private Map<String, MapData> mapCanvases;
     private BukkitAudiences audiences;
     private MorePaperLib paperLib;
     private AsynchronousScheduler asyncScheduler;
@@ -101,19 +113,30 @@ public class BukkitHuskSync extends JavaPlugin implements HuskSync, BukkitTask.S
         this.paperLib = new MorePaperLib(this);
         this.availableMigrators = new ArrayList<>();
         this.serializers = new LinkedHashMap<>();
+        this.identifierRegistry = new IdentifierRegistry();
         this.playerCustomDataStore = new ConcurrentHashMap<>();
+        this.encodedItemCaches = new ConcurrentHashMap<>();
         this.mapViews = new ConcurrentHashMap<>();
+        this.mapCanvases = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MapData> eldest) {
+                return size() > MAP_CANVAS_CACHE_SIZE;
+            }
+        });
+        this.performanceMetrics = new PerformanceMetrics();
+        this.dirtyDataTracker = new DirtyDataTracker(this);
+        this.performanceMetrics.registerGauge("item_cache.hit_percent", () -> {
+            final long hits = performanceMetrics.getCount("item_cache.hits");
+            final long total = hits + performanceMetrics.getCount("item_cache.misses");
+            return total == 0 ? 0 : hits * 100 / total;
+        });
 
         // Load settings and locales
         initialize("plugin config & locale files", (plugin) -> this.loadConfigs());
 
         // Prepare data adapter
         initialize("data adapter", (plugin) -> {
-            if (settings.doCompressData()) {
-                dataAdapter = new SnappyGsonAdapter(this);
-            } else {
-                dataAdapter = new GsonAdapter(this);
-            }
+            dataAdapter = new BinaryAdapter(this, settings.doCompressData());
         });
 
         // Prepare serializers
@@ -152,6 +175,9 @@ public class BukkitHuskSync extends JavaPlugin implements HuskSync, BukkitTask.S
             this.redisManager.initialize();
         });
 
+        // Save user data that could not be saved when the server last shut down
+        initialize("unsaved data recovery", (plugin) -> this.database.saveUnsavedSnapshots());
+
         // Register events
         initialize("events", (plugin) -> this.eventListener = new BukkitEventListener(this));
 
@@ -224,18 +250,41 @@ public class BukkitHuskSync extends JavaPlugin implements HuskSync, BukkitTask.S
         return dataAdapter;
     }
 
+    @NotNull
+    @Override
+    public PerformanceMetrics getPerformanceMetrics() {
+        return performanceMetrics;
+    }
+
+    @NotNull
+    @Override
+    public DirtyDataTracker getDirtyDataTracker() {
+        return dirtyDataTracker;
+    }
+
     @NotNull
     @Override
     public Map<Identifier, Serializer<? extends Data>> getSerializers() {
         return serializers;
     }
 
+    @NotNull
+    @Override
+    public IdentifierRegistry getIdentifierRegistry() {
+        return identifierRegistry;
+    }
+
     @NotNull
     @Override
     public List<Migrator> getAvailableMigrators() {
         return availableMigrators;
     }
 
+    @NotNull
+    public Map<UUID, EncodedItemCache> getEncodedItemCaches() {
+        return encodedItemCaches;
+    }
+
     @NotNull
     @Override
     public Map<Identifier, Data> getPlayerCustomDataStore(@NotNull OnlineUser user) {
@@ -331,6 +380,12 @@ public class BukkitHuskSync extends JavaPlugin implements HuskSync, BukkitTask.S
         return this.eventListener.getLockedPlayers();
     }
 
+    @NotNull
+    @Override
+    public SnapshotCapturePipeline getCapturePipeline() {
+        return this.eventListener.getCapturePipeline();
+    }
+
     @NotNull
     @Override
     public Gson getGson() {
@@ -342,6 +397,12 @@ public class BukkitHuskSync extends JavaPlugin implements HuskSync, BukkitTask.S
         return mapViews;
     }
 
+    @NotNull
+    @Override
+    public Map<String, MapData> getMapCanvases() {
+        return mapCanvases;
+    }
+
     @NotNull
     public GracefulScheduling getScheduler() {
         return paperLib.scheduling();
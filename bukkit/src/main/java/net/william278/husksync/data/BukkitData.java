@@ -21,6 +21,7 @@ package net.william278.husksync.data;
 
 import com.google.gson.annotations.SerializedName;
 import de.tr7zw.changeme.nbtapi.NBTCompound;
+import de.tr7zw.changeme.nbtapi.NBTContainer;
 import de.tr7zw.changeme.nbtapi.NBTPersistentDataContainer;
 import net.william278.desertwell.util.ThrowingConsumer;
 import net.william278.husksync.BukkitHuskSync;
@@ -68,6 +69,8 @@ public abstract class BukkitData implements Data {
     public static abstract class Items extends BukkitData implements Data.Items {
 
         private final ItemStack[] contents;
+        @Nullable
+        private EncodedItemCache encodedItemCache;
 
         private Items(@NotNull ItemStack[] contents) {
             this.contents = Arrays.stream(contents)
@@ -121,6 +124,16 @@ public abstract class BukkitData implements Data {
             return contents;
         }
 
+        // Set the cache of the item owner's encoded items, used when serializing these items
+        void setEncodedItemCache(@Nullable EncodedItemCache encodedItemCache) {
+            this.encodedItemCache = encodedItemCache;
+        }
+
+        @NotNull
+        Optional<EncodedItemCache> getEncodedItemCache() {
+            return Optional.ofNullable(encodedItemCache);
+        }
+
         @Override
         public boolean equals(Object obj) {
             if (obj instanceof BukkitData.Items items) {
@@ -343,55 +356,75 @@ public abstract class BukkitData implements Data {
 
         @Override
         public void apply(@NotNull BukkitUser user, @NotNull BukkitHuskSync plugin) throws IllegalStateException {
-            plugin.runAsync(() -> forEachAdvancement(advancement -> {
+            plugin.runAsync(() -> {
+                // Index the saved advancements by key, then diff them against the player's current progress
                 final Player player = user.getPlayer();
-                final AdvancementProgress progress = player.getAdvancementProgress(advancement);
-                final Optional<Advancement> record = completed.stream()
-                        .filter(r -> r.getKey().equals(advancement.getKey().toString()))
-                        .findFirst();
-                if (record.isEmpty()) {
-                    this.setAdvancement(plugin, advancement, player, List.of(), progress.getAwardedCriteria());
-                    return;
-                }
-
-                final Map<String, Date> criteria = record.get().getCompletedCriteria();
-                this.setAdvancement(
-                        plugin, advancement, player,
-                        criteria.keySet().stream().filter(key -> !progress.getAwardedCriteria().contains(key)).toList(),
-                        progress.getAwardedCriteria().stream().filter(key -> !criteria.containsKey(key)).toList()
-                );
-            }));
-        }
-
-        private void setAdvancement(@NotNull HuskSync plugin,
-                                    @NotNull org.bukkit.advancement.Advancement advancement, @NotNull Player player,
-                                    @NotNull Collection<String> toAward, @NotNull Collection<String> toRevoke) {
-            plugin.runSync(() -> {
-                // Track player exp level & progress
-                final int expLevel = player.getLevel();
-                final float expProgress = player.getExp();
-                boolean gameRuleUpdated = false;
-                if (Boolean.TRUE.equals(player.getWorld().getGameRuleValue(GameRule.ANNOUNCE_ADVANCEMENTS))) {
-                    player.getWorld().setGameRule(GameRule.ANNOUNCE_ADVANCEMENTS, false);
-                    gameRuleUpdated = true;
-                }
+                final Map<String, Advancement> saved = new HashMap<>(completed.size());
+                completed.forEach(advancement -> saved.put(advancement.getKey(), advancement));
+
+                final List<AdvancementChange> changes = new ArrayList<>();
+                forEachAdvancement(advancement -> {
+                    final AdvancementProgress progress = player.getAdvancementProgress(advancement);
+                    final Collection<String> awarded = progress.getAwardedCriteria();
+                    final Advancement record = saved.get(advancement.getKey().toString());
+                    if (record == null) {
+                        if (!awarded.isEmpty()) {
+                            changes.add(new AdvancementChange(advancement, List.of(), List.copyOf(awarded)));
+                        }
+                        return;
+                    }
 
-                // Award and revoke advancement criteria
-                final AdvancementProgress progress = player.getAdvancementProgress(advancement);
-                toAward.forEach(progress::awardCriteria);
-                toRevoke.forEach(progress::revokeCriteria);
+                    final Map<String, Date> criteria = record.getCompletedCriteria();
+                    final List<String> toAward = criteria.keySet().stream()
+                            .filter(key -> !awarded.contains(key)).toList();
+                    final List<String> toRevoke = awarded.stream()
+                            .filter(key -> !criteria.containsKey(key)).toList();
+                    if (!toAward.isEmpty() || !toRevoke.isEmpty()) {
+                        changes.add(new AdvancementChange(advancement, toAward, toRevoke));
+                    }
+                });
 
-                // Set player experience and level (prevent advancement awards applying twice), reset game rule
-                if (!toAward.isEmpty() && player.getLevel() != expLevel || player.getExp() != expProgress) {
-                    player.setLevel(expLevel);
-                    player.setExp(expProgress);
-                }
-                if (gameRuleUpdated) {
-                    player.getWorld().setGameRule(GameRule.ANNOUNCE_ADVANCEMENTS, true);
+                if (!changes.isEmpty()) {
+                    plugin.runSync(() -> this.setAdvancements(player, changes));
                 }
             });
         }
 
+        // Apply a batch of advancement criteria changes in one pass, without announcing them or awarding exp
+        private void setAdvancements(@NotNull Player player, @NotNull List<AdvancementChange> changes) {
+            // Track player exp level & progress
+            final int expLevel = player.getLevel();
+            final float expProgress = player.getExp();
+            boolean gameRuleUpdated = false;
+            if (Boolean.TRUE.equals(player.getWorld().getGameRuleValue(GameRule.ANNOUNCE_ADVANCEMENTS))) {
+                player.getWorld().setGameRule(GameRule.ANNOUNCE_ADVANCEMENTS, false);
+                gameRuleUpdated = true;
+            }
+
+            // Award and revoke advancement criteria
+            boolean awarded = false;
+            for (AdvancementChange change : changes) {
+                final AdvancementProgress progress = player.getAdvancementProgress(change.advancement());
+                change.toAward().forEach(progress::awardCriteria);
+                change.toRevoke().forEach(progress::revokeCriteria);
+                awarded |= !change.toAward().isEmpty();
+            }
+
+            // Set player experience and level (prevent advancement awards applying twice), reset game rule
+            if (awarded && (player.getLevel() != expLevel || player.getExp() != expProgress)) {
+                player.setLevel(expLevel);
+                player.setExp(expProgress);
+            }
+            if (gameRuleUpdated) {
+                player.getWorld().setGameRule(GameRule.ANNOUNCE_ADVANCEMENTS, true);
+            }
+        }
+
+        // The criteria to award and revoke for a single advancement
+        private record AdvancementChange(@NotNull org.bukkit.advancement.Advancement advancement,
+                                         @NotNull List<String> toAward, @NotNull List<String> toRevoke) {
+        }
+
         // Performs a consuming function for every advancement registered on the server
         private static void forEachAdvancement(@NotNull ThrowingConsumer<org.bukkit.advancement.Advancement> consumer) {
             Bukkit.getServer().advancementIterator().forEachRemaining(consumer);
@@ -557,48 +590,59 @@ public abstract class BukkitData implements Data {
         @NotNull
         public static BukkitData.Statistics adapt(@NotNull Player player) {
             return new BukkitData.Statistics(
-                    // Generic (untyped) stats
-                    Arrays.stream(Statistic.values())
-                            .filter(stat -> stat.getType() == Statistic.Type.UNTYPED)
-                            .filter(stat -> player.getStatistic(stat) != 0)
-                            .map(stat -> Map.entry(stat, player.getStatistic(stat)))
-                            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)),
-
-                    // Block stats
-                    Arrays.stream(Statistic.values())
-                            .filter(stat -> stat.getType() == Statistic.Type.BLOCK)
-                            .map(stat -> Map.entry(stat, Arrays.stream(Material.values())
-                                    .filter(Material::isBlock)
-                                    .filter(material -> player.getStatistic(stat, material) != 0)
-                                    .map(material -> Map.entry(material, player.getStatistic(stat, material)))
-                                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))))
-                            .filter(entry -> !entry.getValue().isEmpty())
-                            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)),
-
-                    // Item stats
-                    Arrays.stream(Statistic.values())
-                            .filter(stat -> stat.getType() == Statistic.Type.ITEM)
-                            .map(stat -> Map.entry(stat, Arrays.stream(Material.values())
-                                    .filter(Material::isItem)
-                                    .filter(material -> player.getStatistic(stat, material) != 0)
-                                    .map(material -> Map.entry(material, player.getStatistic(stat, material)))
-                                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))))
-                            .filter(entry -> !entry.getValue().isEmpty())
-                            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)),
-
-                    // Entity stats
-                    Arrays.stream(Statistic.values())
-                            .filter(stat -> stat.getType() == Statistic.Type.ENTITY)
-                            .map(stat -> Map.entry(stat, Arrays.stream(EntityType.values())
-                                    .filter(EntityType::isAlive)
-                                    .filter(entityType -> player.getStatistic(stat, entityType) != 0)
-                                    .map(entityType -> Map.entry(entityType, player.getStatistic(stat, entityType)))
-                                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))))
-                            .filter(entry -> !entry.getValue().isEmpty())
-                            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
+                    adaptUntyped(player),
+                    adaptTyped(player, StatisticIndex.BLOCK_STATISTICS, StatisticIndex.BLOCKS, Material.class),
+                    adaptTyped(player, StatisticIndex.ITEM_STATISTICS, StatisticIndex.ITEMS, Material.class),
+                    adaptTyped(player, StatisticIndex.ENTITY_STATISTICS, StatisticIndex.ENTITIES, EntityType.class)
             );
         }
 
+        // Capture a player's non-zero untyped statistics
+        @NotNull
+        private static Map<Statistic, Integer> adaptUntyped(@NotNull Player player) {
+            final Map<Statistic, Integer> statistics = new EnumMap<>(Statistic.class);
+            for (Statistic statistic : StatisticIndex.UNTYPED_STATISTICS) {
+                final int value = player.getStatistic(statistic);
+                if (value != 0) {
+                    statistics.put(statistic, value);
+                }
+            }
+            return statistics;
+        }
+
+        // Capture a player's non-zero typed statistics, reading values into a reused primitive array
+        @NotNull
+        private static <T extends Enum<T>> Map<Statistic, Map<T, Integer>> adaptTyped(@NotNull Player player,
+                                                                                   @NotNull Statistic[] statistics,
+                                                                                   @NotNull T[] types,
+                                                                                   @NotNull Class<T> typeClass) {
+            final Map<Statistic, Map<T, Integer>> captured = new EnumMap<>(Statistic.class);
+            final int[] values = new int[types.length];
+            for (Statistic statistic : statistics) {
+                int nonZero = 0;
+                for (int i = 0; i < types.length; i++) {
+                    values[i] = types[i] instanceof Material material
+                            ? player.getStatistic(statistic, material)
+                            : player.getStatistic(statistic, (EntityType) types[i]);
+                    if (values[i] != 0) {
+                        nonZero++;
+                    }
+                }
+                if (nonZero == 0) {
+                    continue;
+                }
+
+                final Map<T, Integer> typeValues = new EnumMap<>(typeClass);
+                for (int i = 0; i < types.length; i++) {
+                    if (values[i] != 0) {
+                        typeValues.put(types[i], values[i]);
+                    }
+                }
+                captured.put(statistic, typeValues);
+            }
+            return captured;
+        }
+
         @NotNull
         public static BukkitData.Statistics from(@NotNull StatisticsMap stats) {
             return new BukkitData.Statistics(
@@ -609,14 +653,14 @@ public abstract class BukkitData implements Data {
                     stats.blockStats().entrySet().stream().collect(Collectors.toMap(
                             entry -> matchStatistic(entry.getKey()),
                             entry -> entry.getValue().entrySet().stream().collect(Collectors.toMap(
-                                    blockEntry -> Material.matchMaterial(blockEntry.getKey()),
+                                    blockEntry -> matchMaterial(blockEntry.getKey()),
                                     Map.Entry::getValue
                             ))
                     )),
                     stats.itemStats().entrySet().stream().collect(Collectors.toMap(
                             entry -> matchStatistic(entry.getKey()),
                             entry -> entry.getValue().entrySet().stream().collect(Collectors.toMap(
-                                    itemEntry -> Material.matchMaterial(itemEntry.getKey()),
+                                    itemEntry -> matchMaterial(itemEntry.getKey()),
                                     Map.Entry::getValue
                             ))
                     )),
@@ -649,18 +693,74 @@ public abstract class BukkitData implements Data {
 
         @NotNull
         private static Statistic matchStatistic(@NotNull String key) {
-            return Arrays.stream(Statistic.values())
-                    .filter(stat -> stat.getKey().toString().equals(key))
-                    .findFirst()
-                    .orElseThrow(() -> new IllegalArgumentException(String.format("Invalid statistic key: %s", key)));
+            final Statistic statistic = StatisticIndex.STATISTICS_BY_KEY.get(key);
+            if (statistic == null) {
+                throw new IllegalArgumentException(String.format("Invalid statistic key: %s", key));
+            }
+            return statistic;
+        }
+
+        @Nullable
+        private static Material matchMaterial(@NotNull String key) {
+            final Material material = StatisticIndex.MATERIALS_BY_KEY.get(key);
+            return material != null ? material : Material.matchMaterial(key);
         }
 
         @NotNull
         private static EntityType matchEntityType(@NotNull String key) {
-            return Arrays.stream(EntityType.values())
-                    .filter(entityType -> entityType.getKey().toString().equals(key))
-                    .findFirst()
-                    .orElseThrow(() -> new IllegalArgumentException(String.format("Invalid entity type key: %s", key)));
+            final EntityType entityType = StatisticIndex.ENTITIES_BY_KEY.get(key);
+            if (entityType == null) {
+                throw new IllegalArgumentException(String.format("Invalid entity type key: %s", key));
+            }
+            return entityType;
+        }
+
+        // Build the statistic lookup tables ahead of the first capture
+        static void buildIndex() {
+            StatisticIndex.load();
+        }
+
+        /**
+         * Lookup tables of statistics and the materials and entity types they apply to, built once when the serializer is registered
+         */
+        @SuppressWarnings("deprecation")
+        private static final class StatisticIndex {
+
+            private static final Statistic[] UNTYPED_STATISTICS = getStatistics(Statistic.Type.UNTYPED);
+            private static final Statistic[] BLOCK_STATISTICS = getStatistics(Statistic.Type.BLOCK);
+            private static final Statistic[] ITEM_STATISTICS = getStatistics(Statistic.Type.ITEM);
+            private static final Statistic[] ENTITY_STATISTICS = getStatistics(Statistic.Type.ENTITY);
+
+            private static final Material[] BLOCKS = Arrays.stream(Material.values())
+                    .filter(material -> !material.isLegacy() && material.isBlock())
+                    .toArray(Material[]::new);
+            private static final Material[] ITEMS = Arrays.stream(Material.values())
+                    .filter(material -> !material.isLegacy() && material.isItem())
+                    .toArray(Material[]::new);
+            private static final EntityType[] ENTITIES = Arrays.stream(EntityType.values())
+                    .filter(EntityType::isAlive)
+                    .toArray(EntityType[]::new);
+
+            private static final Map<String, Statistic> STATISTICS_BY_KEY = Arrays.stream(Statistic.values())
+                    .collect(Collectors.toMap(statistic -> statistic.getKey().toString(), statistic -> statistic));
+            private static final Map<String, Material> MATERIALS_BY_KEY = Arrays.stream(Material.values())
+                    .filter(material -> !material.isLegacy())
+                    .collect(Collectors.toMap(material -> material.getKey().toString(), material -> material));
+            private static final Map<String, EntityType> ENTITIES_BY_KEY = Arrays.stream(EntityType.values())
+                    .filter(entityType -> entityType != EntityType.UNKNOWN)
+                    .collect(Collectors.toMap(entityType -> entityType.getKey().toString(), entityType -> entityType));
+
+            private static void load() {
+                // Calling this initializes the lookup tables
+            }
+
+            @NotNull
+            private static Statistic[] getStatistics(@NotNull Statistic.Type type) {
+                return Arrays.stream(Statistic.values())
+                        .filter(statistic -> statistic.getType() == type)
+                        .toArray(Statistic[]::new);
+            }
+
         }
 
         @Override
@@ -759,7 +859,10 @@ public abstract class BukkitData implements Data {
 
         @NotNull
         public static BukkitData.PersistentData adapt(@NotNull PersistentDataContainer persistentData) {
-            return new BukkitData.PersistentData(new NBTPersistentDataContainer(persistentData));
+            // Copy the container, so the captured data isn't modified while it's being serialized
+            final NBTContainer copy = new NBTContainer();
+            copy.mergeCompound(new NBTPersistentDataContainer(persistentData));
+            return new BukkitData.PersistentData(copy);
         }
 
         @NotNull
@@ -26,10 +26,14 @@ import de.tr7zw.changeme.nbtapi.iface.ReadWriteNBT;
 import net.william278.husksync.HuskSync;
 import net.william278.husksync.adapter.Adaptable;
 import net.william278.husksync.api.HuskSyncAPI;
+import net.william278.husksync.util.BukkitMapPersister;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.*;
+import java.util.Arrays;
 import java.util.List;
 
 import static net.william278.husksync.data.BukkitData.Items.Inventory.INVENTORY_SLOT_COUNT;
@@ -53,7 +57,79 @@ public class BukkitSerializer {
         return plugin;
     }
 
-    public static class Inventory extends BukkitSerializer implements Serializer<BukkitData.Items.Inventory> {
+    // Load the canvases of deserialized locked maps ahead of them being applied
+    protected void loadMapCanvases(@Nullable ItemStack[] items) {
+        if (items != null && plugin instanceof BukkitMapPersister mapPersister) {
+            mapPersister.loadMapCanvases(items);
+        }
+    }
+
+    // Marks binary item data where each slot was written as its own binary NBT compound, so it can be cached
+    private static final byte SLOTTED_ITEMS_FORMAT = 0x01;
+
+    // Write an NBT compound in the binary NBT format
+    protected static byte[] writeNbt(@NotNull ReadWriteNBT nbt) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        nbt.writeCompound(stream);
+        return stream.toByteArray();
+    }
+
+    // Read an NBT compound from the binary NBT format
+    @NotNull
+    protected static ReadWriteNBT readNbt(byte[] bytes) {
+        return NBT.readNBT(new ByteArrayInputStream(bytes));
+    }
+
+    // Whether binary item data is in the slotted format, rather than a single binary NBT compound
+    protected static boolean isSlotted(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == SLOTTED_ITEMS_FORMAT;
+    }
+
+    // Encode items by slot, reusing the cached encodings of unchanged slots if the items have a cache
+    protected static byte[][] encodeItems(@NotNull BukkitData.Items items, @NotNull Identifier container) {
+        final ItemStack[] contents = items.getContents();
+        return items.getEncodedItemCache()
+                .map(cache -> cache.encode(container, contents, BukkitSerializer::encodeItem))
+                .orElseGet(() -> Arrays.stream(contents)
+                        .map(item -> item == null ? null : encodeItem(item))
+                        .toArray(byte[][]::new));
+    }
+
+    private static byte[] encodeItem(@NotNull ItemStack item) {
+        return writeNbt(NBT.itemStackToNBT(item));
+    }
+
+    // Write encoded item slots in the slotted format; each slot is a length-prefixed binary NBT compound
+    protected static void writeSlots(@NotNull DataOutputStream out, byte[][] slots) throws IOException {
+        out.writeByte(SLOTTED_ITEMS_FORMAT);
+        out.writeInt(slots.length);
+        for (byte[] slot : slots) {
+            out.writeInt(slot == null ? 0 : slot.length);
+            if (slot != null) {
+                out.write(slot);
+            }
+        }
+    }
+
+    // Read and decode item slots written in the slotted format
+    @NotNull
+    protected static ItemStack[] readSlots(@NotNull DataInputStream in) throws IOException {
+        if (in.readByte() != SLOTTED_ITEMS_FORMAT) {
+            throw new IOException("Item data is not in the slotted format");
+        }
+        final ItemStack[] items = new ItemStack[in.readInt()];
+        for (int i = 0; i < items.length; i++) {
+            final int length = in.readInt();
+            if (length > 0) {
+                final byte[] slot = new byte[length];
+                in.readFully(slot);
+                items[i] = NBT.itemStackFromNBT(readNbt(slot));
+            }
+        }
+        return items;
+    }
+
+    public static class Inventory extends BukkitSerializer implements Serializer.Binary<BukkitData.Items.Inventory> {
         private static final String ITEMS_TAG = "items";
         private static final String HELD_ITEM_SLOT_TAG = "held_item_slot";
 
@@ -62,10 +138,30 @@ public class BukkitSerializer {
         }
 
         @Override
-        public BukkitData.Items.Inventory deserialize(@NotNull String serialized) throws DeserializationException {
-            final ReadWriteNBT root = NBT.parseNBT(serialized);
+        public BukkitData.Items.Inventory deserializeBinary(byte[] serialized) throws DeserializationException {
+            if (!isSlotted(serialized)) {
+                return fromNbt(readNbt(serialized));
+            }
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(serialized))) {
+                final ItemStack[] items = readSlots(in);
+                final int heldItemSlot = in.readInt();
+                loadMapCanvases(items);
+                return BukkitData.Items.Inventory.from(items, heldItemSlot);
+            } catch (IOException e) {
+                throw new DeserializationException("Failed to read inventory items", e);
+            }
+        }
+
+        @Override
+        public BukkitData.Items.Inventory deserializeText(@NotNull String serialized) throws DeserializationException {
+            return fromNbt(NBT.parseNBT(serialized));
+        }
+
+        @NotNull
+        private BukkitData.Items.Inventory fromNbt(@NotNull ReadWriteNBT root) {
             final ItemStack[] items = root.getItemStackArray(ITEMS_TAG);
             final int heldItemSlot = root.getInteger(HELD_ITEM_SLOT_TAG);
+            loadMapCanvases(items);
             return BukkitData.Items.Inventory.from(
                     items == null ? new ItemStack[INVENTORY_SLOT_COUNT] : items,
                     heldItemSlot
@@ -73,31 +169,79 @@ public class BukkitSerializer {
         }
 
         @NotNull
-        @Override
-        public String serialize(@NotNull BukkitData.Items.Inventory data) throws SerializationException {
+        private ReadWriteNBT toNbt(@NotNull BukkitData.Items.Inventory data) {
             final ReadWriteNBT root = NBT.createNBTObject();
             root.setItemStackArray(ITEMS_TAG, data.getContents());
             root.setInteger(HELD_ITEM_SLOT_TAG, data.getHeldItemSlot());
-            return root.toString();
+            return root;
+        }
+
+        @Override
+        public byte[] serializeBinary(@NotNull BukkitData.Items.Inventory data) throws SerializationException {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                writeSlots(out, encodeItems(data, Identifier.INVENTORY));
+                out.writeInt(data.getHeldItemSlot());
+            } catch (IOException e) {
+                throw new SerializationException("Failed to write inventory items", e);
+            }
+            return bytes.toByteArray();
+        }
+
+        @NotNull
+        @Override
+        public String serializeText(@NotNull BukkitData.Items.Inventory data) throws SerializationException {
+            return toNbt(data).toString();
         }
 
     }
 
-    public static class EnderChest extends BukkitSerializer implements Serializer<BukkitData.Items.EnderChest> {
+    public static class EnderChest extends BukkitSerializer implements Serializer.Binary<BukkitData.Items.EnderChest> {
 
         public EnderChest(@NotNull HuskSync plugin) {
             super(plugin);
         }
 
         @Override
-        public BukkitData.Items.EnderChest deserialize(@NotNull String serialized) throws DeserializationException {
-            final ItemStack[] items = NBT.itemStackArrayFromNBT(NBT.parseNBT(serialized));
+        public BukkitData.Items.EnderChest deserializeBinary(byte[] serialized) throws DeserializationException {
+            if (!isSlotted(serialized)) {
+                return fromNbt(readNbt(serialized));
+            }
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(serialized))) {
+                final ItemStack[] items = readSlots(in);
+                loadMapCanvases(items);
+                return BukkitData.Items.EnderChest.adapt(items);
+            } catch (IOException e) {
+                throw new DeserializationException("Failed to read Ender Chest items", e);
+            }
+        }
+
+        @Override
+        public BukkitData.Items.EnderChest deserializeText(@NotNull String serialized) throws DeserializationException {
+            return fromNbt(NBT.parseNBT(serialized));
+        }
+
+        @NotNull
+        private BukkitData.Items.EnderChest fromNbt(@NotNull ReadWriteNBT root) {
+            final ItemStack[] items = NBT.itemStackArrayFromNBT(root);
+            loadMapCanvases(items);
             return items == null ? BukkitData.Items.EnderChest.empty() : BukkitData.Items.EnderChest.adapt(items);
         }
 
+        @Override
+        public byte[] serializeBinary(@NotNull BukkitData.Items.EnderChest data) throws SerializationException {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                writeSlots(out, encodeItems(data, Identifier.ENDER_CHEST));
+            } catch (IOException e) {
+                throw new SerializationException("Failed to write Ender Chest items", e);
+            }
+            return bytes.toByteArray();
+        }
+
         @NotNull
         @Override
-        public String serialize(@NotNull BukkitData.Items.EnderChest data) throws SerializationException {
+        public String serializeText(@NotNull BukkitData.Items.EnderChest data) throws SerializationException {
             return NBT.itemStackArrayToNBT(data.getContents()).toString();
         }
     }
@@ -171,6 +315,7 @@ public class BukkitSerializer {
 
         public Statistics(@NotNull HuskSync plugin) {
             super(plugin);
+            BukkitData.Statistics.buildIndex();
         }
 
         @Override
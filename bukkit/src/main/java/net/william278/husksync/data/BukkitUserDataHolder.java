@@ -22,6 +22,7 @@ package net.william278.husksync.data;
 import net.william278.husksync.BukkitHuskSync;
 import net.william278.husksync.util.BukkitMapPersister;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.PlayerInventory;
 import org.jetbrains.annotations.NotNull;
 
@@ -66,18 +67,24 @@ public interface BukkitUserDataHolder extends UserDataHolder {
             return Optional.of(BukkitData.Items.Inventory.empty());
         }
         final PlayerInventory inventory = getBukkitPlayer().getInventory();
-        return Optional.of(BukkitData.Items.Inventory.from(
-                getMapPersister().persistLockedMaps(inventory.getContents(), getBukkitPlayer()),
+        final BukkitData.Items.Inventory data = BukkitData.Items.Inventory.from(
+                copyItems(getMapPersister().persistLockedMaps(inventory.getContents(), getBukkitPlayer())),
                 inventory.getHeldItemSlot()
-        ));
+        );
+        data.setEncodedItemCache(getEncodedItemCache().orElse(null));
+        return Optional.of(data);
     }
 
     @NotNull
     @Override
     default Optional<Data.Items.EnderChest> getEnderChest() {
-        return Optional.of(BukkitData.Items.EnderChest.adapt(
-                getMapPersister().persistLockedMaps(getBukkitPlayer().getEnderChest().getContents(), getBukkitPlayer())
-        ));
+        final BukkitData.Items.EnderChest data = BukkitData.Items.EnderChest.adapt(
+                copyItems(getMapPersister().persistLockedMaps(
+                        getBukkitPlayer().getEnderChest().getContents(), getBukkitPlayer()
+                ))
+        );
+        data.setEncodedItemCache(getEncodedItemCache().orElse(null));
+        return Optional.of(data);
     }
 
     @NotNull
@@ -134,6 +141,16 @@ public interface BukkitUserDataHolder extends UserDataHolder {
         return Optional.of(BukkitData.PersistentData.adapt(getBukkitPlayer().getPersistentDataContainer()));
     }
 
+    // Copy captured items, as inventory contents mirror the live items, which may change while being serialized
+    @NotNull
+    private static ItemStack[] copyItems(@NotNull ItemStack[] items) {
+        final ItemStack[] copy = new ItemStack[items.length];
+        for (int i = 0; i < items.length; i++) {
+            copy[i] = items[i] == null ? null : items[i].clone();
+        }
+        return copy;
+    }
+
     boolean isDead();
 
     @NotNull
@@ -147,5 +164,12 @@ public interface BukkitUserDataHolder extends UserDataHolder {
         return (BukkitHuskSync) getPlugin();
     }
 
+    // Get the cache of this holder's encoded items, if one is being kept for them
+    @NotNull
+    default Optional<EncodedItemCache> getEncodedItemCache() {
+        return Optional.ofNullable(((BukkitHuskSync) getPlugin()).getEncodedItemCaches()
+                .get(getBukkitPlayer().getUniqueId()));
+    }
+
 
 }
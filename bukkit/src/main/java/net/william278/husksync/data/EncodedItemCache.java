@@ -0,0 +1,99 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.data;
+
+import net.william278.husksync.HuskSync;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A cache of the binary encodings of the items in an online player's inventory and Ender Chest, by slot.
+ * <p>
+ * Each slot remembers a copy of the item it last encoded. When the slot next holds an item of the same amount that
+ * is {@link ItemStack#isSimilar(ItemStack) similar} to the copy, the cached encoding is reused instead of encoding
+ * the item again; comparing item data is much cheaper than encoding it.
+ *
+ * @since 3.1
+ */
+public class EncodedItemCache {
+
+    private final HuskSync plugin;
+    private final Map<Identifier, Slot[]> containers;
+
+    public EncodedItemCache(@NotNull HuskSync plugin) {
+        this.plugin = plugin;
+        this.containers = new HashMap<>();
+    }
+
+    /**
+     * Encode the items of a container, reusing the cached encodings of slots that haven't changed
+     *
+     * @param container the identifier of the data type the items are in
+     * @param items     the items to encode, by slot
+     * @param encoder   the function for encoding an item
+     * @return the encoded items, by slot; {@code null} for empty slots
+     */
+    @NotNull
+    public synchronized byte[][] encode(@NotNull Identifier container, @NotNull ItemStack[] items,
+                                        @NotNull Function<ItemStack, byte[]> encoder) {
+        Slot[] slots = containers.get(container);
+        if (slots == null || slots.length != items.length) {
+            slots = new Slot[items.length];
+            containers.put(container, slots);
+        }
+
+        final byte[][] encoded = new byte[items.length][];
+        int hits = 0;
+        int misses = 0;
+        for (int i = 0; i < items.length; i++) {
+            final ItemStack item = items[i];
+            if (item == null) {
+                slots[i] = null;
+                continue;
+            }
+            if (slots[i] != null && slots[i].matches(item)) {
+                encoded[i] = slots[i].encoded();
+                hits++;
+                continue;
+            }
+            encoded[i] = encoder.apply(item);
+            slots[i] = new Slot(item.clone(), encoded[i]);
+            misses++;
+        }
+
+        plugin.getPerformanceMetrics().add("item_cache.hits", hits);
+        plugin.getPerformanceMetrics().add("item_cache.misses", misses);
+        return encoded;
+    }
+
+    // The copy of the item last encoded in a slot, and its encoding
+    private record Slot(@NotNull ItemStack item, byte[] encoded) {
+
+        private boolean matches(@NotNull ItemStack other) {
+            return item.getAmount() == other.getAmount() && item.isSimilar(other);
+        }
+
+    }
+
+}
@@ -22,9 +22,14 @@ package net.william278.husksync.listener;
 import net.william278.husksync.BukkitHuskSync;
 import net.william278.husksync.HuskSync;
 import net.william278.husksync.data.BukkitData;
+import net.william278.husksync.data.EncodedItemCache;
+import net.william278.husksync.data.Identifier;
 import net.william278.husksync.user.BukkitUser;
 import net.william278.husksync.user.OnlineUser;
+import net.william278.husksync.user.User;
 import org.bukkit.Bukkit;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
 import org.bukkit.event.EventHandler;
@@ -34,16 +39,33 @@ import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.entity.EntityShootBowEvent;
 import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.entity.ProjectileLaunchEvent;
 import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
 import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.event.inventory.PrepareItemCraftEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerAdvancementDoneEvent;
+import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerBucketFillEvent;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.player.PlayerDropItemEvent;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerItemBreakEvent;
+import org.bukkit.event.player.PlayerItemConsumeEvent;
+import org.bukkit.event.player.PlayerItemDamageEvent;
+import org.bukkit.event.player.PlayerItemHeldEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerStatisticIncrementEvent;
+import org.bukkit.event.player.PlayerSwapHandItemsEvent;
 import org.bukkit.event.world.WorldSaveEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
@@ -73,16 +95,28 @@ public class BukkitEventListener extends EventListener implements BukkitJoinEven
             player.setItemOnCursor(null);
         }
         super.handlePlayerQuit(bukkitUser);
+        ((BukkitHuskSync) plugin).getEncodedItemCaches().remove(player.getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLogin(@NotNull AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            super.handlePlayerPreLogin(new User(event.getUniqueId(), event.getName()));
+        }
     }
 
     @Override
     public void handlePlayerJoin(@NotNull BukkitUser bukkitUser) {
+        if (!bukkitUser.isNpc()) {
+            ((BukkitHuskSync) plugin).getEncodedItemCaches().put(bukkitUser.getUuid(), new EncodedItemCache(plugin));
+        }
         super.handlePlayerJoin(bukkitUser);
     }
 
     @Override
     public void handlePlayerDeath(@NotNull PlayerDeathEvent event) {
         final OnlineUser user = BukkitUser.adapt(event.getEntity(), plugin);
+        plugin.getDirtyDataTracker().markAllDirty(user.getUuid());
 
         // If the player is locked or the plugin disabling, clear their drops
         if (cancelPlayerEvent(user.getUuid())) {
@@ -100,7 +134,9 @@ public class BukkitEventListener extends EventListener implements BukkitJoinEven
         if (event.getDrops().size() > maxInventorySize) {
             event.getDrops().subList(maxInventorySize, event.getDrops().size()).clear();
         }
-        super.saveOnPlayerDeath(user, BukkitData.Items.ItemArray.adapt(event.getDrops()));
+        super.saveOnPlayerDeath(user, BukkitData.Items.ItemArray.adapt(
+                event.getDrops().stream().map(ItemStack::clone).toList()
+        ));
     }
 
     @EventHandler(ignoreCancelled = true)
@@ -110,11 +146,128 @@ public class BukkitEventListener extends EventListener implements BukkitJoinEven
         }
 
         // Handle saving player data snapshots when the world saves
-        plugin.runAsync(() -> super.saveOnWorldSave(event.getWorld().getPlayers()
+        super.saveOnWorldSave(event.getWorld().getPlayers()
                 .stream().map(player -> BukkitUser.adapt(player, plugin))
-                .collect(Collectors.toList())));
+                .collect(Collectors.toList()));
+    }
+
+    /*
+     * Events that modify data types tracked for changes between snapshots
+     */
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryClickMonitor(@NotNull InventoryClickEvent event) {
+        markInventoryDirty(event.getWhoClicked(), event.getView().getTopInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryDragMonitor(@NotNull InventoryDragEvent event) {
+        markInventoryDirty(event.getWhoClicked(), event.getView().getTopInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryCloseMonitor(@NotNull InventoryCloseEvent event) {
+        markInventoryDirty(event.getPlayer(), event.getView().getTopInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPickupItemMonitor(@NotNull EntityPickupItemEvent event) {
+        markDirty(event.getEntity(), Identifier.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDropItemMonitor(@NotNull PlayerDropItemEvent event) {
+        markDirty(event.getPlayer(), Identifier.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerInteractMonitor(@NotNull PlayerInteractEvent event) {
+        markDirty(event.getPlayer(), Identifier.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerInteractEntityMonitor(@NotNull PlayerInteractEntityEvent event) {
+        markDirty(event.getPlayer(), Identifier.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlaceMonitor(@NotNull BlockPlaceEvent event) {
+        markDirty(event.getPlayer(), Identifier.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemConsume(@NotNull PlayerItemConsumeEvent event) {
+        markDirty(event.getPlayer(), Identifier.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemDamage(@NotNull PlayerItemDamageEvent event) {
+        markDirty(event.getPlayer(), Identifier.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onItemBreak(@NotNull PlayerItemBreakEvent event) {
+        markDirty(event.getPlayer(), Identifier.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemHeld(@NotNull PlayerItemHeldEvent event) {
+        markDirty(event.getPlayer(), Identifier.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSwapHandItems(@NotNull PlayerSwapHandItemsEvent event) {
+        markDirty(event.getPlayer(), Identifier.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onShootBow(@NotNull EntityShootBowEvent event) {
+        markDirty(event.getEntity(), Identifier.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketEmpty(@NotNull PlayerBucketEmptyEvent event) {
+        markDirty(event.getPlayer(), Identifier.INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketFill(@NotNull PlayerBucketFillEvent event) {
+        markDirty(event.getPlayer(), Identifier.INVENTORY);
     }
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onAdvancementDone(@NotNull PlayerAdvancementDoneEvent event) {
+        markDirty(event.getPlayer(), Identifier.ADVANCEMENTS);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStatisticIncrement(@NotNull PlayerStatisticIncrementEvent event) {
+        markDirty(event.getPlayer(), Identifier.STATISTICS);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onCommandMonitor(@NotNull PlayerCommandPreprocessEvent event) {
+        plugin.getDirtyDataTracker().markAllDirty(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(@NotNull PlayerRespawnEvent event) {
+        plugin.getDirtyDataTracker().markAllDirty(event.getPlayer().getUniqueId());
+    }
+
+    // Mark a player's inventory dirty, and their Ender Chest if it is the open inventory
+    private void markInventoryDirty(@NotNull HumanEntity player, @NotNull Inventory topInventory) {
+        markDirty(player, Identifier.INVENTORY);
+        if (topInventory.getType() == InventoryType.ENDER_CHEST) {
+            markDirty(player, Identifier.ENDER_CHEST);
+        }
+    }
+
+    private void markDirty(@NotNull Entity entity, @NotNull Identifier identifier) {
+        if (entity instanceof Player player) {
+            plugin.getDirtyDataTracker().markDirty(player.getUniqueId(), identifier);
+        }
+    }
 
     /*
      * Events to cancel if the player has not been set yet
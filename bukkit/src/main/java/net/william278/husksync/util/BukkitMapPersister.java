@@ -23,6 +23,7 @@ import de.tr7zw.changeme.nbtapi.NBT;
 import de.tr7zw.changeme.nbtapi.iface.ReadWriteNBT;
 import de.tr7zw.changeme.nbtapi.iface.ReadableNBT;
 import net.william278.husksync.HuskSync;
+import net.william278.husksync.database.MapCanvasStore;
 import net.william278.mapdataapi.MapBanner;
 import net.william278.mapdataapi.MapData;
 import org.bukkit.Bukkit;
@@ -33,6 +34,7 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.MapMeta;
 import org.bukkit.map.*;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Blocking;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.*;
@@ -45,10 +47,13 @@ public interface BukkitMapPersister {
 
     // The map used to store HuskSync data in ItemStack NBT
     String MAP_DATA_KEY = "husksync:persisted_locked_map";
-    // The key used to store the serialized map data in NBT
+    // The key used to store the serialized map data in NBT, by older versions which embedded canvases in items
     String MAP_PIXEL_DATA_KEY = "canvas_data";
     // The key used to store the map of World UIDs to MapView IDs in NBT
     String MAP_VIEW_ID_MAPPINGS_KEY = "id_mappings";
+    // The width and height of a map canvas, and its total number of pixels
+    int MAP_SIZE = 128;
+    int MAP_PIXEL_COUNT = MAP_SIZE * MAP_SIZE;
 
     /**
      * Persist locked maps in an array of {@link ItemStack}s
@@ -79,6 +84,56 @@ public interface BukkitMapPersister {
         return forEachMap(items, this::applyMapView);
     }
 
+    /**
+     * Load the canvases of persisted locked maps in an array of {@link ItemStack}s that don't have a map view yet,
+     * so that they are ready to be {@link #setMapViews(ItemStack[]) applied} without blocking
+     *
+     * @param items the array of {@link ItemStack}s to load the map canvases of
+     */
+    @Blocking
+    default void loadMapCanvases(@NotNull ItemStack[] items) {
+        if (!getPlugin().getSettings().doPersistLockedMaps()) {
+            return;
+        }
+        for (ItemStack item : items) {
+            if (item == null || item.getType() != Material.FILLED_MAP || !item.hasItemMeta()) {
+                continue;
+            }
+            final String hash = NBT.get(item, nbt -> {
+                if (!nbt.hasTag(MAP_DATA_KEY) || !nbt.getCompound(MAP_DATA_KEY).hasTag(MapCanvasStore.HASH_KEY)) {
+                    return null;
+                }
+                final ReadableNBT mapIds = nbt.getCompound(MAP_VIEW_ID_MAPPINGS_KEY);
+                if (mapIds != null && mapIds.getKeys().stream()
+                        .anyMatch(world -> getMapViews().containsKey(mapIds.getInteger(world)))) {
+                    return null;
+                }
+                return nbt.getCompound(MAP_DATA_KEY).getString(MapCanvasStore.HASH_KEY);
+            });
+            if (hash != null && !getMapCanvases().containsKey(hash)) {
+                loadMapCanvas(hash);
+            }
+        }
+    }
+
+    // Read a canvas from the canvas store and cache it, returning it if it was found
+    @Blocking
+    private Optional<MapData> loadMapCanvas(@NotNull String hash) {
+        final Optional<byte[]> canvas = getPlugin().getDatabase().getMapCanvasStore().get(hash);
+        if (canvas.isEmpty()) {
+            getPlugin().log(Level.WARNING, String.format("Could not find the canvas of a locked map (%s)", hash));
+            return Optional.empty();
+        }
+        try {
+            final MapData canvasData = MapData.fromByteArray(canvas.get());
+            getMapCanvases().put(hash, canvasData);
+            return Optional.of(canvasData);
+        } catch (Throwable e) {
+            getPlugin().log(Level.WARNING, "Failed to deserialize locked map canvas data", e);
+            return Optional.empty();
+        }
+    }
+
     // Perform an operation on each map in an array of ItemStacks
     @NotNull
     private ItemStack[] forEachMap(@NotNull ItemStack[] items, @NotNull Function<ItemStack, ItemStack> function) {
@@ -105,10 +160,15 @@ public interface BukkitMapPersister {
             return map;
         }
 
+        final MapCanvasStore store = getPlugin().getDatabase().getMapCanvasStore();
         NBT.modify(map, nbt -> {
-            // Don't save the map's data twice
+            // Don't save the map's data twice, unless its canvas is no longer known to be stored
             if (nbt.hasTag(MAP_DATA_KEY)) {
-                return;
+                final ReadableNBT mapData = nbt.getCompound(MAP_DATA_KEY);
+                if (mapData.hasTag(MapCanvasStore.HASH_KEY)
+                        && store.isStored(mapData.getString(MapCanvasStore.HASH_KEY))) {
+                    return;
+                }
             }
 
             // Render the map
@@ -118,10 +178,14 @@ public interface BukkitMapPersister {
                 getPlugin().debug(String.format("Rendered locked map canvas to view (#%s)", view.getId()));
             }
 
-            // Persist map data
+            // Store the canvas and persist a reference to it
+            final MapData canvasData = canvas.extractMapData();
+            final String hash = store.store(canvasData.toBytes());
+            getMapCanvases().put(hash, canvasData);
             final ReadWriteNBT mapData = nbt.getOrCreateCompound(MAP_DATA_KEY);
             final String worldUid = view.getWorld().getUID().toString();
-            mapData.setByteArray(MAP_PIXEL_DATA_KEY, canvas.extractMapData().toBytes());
+            mapData.removeKey(MAP_PIXEL_DATA_KEY);
+            mapData.setString(MapCanvasStore.HASH_KEY, hash);
             nbt.getOrCreateCompound(MAP_VIEW_ID_MAPPINGS_KEY).setInteger(worldUid, view.getId());
             getPlugin().debug(String.format("Saved data for locked map (#%s, UID: %s)", view.getId(), worldUid));
         });
@@ -163,12 +227,27 @@ public interface BukkitMapPersister {
 
             // Read the pixel data and generate a map view otherwise
             final MapData canvasData;
-            try {
-                getPlugin().debug("Deserializing map data from NBT and generating view...");
-                canvasData = MapData.fromByteArray(mapData.getByteArray(MAP_PIXEL_DATA_KEY));
-            } catch (Throwable e) {
-                getPlugin().log(Level.WARNING, "Failed to deserialize map data from NBT", e);
-                return nbt;
+            if (mapData.hasTag(MapCanvasStore.HASH_KEY)) {
+                final String hash = mapData.getString(MapCanvasStore.HASH_KEY);
+                final MapData cached = getMapCanvases().get(hash);
+                if (cached != null) {
+                    canvasData = cached;
+                } else {
+                    getPlugin().getPerformanceMetrics().increment("map_canvas.sync_load");
+                    final Optional<MapData> loaded = loadMapCanvas(hash);
+                    if (loaded.isEmpty()) {
+                        return nbt;
+                    }
+                    canvasData = loaded.get();
+                }
+            } else {
+                try {
+                    getPlugin().debug("Deserializing map data from NBT and generating view...");
+                    canvasData = MapData.fromByteArray(mapData.getByteArray(MAP_PIXEL_DATA_KEY));
+                } catch (Throwable e) {
+                    getPlugin().log(Level.WARNING, "Failed to deserialize map data from NBT", e);
+                    return nbt;
+                }
             }
 
             // Add a renderer to the map with the data
@@ -223,30 +302,45 @@ public interface BukkitMapPersister {
     }
 
     /**
-     * A {@link MapRenderer} that can be used to render persistently serialized {@link MapData} to a {@link MapView}
+     * A {@link MapRenderer} that can be used to render persistently serialized {@link MapData} to a {@link MapView}.
+     * <p>
+     * The map's pixels are read from the {@link MapData} once, when the renderer is created. As the renderer is not
+     * contextual, its canvas is shared by all players viewing the map and keeps its pixels between renders, so the
+     * canvas is only drawn to once.
      */
     class PersistentMapRenderer extends MapRenderer {
 
-        private final MapData canvasData;
+        private final byte[] pixels = new byte[MAP_PIXEL_COUNT];
+        private final List<MapBanner> banners;
+        private MapCanvas drawnCanvas;
 
         private PersistentMapRenderer(@NotNull MapData canvasData) {
             super(false);
-            this.canvasData = canvasData;
+            // We read the pixels in this order to avoid the map being rendered upside down
+            for (int y = 0; y < MAP_SIZE; y++) {
+                for (int x = 0; x < MAP_SIZE; x++) {
+                    pixels[y * MAP_SIZE + x] = (byte) canvasData.getColorAt(y, x);
+                }
+            }
+            this.banners = List.copyOf(canvasData.getBanners());
         }
 
         @Override
         public void render(@NotNull MapView map, @NotNull MapCanvas canvas, @NotNull Player player) {
-            // We set the pixels in this order to avoid the map being rendered upside down
-            for (int i = 0; i < 128; i++) {
-                for (int j = 0; j < 128; j++) {
-                    canvas.setPixel(j, i, (byte) canvasData.getColorAt(i, j));
+            if (canvas == drawnCanvas) {
+                return;
+            }
+            for (int y = 0; y < MAP_SIZE; y++) {
+                for (int x = 0; x < MAP_SIZE; x++) {
+                    canvas.setPixel(x, y, pixels[y * MAP_SIZE + x]);
                 }
             }
 
             // Set the map banners and markers
-            final MapCursorCollection cursors = canvas.getCursors();
-            canvasData.getBanners().forEach(banner -> cursors.addCursor(createBannerCursor(banner)));
+            final MapCursorCollection cursors = new MapCursorCollection();
+            banners.forEach(banner -> cursors.addCursor(createBannerCursor(banner)));
             canvas.setCursors(cursors);
+            drawnCanvas = canvas;
         }
     }
 
@@ -285,7 +379,7 @@ public interface BukkitMapPersister {
     class PersistentMapCanvas implements MapCanvas {
 
         private final MapView mapView;
-        private final int[][] pixels = new int[128][128];
+        private final byte[] pixels = new byte[MAP_PIXEL_COUNT];
         private MapCursorCollection cursors;
 
         private PersistentMapCanvas(@NotNull MapView mapView) {
@@ -311,12 +405,17 @@ public interface BukkitMapPersister {
 
         @Override
         public void setPixel(int x, int y, byte color) {
-            pixels[x][y] = color;
+            if (x >= 0 && x < MAP_SIZE && y >= 0 && y < MAP_SIZE) {
+                pixels[x * MAP_SIZE + y] = color;
+            }
         }
 
         @Override
         public byte getPixel(int x, int y) {
-            return (byte) pixels[x][y];
+            if (x < 0 || x >= MAP_SIZE || y < 0 || y >= MAP_SIZE) {
+                return 0;
+            }
+            return pixels[x * MAP_SIZE + y];
         }
 
         @Override
@@ -364,13 +463,27 @@ public interface BukkitMapPersister {
                     ));
                 }
             }
-            return MapData.fromPixels(pixels, getDimension(), (byte) 2, banners, List.of());
+            final int[][] grid = new int[MAP_SIZE][MAP_SIZE];
+            for (int x = 0; x < MAP_SIZE; x++) {
+                for (int y = 0; y < MAP_SIZE; y++) {
+                    grid[x][y] = pixels[x * MAP_SIZE + y];
+                }
+            }
+            return MapData.fromPixels(grid, getDimension(), (byte) 2, banners, List.of());
         }
     }
 
     @NotNull
     Map<Integer, MapView> getMapViews();
 
+    /**
+     * Get the cache of deserialized locked map canvases, keyed by the hash of their content
+     *
+     * @return the map canvas cache
+     */
+    @NotNull
+    Map<String, MapData> getMapCanvases();
+
     @ApiStatus.Internal
     @NotNull
     HuskSync getPlugin();
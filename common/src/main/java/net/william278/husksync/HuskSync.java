@@ -30,15 +30,19 @@ import net.william278.husksync.adapter.DataAdapter;
 import net.william278.husksync.config.Locales;
 import net.william278.husksync.config.Settings;
 import net.william278.husksync.data.Data;
+import net.william278.husksync.data.DirtyDataTracker;
 import net.william278.husksync.data.Identifier;
+import net.william278.husksync.data.IdentifierRegistry;
 import net.william278.husksync.data.Serializer;
 import net.william278.husksync.database.Database;
 import net.william278.husksync.event.EventDispatcher;
+import net.william278.husksync.listener.SnapshotCapturePipeline;
 import net.william278.husksync.migrator.Migrator;
 import net.william278.husksync.redis.RedisManager;
 import net.william278.husksync.user.ConsoleUser;
 import net.william278.husksync.user.OnlineUser;
 import net.william278.husksync.util.LegacyConverter;
+import net.william278.husksync.util.PerformanceMetrics;
 import net.william278.husksync.util.Task;
 import org.jetbrains.annotations.NotNull;
 
@@ -93,6 +97,35 @@ public interface HuskSync extends Task.Supplier, EventDispatcher {
     @NotNull
     DataAdapter getDataAdapter();
 
+    /**
+     * Returns the performance metrics tracker
+     *
+     * @return the {@link PerformanceMetrics}
+     */
+    @NotNull
+    PerformanceMetrics getPerformanceMetrics();
+
+    /**
+     * Returns the tracker of modified player data types
+     *
+     * @return the {@link DirtyDataTracker}
+     */
+    @NotNull
+    DirtyDataTracker getDirtyDataTracker();
+
+    /**
+     * Record time spent on the main server thread since a {@link System#nanoTime()} timestamp. The time spent in each
+     * tick is totalled and recorded as one sample of the {@code main_thread.tick} timer
+     *
+     * @param startNanoTime the {@link System#nanoTime()} the work started at
+     */
+    default void recordMainThreadWork(long startNanoTime) {
+        final PerformanceMetrics metrics = getPerformanceMetrics();
+        if (metrics.addToTick("main_thread.tick", System.nanoTime() - startNanoTime)) {
+            runSyncDelayed(() -> metrics.completeTick("main_thread.tick"), 1);
+        }
+    }
+
     /**
      * Returns the data serializer for the given {@link Identifier}
      */
@@ -110,16 +143,24 @@ public interface HuskSync extends Task.Supplier, EventDispatcher {
         if (identifier.isCustom()) {
             log(Level.INFO, String.format("Registered custom data type: %s", identifier));
         }
-        getSerializers().put(identifier, (Serializer<Data>) serializer);
+        getSerializers().put(getIdentifierRegistry().register(identifier), (Serializer<Data>) serializer);
     }
 
     /**
      * Get the {@link Identifier} for the given key
      */
     default Optional<Identifier> getIdentifier(@NotNull String key) {
-        return getSerializers().keySet().stream().filter(identifier -> identifier.toString().equals(key)).findFirst();
+        return getIdentifierRegistry().get(key);
     }
 
+    /**
+     * Returns the registry of data type {@link Identifier}s
+     *
+     * @return the {@link IdentifierRegistry}
+     */
+    @NotNull
+    IdentifierRegistry getIdentifierRegistry();
+
     /**
      * Get the set of registered data types
      *
@@ -308,6 +349,14 @@ public interface HuskSync extends Task.Supplier, EventDispatcher {
     @NotNull
     Set<UUID> getLockedPlayers();
 
+    /**
+     * Returns the pipeline for capturing user data on the main thread and serializing it off the main thread
+     *
+     * @return the {@link SnapshotCapturePipeline}
+     */
+    @NotNull
+    SnapshotCapturePipeline getCapturePipeline();
+
     @NotNull
     Gson getGson();
 
@@ -0,0 +1,203 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.adapter;
+
+import net.william278.desertwell.util.Version;
+import net.william278.husksync.HuskSync;
+import net.william278.husksync.data.DataSnapshot;
+import org.jetbrains.annotations.NotNull;
+import org.xerial.snappy.Snappy;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A {@link DataAdapter} that encodes {@link DataSnapshot.Packed snapshots} as a compact, length-prefixed binary frame.
+ * <p>
+ * The frame consists of the snapshot header fields, followed by one raw UTF-8 section per textual data identifier,
+ * then one raw byte section per binary data identifier. This avoids escaping already-serialized data inside a JSON
+ * document, and parsing it twice when reading it back.
+ * </p>
+ * Other {@link Adaptable}s, and snapshots created before the binary format was introduced, are handled by a
+ * {@link GsonAdapter} (or {@link SnappyGsonAdapter}, if compression is enabled).
+ */
+public class BinaryAdapter extends GsonAdapter {
+
+    // Leading bytes identifying a binary frame; a null first byte can't start a JSON document or Snappy block
+    private static final byte[] MAGIC = {0x00, 'H', 'S', 'B'};
+    private static final int FLAG_COMPRESSED = 0x01;
+    // Set on frames followed by binary data sections, which frames written before they were introduced lack
+    private static final int FLAG_BINARY_SECTIONS = 0x02;
+
+    private final DataAdapter legacyAdapter;
+    private final boolean compress;
+
+    public BinaryAdapter(@NotNull HuskSync plugin, boolean compress) {
+        super(plugin);
+        this.compress = compress;
+        this.legacyAdapter = compress ? new SnappyGsonAdapter(plugin) : new GsonAdapter(plugin);
+    }
+
+    @Override
+    public <A extends Adaptable> byte[] toBytes(@NotNull A data) throws AdaptionException {
+        if (!(data instanceof DataSnapshot.Packed snapshot)) {
+            return legacyAdapter.toBytes(data);
+        }
+        try {
+            final byte[] body = writeSnapshot(snapshot);
+            final ByteArrayOutputStream frame = new ByteArrayOutputStream(body.length + MAGIC.length + 1);
+            frame.write(MAGIC);
+            frame.write(FLAG_BINARY_SECTIONS | (compress ? FLAG_COMPRESSED : 0));
+            frame.write(compress ? Snappy.compress(body) : body);
+            return frame.toByteArray();
+        } catch (IOException e) {
+            throw new AdaptionException("Failed to write binary snapshot frame", e);
+        }
+    }
+
+    @Override
+    @NotNull
+    public <A extends Adaptable> A fromBytes(@NotNull byte[] data, @NotNull Class<A> type) throws AdaptionException {
+        if (!isBinaryFrame(data)) {
+            return legacyAdapter.fromBytes(data, type);
+        }
+        if (!type.isAssignableFrom(DataSnapshot.Packed.class)) {
+            throw new AdaptionException(String.format("Cannot read a binary snapshot frame as %s", type.getName()));
+        }
+        return type.cast(readSnapshot(data));
+    }
+
+    @NotNull
+    @Override
+    public String bytesToString(byte[] bytes) {
+        if (!isBinaryFrame(bytes)) {
+            return legacyAdapter.bytesToString(bytes);
+        }
+        return toJson(readSnapshot(bytes));
+    }
+
+    @NotNull
+    private byte[] writeSnapshot(@NotNull DataSnapshot.Packed snapshot) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(snapshot.getFormatVersion());
+        out.writeLong(snapshot.getId().getMostSignificantBits());
+        out.writeLong(snapshot.getId().getLeastSignificantBits());
+        out.writeBoolean(snapshot.isPinned());
+        out.writeLong(snapshot.getTimestamp().toEpochSecond());
+        out.writeInt(snapshot.getTimestamp().getNano());
+        out.writeInt(snapshot.getTimestamp().getOffset().getTotalSeconds());
+        out.writeUTF(snapshot.getSaveCause().name());
+        out.writeUTF(snapshot.getMinecraftVersion().toStringWithoutMetadata());
+        out.writeUTF(snapshot.getPlatformType());
+        out.writeUTF(snapshot.getOriginServer());
+
+        // Write one length-prefixed section per identifier, text sections first
+        final Map<String, String> data = snapshot.getSerializedData();
+        out.writeInt(data.size());
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            writeSection(out, entry.getKey(), entry.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        final Map<String, byte[]> binaryData = snapshot.getSerializedBinaryData();
+        out.writeInt(binaryData.size());
+        for (Map.Entry<String, byte[]> entry : binaryData.entrySet()) {
+            writeSection(out, entry.getKey(), entry.getValue());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeSection(@NotNull DataOutputStream out, @NotNull String identifier,
+                                     byte[] section) throws IOException {
+        out.writeUTF(identifier);
+        out.writeInt(section.length);
+        out.write(section);
+    }
+
+    @NotNull
+    private DataSnapshot.Packed readSnapshot(byte[] frame) throws AdaptionException {
+        try {
+            final int flags = frame[MAGIC.length];
+            byte[] body = new byte[frame.length - MAGIC.length - 1];
+            System.arraycopy(frame, MAGIC.length + 1, body, 0, body.length);
+            if ((flags & FLAG_COMPRESSED) != 0) {
+                body = Snappy.uncompress(body);
+            }
+
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            final int formatVersion = in.readInt();
+            final UUID id = new UUID(in.readLong(), in.readLong());
+            final boolean pinned = in.readBoolean();
+            final OffsetDateTime timestamp = OffsetDateTime.ofInstant(
+                    Instant.ofEpochSecond(in.readLong(), in.readInt()),
+                    ZoneOffset.ofTotalSeconds(in.readInt())
+            );
+            final DataSnapshot.SaveCause saveCause = DataSnapshot.SaveCause.valueOf(in.readUTF());
+            final Version minecraftVersion = Version.fromString(in.readUTF());
+            final String platformType = in.readUTF();
+            final String originServer = in.readUTF();
+
+            // Read each identifier's section
+            final int sections = in.readInt();
+            final Map<String, String> data = new LinkedHashMap<>(sections);
+            for (int i = 0; i < sections; i++) {
+                final String identifier = in.readUTF();
+                data.put(identifier, new String(readSection(in), StandardCharsets.UTF_8));
+            }
+            final int binarySections = (flags & FLAG_BINARY_SECTIONS) != 0 ? in.readInt() : 0;
+            final Map<String, byte[]> binaryData = new LinkedHashMap<>(binarySections);
+            for (int i = 0; i < binarySections; i++) {
+                final String identifier = in.readUTF();
+                binaryData.put(identifier, readSection(in));
+            }
+            return DataSnapshot.Packed.from(
+                    id, pinned, timestamp, saveCause, data, binaryData,
+                    minecraftVersion, platformType, formatVersion, originServer
+            );
+        } catch (IOException | IllegalArgumentException e) {
+            throw new AdaptionException("Failed to read binary snapshot frame", e);
+        }
+    }
+
+    private static byte[] readSection(@NotNull DataInputStream in) throws IOException {
+        final byte[] section = new byte[in.readInt()];
+        in.readFully(section);
+        return section;
+    }
+
+    private static boolean isBinaryFrame(byte[] data) {
+        if (data.length <= MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
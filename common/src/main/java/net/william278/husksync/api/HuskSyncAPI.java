@@ -98,7 +98,8 @@ public abstract class HuskSyncAPI {
     /**
      * Get a {@link User}'s current data, as a {@link DataSnapshot.Unpacked}
      * <p>
-     * If the user is online, this will create a new snapshot of their data with the {@code API} data save cause.
+     * If the user is online, this will create a new snapshot of their data with the {@code API} data save cause. Their
+     * data is captured on the main thread on a later tick, so don't block the main thread waiting for the future.
      * </p>
      * If the user is offline, this will return the latest snapshot of their data if that exists
      * (an empty optional will be returned otherwise).
@@ -110,7 +111,7 @@ public abstract class HuskSyncAPI {
     public CompletableFuture<Optional<DataSnapshot.Unpacked>> getCurrentData(@NotNull User user) {
         return plugin.getRedisManager()
                 .getUserData(UUID.randomUUID(), user)
-                .thenApply(data -> data.or(() -> plugin.getDatabase().getLatestSnapshot(user)))
+                .thenApply(data -> data.or(() -> plugin.getDatabase().getSharedLatestSnapshot(user)))
                 .thenApply(data -> data.map(snapshot -> snapshot.unpack(plugin)));
     }
 
@@ -165,6 +166,19 @@ public abstract class HuskSyncAPI {
         );
     }
 
+    /**
+     * Get the headers of all saved data snapshots for a user, without fetching or deserializing their data.
+     * <p>
+     * Prefer this over {@link #getSnapshots(User)} when only snapshot metadata (e.g. IDs and timestamps) is needed
+     *
+     * @param user The user to get the data snapshot headers of
+     * @return The user's data snapshot headers, newest first
+     * @since 3.1
+     */
+    public CompletableFuture<List<DataSnapshot.Header>> getSnapshotHeaders(@NotNull User user) {
+        return plugin.supplyAsync(() -> plugin.getDatabase().getSnapshotHeaders(user));
+    }
+
     /**
      * Get a specific data snapshot for a user
      *
@@ -212,7 +226,7 @@ public abstract class HuskSyncAPI {
      */
     public CompletableFuture<Optional<DataSnapshot.Unpacked>> getLatestSnapshot(@NotNull User user) {
         return plugin.supplyAsync(
-                () -> plugin.getDatabase().getLatestSnapshot(user).map(snapshot -> snapshot.unpack(plugin))
+                () -> plugin.getDatabase().getSharedLatestSnapshot(user).map(snapshot -> snapshot.unpack(plugin))
         );
     }
 
@@ -25,13 +25,18 @@ import net.kyori.adventure.text.format.TextColor;
 import net.william278.desertwell.about.AboutMenu;
 import net.william278.desertwell.util.UpdateChecker;
 import net.william278.husksync.HuskSync;
+import net.william278.husksync.data.Data;
+import net.william278.husksync.data.Identifier;
+import net.william278.husksync.data.Serializer;
 import net.william278.husksync.migrator.Migrator;
 import net.william278.husksync.user.CommandUser;
 import net.william278.husksync.user.OnlineUser;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -41,9 +46,14 @@ public class HuskSyncCommand extends Command implements TabProvider {
             "about", false,
             "reload", true,
             "migrate", true,
-            "update", true
+            "update", true,
+            "status", true,
+            "benchmark", true
     );
 
+    // The number of times each encoding is timed for by the benchmark, after as many warm-up runs
+    private static final int BENCHMARK_ITERATIONS = 50;
+
     private final UpdateChecker updateChecker;
     private final AboutMenu aboutMenu;
 
@@ -119,11 +129,87 @@ public class HuskSyncCommand extends Command implements TabProvider {
                 plugin.getLocales().getLocale("update_available", checked.getLatestVersion().toString(),
                         plugin.getPluginVersion().toString()).ifPresent(executor::sendMessage);
             });
+            case "status" -> this.sendStatus(executor);
+            case "benchmark" -> this.runBenchmark(executor, args);
             default -> plugin.getLocales().getLocale("error_invalid_syntax", getUsage())
                     .ifPresent(executor::sendMessage);
         }
     }
 
+    // Send the executor a summary of the plugin's performance metrics
+    private void sendStatus(@NotNull CommandUser executor) {
+        final List<String> metrics = plugin.getPerformanceMetrics().getSummary();
+        plugin.getLocales().getLocale("status_header")
+                .ifPresent(executor::sendMessage);
+        if (metrics.isEmpty()) {
+            plugin.getLocales().getLocale("status_no_metrics")
+                    .ifPresent(executor::sendMessage);
+            return;
+        }
+        metrics.forEach(line -> plugin.getLocales().getLocale("status_metric", line)
+                .ifPresent(executor::sendMessage));
+    }
+
+    // Compare the textual and binary encodings of an online player's data, for each binary-capable serializer
+    private void runBenchmark(@NotNull CommandUser executor, @NotNull String[] args) {
+        final Optional<OnlineUser> optionalUser = parseStringArg(args, 1).flatMap(name -> plugin.getOnlineUsers()
+                .stream().filter(user -> user.getUsername().equalsIgnoreCase(name)).findFirst());
+        if (optionalUser.isEmpty()) {
+            plugin.getLocales().getLocale("error_invalid_player")
+                    .ifPresent(executor::sendMessage);
+            return;
+        }
+
+        final OnlineUser user = optionalUser.get();
+        plugin.runSync(() -> {
+            final Map<Identifier, Data> data = user.getData(
+                    identifier -> plugin.getSerializers().get(identifier) instanceof Serializer.Binary
+            );
+            plugin.runAsync(() -> {
+                plugin.getLocales().getLocale("benchmark_header", user.getUsername(),
+                        Integer.toString(BENCHMARK_ITERATIONS)).ifPresent(executor::sendMessage);
+                data.forEach((identifier, value) -> this.benchmark(identifier, value)
+                        .ifPresent(executor::sendMessage));
+            });
+        });
+    }
+
+    // Time the text and binary encodings of a data type, on a copy of the data read back from its text encoding so
+    // that it isn't tied to any cache of its owner's encoded data
+    @NotNull
+    private Optional<MineDown> benchmark(@NotNull Identifier identifier, @NotNull Data data) {
+        final Serializer.Binary<Data> serializer = (Serializer.Binary<Data>) plugin.<Data>getSerializers()
+                .get(identifier);
+        final String text = serializer.serializeText(data);
+        final Data copy = serializer.deserializeText(text);
+        final byte[] binary = serializer.serializeBinary(copy);
+        return plugin.getLocales().getLocale("benchmark_result", identifier.toString(),
+                Integer.toString(text.getBytes(StandardCharsets.UTF_8).length),
+                formatMillis(getAverageMillis(() -> serializer.serializeText(copy))),
+                formatMillis(getAverageMillis(() -> serializer.deserializeText(text))),
+                Integer.toString(binary.length),
+                formatMillis(getAverageMillis(() -> serializer.serializeBinary(copy))),
+                formatMillis(getAverageMillis(() -> serializer.deserializeBinary(binary))));
+    }
+
+    // Format a time in milliseconds for the benchmark results
+    @NotNull
+    private static String formatMillis(double millis) {
+        return String.format("%.3f", millis);
+    }
+
+    // Get the average time a task takes to run, in milliseconds
+    private static double getAverageMillis(@NotNull Runnable task) {
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            task.run();
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / (double) BENCHMARK_ITERATIONS / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
     // Handle a migration console command input
     private void handleMigrationCommand(@NotNull String[] args) {
         if (args.length < 2) {
@@ -177,6 +263,8 @@ public class HuskSyncCommand extends Command implements TabProvider {
     public List<String> suggest(@NotNull CommandUser user, @NotNull String[] args) {
         return switch (args.length) {
             case 0, 1 -> SUB_COMMANDS.keySet().stream().sorted().toList();
+            case 2 -> args[0].equalsIgnoreCase("benchmark") ? plugin.getOnlineUsers().stream()
+                    .map(OnlineUser::getUsername).toList() : null;
             default -> null;
         };
     }
@@ -70,7 +70,7 @@ public abstract class ItemsCommand extends Command implements TabProvider {
     // View (and edit) the latest user data
     private void showLatestItems(@NotNull OnlineUser viewer, @NotNull User user) {
         plugin.getRedisManager().getUserData(user.getUuid(), user).thenAccept(data -> data
-                .or(() -> plugin.getDatabase().getLatestSnapshot(user))
+                .or(() -> plugin.getDatabase().getSharedLatestSnapshot(user))
                 .ifPresentOrElse(
                         snapshot -> this.showItems(
                                 viewer, snapshot.unpack(plugin), user,
@@ -78,7 +78,7 @@ public class UserDataCommand extends Command implements TabProvider {
                                     .ifPresent(executor::sendMessage)),
 
                     // Show the latest snapshot
-                    () -> plugin.getDatabase().getLatestSnapshot(user).ifPresentOrElse(
+                    () -> plugin.getDatabase().getSharedLatestSnapshot(user).ifPresentOrElse(
                             data -> DataSnapshotOverview.of(
                                     data.unpack(plugin), data.getFileSize(plugin), user, plugin
                             ).show(executor),
@@ -88,7 +88,7 @@ public class UserDataCommand extends Command implements TabProvider {
 
             case "list" -> {
                 // Check if there is data to display
-                final List<DataSnapshot.Packed> dataList = plugin.getDatabase().getAllSnapshots(user);
+                final List<DataSnapshot.Header> dataList = plugin.getDatabase().getSnapshotHeaders(user);
                 if (dataList.isEmpty()) {
                     plugin.getLocales().getLocale("error_no_data_to_display")
                             .ifPresent(executor::sendMessage);
@@ -189,6 +189,31 @@ public class Settings {
     @YamlKey("synchronization.network_latency_milliseconds")
     private int networkLatencyMilliseconds = 500;
 
+    @YamlComment("How long, in seconds, to spend saving user data when the server shuts down. Data that can't be saved "
+            + "in time is written to a file and saved when the server next starts up.")
+    @YamlKey("synchronization.shutdown_save_timeout_seconds")
+    private int shutdownSaveTimeout = 10;
+
+    @YamlComment("How long, in milliseconds, to reuse a user's fetched data for other requests for the same user "
+            + "(e.g. from commands, hooks and the API). Concurrent requests always share one fetch.")
+    @YamlKey("synchronization.request_coalesce_window_milliseconds")
+    private int requestCoalesceWindowMilliseconds = 250;
+
+    @YamlComment("How long, in microseconds, to spend capturing user data on the main thread each tick when saving "
+            + "many users at once (e.g. on world save). Captured data is serialized and saved off the main thread.")
+    @YamlKey("synchronization.capture_tick_budget_microseconds")
+    private int captureTickBudgetMicroseconds = 2000;
+
+    @YamlComment("How many threads to use for serializing captured user data off the main thread.")
+    @YamlKey("synchronization.snapshot_encoder_threads")
+    private int snapshotEncoderThreads = 2;
+
+    @YamlComment("How often, in seconds, to save each online user's data, spreading saves evenly over the interval "
+            + "instead of saving everyone at once when the world saves. Replaces world save snapshots when enabled. "
+            + "Set to 0 to disable.")
+    @YamlKey("synchronization.auto_save_interval_seconds")
+    private int autoSaveIntervalSeconds = 0;
+
     @YamlComment("Which data types to synchronize (Docs: https://william278.net/docs/husksync/sync-features)")
     @YamlKey("synchronization.features")
     private Map<String, Boolean> synchronizationFeatures = Identifier.getConfigMap();
@@ -356,6 +381,26 @@ public class Settings {
         return networkLatencyMilliseconds;
     }
 
+    public int getShutdownSaveTimeout() {
+        return shutdownSaveTimeout;
+    }
+
+    public int getRequestCoalesceWindowMilliseconds() {
+        return requestCoalesceWindowMilliseconds;
+    }
+
+    public int getCaptureTickBudgetMicroseconds() {
+        return captureTickBudgetMicroseconds;
+    }
+
+    public int getSnapshotEncoderThreads() {
+        return snapshotEncoderThreads;
+    }
+
+    public int getAutoSaveIntervalSeconds() {
+        return autoSaveIntervalSeconds;
+    }
+
     @NotNull
     public Map<String, Boolean> getSynchronizationFeatures() {
         return synchronizationFeatures;
@@ -384,7 +429,11 @@ public class Settings {
      */
     public enum TableName {
         USERS("husksync_users"),
-        USER_DATA("husksync_user_data");
+        USER_DATA("husksync_user_data"),
+        MAP_DATA("husksync_map_data"),
+        MAP_REFERENCES("husksync_map_references"),
+        DATA_SECTIONS("husksync_data_sections"),
+        DATA_SECTION_REFERENCES("husksync_data_section_references");
 
         private final String defaultName;
 
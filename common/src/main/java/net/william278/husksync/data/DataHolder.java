@@ -76,65 +76,65 @@ public interface DataHolder {
 
     @NotNull
     default Optional<Data.Location> getLocation() {
-        return Optional.ofNullable((Data.Location) getData().get(Identifier.LOCATION));
+        return getData(Identifier.LOCATION).map(Data.Location.class::cast);
     }
 
     default void setLocation(@NotNull Data.Location location) {
-        getData().put(Identifier.LOCATION, location);
+        setData(Identifier.LOCATION, location);
     }
 
     @NotNull
     default Optional<Data.Statistics> getStatistics() {
-        return Optional.ofNullable((Data.Statistics) getData().get(Identifier.STATISTICS));
+        return getData(Identifier.STATISTICS).map(Data.Statistics.class::cast);
     }
 
     default void setStatistics(@NotNull Data.Statistics statistics) {
-        getData().put(Identifier.STATISTICS, statistics);
+        setData(Identifier.STATISTICS, statistics);
     }
 
     @NotNull
     default Optional<Data.Health> getHealth() {
-        return Optional.ofNullable((Data.Health) getData().get(Identifier.HEALTH));
+        return getData(Identifier.HEALTH).map(Data.Health.class::cast);
     }
 
     default void setHealth(@NotNull Data.Health health) {
-        getData().put(Identifier.HEALTH, health);
+        setData(Identifier.HEALTH, health);
     }
 
     @NotNull
     default Optional<Data.Hunger> getHunger() {
-        return Optional.ofNullable((Data.Hunger) getData().get(Identifier.HUNGER));
+        return getData(Identifier.HUNGER).map(Data.Hunger.class::cast);
     }
 
     default void setHunger(@NotNull Data.Hunger hunger) {
-        getData().put(Identifier.HUNGER, hunger);
+        setData(Identifier.HUNGER, hunger);
     }
 
     @NotNull
     default Optional<Data.Experience> getExperience() {
-        return Optional.ofNullable((Data.Experience) getData().get(Identifier.EXPERIENCE));
+        return getData(Identifier.EXPERIENCE).map(Data.Experience.class::cast);
     }
 
     default void setExperience(@NotNull Data.Experience experience) {
-        getData().put(Identifier.EXPERIENCE, experience);
+        setData(Identifier.EXPERIENCE, experience);
     }
 
     @NotNull
     default Optional<Data.GameMode> getGameMode() {
-        return Optional.ofNullable((Data.GameMode) getData().get(Identifier.GAME_MODE));
+        return getData(Identifier.GAME_MODE).map(Data.GameMode.class::cast);
     }
 
     default void setGameMode(@NotNull Data.GameMode gameMode) {
-        getData().put(Identifier.GAME_MODE, gameMode);
+        setData(Identifier.GAME_MODE, gameMode);
     }
 
     @NotNull
     default Optional<Data.PersistentData> getPersistentData() {
-        return Optional.ofNullable((Data.PersistentData) getData().get(Identifier.PERSISTENT_DATA));
+        return getData(Identifier.PERSISTENT_DATA).map(Data.PersistentData.class::cast);
     }
 
     default void setPersistentData(@NotNull Data.PersistentData persistentData) {
-        getData().put(Identifier.PERSISTENT_DATA, persistentData);
+        setData(Identifier.PERSISTENT_DATA, persistentData);
     }
 
 }
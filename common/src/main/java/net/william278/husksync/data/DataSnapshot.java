@@ -35,7 +35,6 @@ import java.io.File;
 import java.time.OffsetDateTime;
 import java.util.*;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 /**
  * A snapshot of a {@link DataHolder} at a given time.
@@ -46,9 +45,10 @@ public class DataSnapshot {
 
     /*
      * Current version of the snapshot data format.
-     * HuskSync v3.0 uses v4; HuskSync v2.0 uses v3. HuskSync v1.0 uses v1 or v2
+     * HuskSync v3.1 uses v6 (or v5, before item data was binary); HuskSync v3.0 uses v4; HuskSync v2.0 uses v3.
+     * HuskSync v1.0 uses v1 or v2
      */
-    protected static final int CURRENT_FORMAT_VERSION = 4;
+    protected static final int CURRENT_FORMAT_VERSION = 6;
 
     @SerializedName("id")
     protected UUID id;
@@ -74,17 +74,23 @@ public class DataSnapshot {
     @SerializedName("data")
     protected Map<String, String> data;
 
+    // Sections written by binary serializers, kept as raw bytes rather than as text
+    @SerializedName("binary_data")
+    protected Map<String, byte[]> binaryData;
+
     @SerializedName("origin_server")
     protected String originServer;
 
     private DataSnapshot(@NotNull UUID id, boolean pinned, @NotNull OffsetDateTime timestamp,
                          @NotNull SaveCause saveCause, @NotNull Map<String, String> data,
-                         @NotNull Version minecraftVersion, @NotNull String platformType, int formatVersion, String originServer) {
+                         @NotNull Map<String, byte[]> binaryData, @NotNull Version minecraftVersion,
+                         @NotNull String platformType, int formatVersion, String originServer) {
         this.id = id;
         this.pinned = pinned;
         this.timestamp = timestamp;
         this.saveCause = saveCause;
         this.data = data;
+        this.binaryData = binaryData;
         this.minecraftVersion = minecraftVersion.toStringWithoutMetadata();
         this.platformType = platformType;
         this.formatVersion = formatVersion;
@@ -104,7 +110,22 @@ public class DataSnapshot {
     @NotNull
     @ApiStatus.Internal
     public static DataSnapshot.Packed deserialize(@NotNull HuskSync plugin, byte[] data) throws IllegalStateException {
-        final DataSnapshot.Packed snapshot = plugin.getDataAdapter().fromBytes(data, DataSnapshot.Packed.class);
+        return deserialize(plugin, plugin.getDataAdapter().fromBytes(data, DataSnapshot.Packed.class), data);
+    }
+
+    /**
+     * Validate a snapshot read by the data adapter, converting it to the current format version if necessary
+     *
+     * @param plugin   the plugin instance
+     * @param snapshot the snapshot read by the data adapter
+     * @param data     the bytes the snapshot was read from, used to convert legacy snapshots
+     * @return the validated snapshot
+     * @throws IllegalStateException if the snapshot can't be set on this server
+     */
+    @NotNull
+    @ApiStatus.Internal
+    public static DataSnapshot.Packed deserialize(@NotNull HuskSync plugin, @NotNull DataSnapshot.Packed snapshot,
+                                                  byte[] data) throws IllegalStateException {
         if (snapshot.getMinecraftVersion().compareTo(plugin.getMinecraftVersion()) > 0) {
             throw new IllegalStateException(String.format("Cannot set data for user because the Minecraft version of " +
                             "their user data (%s) is newer than the server's Minecraft version (%s)." +
@@ -119,7 +140,7 @@ public class DataSnapshot {
         }
         if (snapshot.getFormatVersion() < CURRENT_FORMAT_VERSION) {
             if (plugin.getLegacyConverter().isPresent()) {
-                return plugin.getLegacyConverter().get().convert(data);
+                return plugin.getLegacyConverter().get().convert(snapshot, data);
             }
             throw new IllegalStateException(String.format(
                     "No legacy converter to convert format version: %s", snapshot.getFormatVersion()
@@ -237,6 +258,8 @@ public class DataSnapshot {
      *     <li>2: HuskSync v1.5+</li>
      *     <li>3: HuskSync v2.0+</li>
      *     <li>4: HuskSync v3.0+</li>
+     *     <li>5: HuskSync v3.1+ (stored as a length-prefixed binary frame of UTF-8 data sections)</li>
+     *     <li>6: HuskSync v3.1+ (inventory and Ender Chest items stored as raw binary NBT sections)</li>
      * </ul>
      *
      * @return The format version of the snapshot
@@ -256,21 +279,51 @@ public class DataSnapshot {
 
         protected Packed(@NotNull UUID id, boolean pinned, @NotNull OffsetDateTime timestamp,
                          @NotNull SaveCause saveCause, @NotNull Map<String, String> data,
-                         @NotNull Version minecraftVersion, @NotNull String platformType, int formatVersion, String originServer) {
-            super(id, pinned, timestamp, saveCause, data, minecraftVersion, platformType, formatVersion, originServer);
+                         @NotNull Map<String, byte[]> binaryData, @NotNull Version minecraftVersion,
+                         @NotNull String platformType, int formatVersion, String originServer) {
+            super(id, pinned, timestamp, saveCause, data, binaryData, minecraftVersion, platformType, formatVersion,
+                    originServer);
         }
 
         @SuppressWarnings("unused")
         private Packed() {
         }
 
+        @NotNull
+        @ApiStatus.Internal
+        public static Packed from(@NotNull UUID id, boolean pinned, @NotNull OffsetDateTime timestamp,
+                                  @NotNull SaveCause saveCause, @NotNull Map<String, String> data,
+                                  @NotNull Version minecraftVersion, @NotNull String platformType, int formatVersion,
+                                  String originServer) {
+            return from(
+                    id, pinned, timestamp, saveCause, data, Map.of(),
+                    minecraftVersion, platformType, formatVersion, originServer
+            );
+        }
+
+        @NotNull
+        @ApiStatus.Internal
+        public static Packed from(@NotNull UUID id, boolean pinned, @NotNull OffsetDateTime timestamp,
+                                  @NotNull SaveCause saveCause, @NotNull Map<String, String> data,
+                                  @NotNull Map<String, byte[]> binaryData, @NotNull Version minecraftVersion,
+                                  @NotNull String platformType, int formatVersion, String originServer) {
+            return new Packed(
+                    id, pinned, timestamp, saveCause, data, binaryData,
+                    minecraftVersion, platformType, formatVersion, originServer
+            );
+        }
+
         @ApiStatus.Internal
         public void edit(@NotNull HuskSync plugin, @NotNull Consumer<Unpacked> editor) {
             final Unpacked data = unpack(plugin);
             editor.accept(data);
             this.pinned = data.isPinned();
             this.saveCause = data.getSaveCause();
-            this.data = data.serializeData(plugin);
+            final Map<String, String> serialized = new LinkedHashMap<>();
+            final Map<String, byte[]> binary = new LinkedHashMap<>();
+            data.serializeData(plugin, serialized, binary);
+            this.data = serialized;
+            this.binaryData = binary;
         }
 
         /**
@@ -281,7 +334,7 @@ public class DataSnapshot {
         @NotNull
         public Packed copy() {
             return new Packed(
-                    UUID.randomUUID(), pinned, OffsetDateTime.now(), saveCause, data,
+                    UUID.randomUUID(), pinned, OffsetDateTime.now(), saveCause, data, getSerializedBinaryData(),
                     getMinecraftVersion(), platformType, formatVersion, originServer
             );
         }
@@ -298,6 +351,43 @@ public class DataSnapshot {
             return plugin.getDataAdapter().toJson(this);
         }
 
+        /**
+         * Get the serialized text data sections of the snapshot, keyed by identifier
+         *
+         * @return The serialized data map
+         */
+        @NotNull
+        @ApiStatus.Internal
+        public Map<String, String> getSerializedData() {
+            return data;
+        }
+
+        /**
+         * Get the data sections of the snapshot written by {@link Serializer.Binary binary serializers}, keyed by
+         * identifier
+         *
+         * @return The binary data map
+         */
+        @NotNull
+        @ApiStatus.Internal
+        public Map<String, byte[]> getSerializedBinaryData() {
+            return binaryData != null ? binaryData : Map.of();
+        }
+
+        /**
+         * <b>(Internal)</b> Upgrade the format version of this snapshot to the current version.
+         * <p>
+         * Only valid for snapshots whose serialized data is already laid out in the current format
+         *
+         * @return This snapshot, upgraded to the current format version
+         */
+        @NotNull
+        @ApiStatus.Internal
+        public Packed upgradeFormatVersion() {
+            this.formatVersion = CURRENT_FORMAT_VERSION;
+            return this;
+        }
+
         @ApiStatus.Internal
         public int getFileSize(@NotNull HuskSync plugin) {
             return asBytes(plugin).length;
@@ -306,7 +396,7 @@ public class DataSnapshot {
         @NotNull
         public DataSnapshot.Unpacked unpack(@NotNull HuskSync plugin) {
             return new Unpacked(
-                    id, pinned, timestamp, saveCause, data,
+                    id, pinned, timestamp, saveCause, data, getSerializedBinaryData(),
                     getMinecraftVersion(), platformType, formatVersion, plugin, originServer
             );
         }
@@ -323,55 +413,129 @@ public class DataSnapshot {
         @Expose(serialize = false, deserialize = false)
         private final Map<Identifier, Data> deserialized;
 
+        @Expose(serialize = false, deserialize = false)
+        private final HuskSync plugin;
+
+        // Whether every serialized data section has been deserialized
+        @Expose(serialize = false, deserialize = false)
+        private boolean fullyDeserialized;
+
+        // Whether the serialized data sections have been deserialized into the data map exposed by getData(), which
+        // is then the source of truth for the registered data types
+        @Expose(serialize = false, deserialize = false)
+        private boolean dataExposed;
+
         private Unpacked(@NotNull UUID id, boolean pinned, @NotNull OffsetDateTime timestamp,
                          @NotNull SaveCause saveCause, @NotNull Map<String, String> data,
-                         @NotNull Version minecraftVersion, @NotNull String platformType, int formatVersion,
-                         @NotNull HuskSync plugin, String originServer) {
-            super(id, pinned, timestamp, saveCause, data, minecraftVersion, platformType, formatVersion, originServer);
-            this.deserialized = deserializeData(plugin);
+                         @NotNull Map<String, byte[]> binaryData, @NotNull Version minecraftVersion,
+                         @NotNull String platformType, int formatVersion, @NotNull HuskSync plugin,
+                         String originServer) {
+            super(id, pinned, timestamp, saveCause, data, binaryData, minecraftVersion, platformType, formatVersion,
+                    originServer);
+            this.deserialized = new IdentifierMap<>(plugin.getIdentifierRegistry());
+            this.plugin = plugin;
         }
 
         private Unpacked(@NotNull UUID id, boolean pinned, @NotNull OffsetDateTime timestamp,
                          @NotNull SaveCause saveCause, @NotNull Map<Identifier, Data> data,
-                         @NotNull Version minecraftVersion, @NotNull String platformType, int formatVersion, String originServer) {
-            super(id, pinned, timestamp, saveCause, Map.of(), minecraftVersion, platformType, formatVersion, originServer);
+                         @NotNull Map<String, String> serialized, @NotNull Map<String, byte[]> binarySerialized,
+                         @NotNull Version minecraftVersion, @NotNull String platformType, int formatVersion,
+                         @NotNull HuskSync plugin, String originServer) {
+            super(id, pinned, timestamp, saveCause, serialized, binarySerialized, minecraftVersion, platformType,
+                    formatVersion, originServer);
             this.deserialized = data;
+            this.plugin = plugin;
+            this.fullyDeserialized = true;
         }
 
-        @NotNull
-        @ApiStatus.Internal
-        private Map<Identifier, Data> deserializeData(@NotNull HuskSync plugin) {
-            return data.entrySet().stream()
-                    .map((entry) -> plugin.getIdentifier(entry.getKey()).map(id -> Map.entry(
-                            id, plugin.getSerializers().get(id).deserialize(entry.getValue())
-                    )).orElse(null))
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        // Deserialize a data section, if it is present and hasn't already been deserialized
+        private void deserializeData(@NotNull Identifier identifier) {
+            if (fullyDeserialized || deserialized.containsKey(identifier)) {
+                return;
+            }
+            final Serializer<Data> serializer = plugin.<Data>getSerializers().get(identifier);
+            if (serializer == null) {
+                return;
+            }
+
+            // Binary sections are read as bytes; text sections are read by the serializer's textual format
+            final byte[] binary = binaryData.get(identifier.toString());
+            if (binary != null && serializer instanceof Serializer.Binary<Data> binarySerializer) {
+                deserialized.put(identifier, binarySerializer.deserializeBinary(binary));
+                return;
+            }
+            final String serialized = data.get(identifier.toString());
+            if (serialized != null) {
+                deserialized.put(identifier, serializer.deserialize(serialized));
+            }
         }
 
-        @NotNull
+        // Serialize the data into text and binary sections, reusing the original serialized sections for data that
+        // was never deserialized. Once the data map has been exposed, only sections of unregistered data types are
+        // reused, so that data removed from the map is not restored
         @ApiStatus.Internal
-        private Map<String, String> serializeData(@NotNull HuskSync plugin) {
-            return deserialized.entrySet().stream()
-                    .map((entry) -> Map.entry(entry.getKey().toString(),
-                            Objects.requireNonNull(
-                                    plugin.getSerializers().get(entry.getKey()),
-                                    String.format("No serializer found for %s", entry.getKey())
-                            ).serialize(entry.getValue())))
-                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        private void serializeData(@NotNull HuskSync plugin, @NotNull Map<String, String> serialized,
+                                   @NotNull Map<String, byte[]> binary) {
+            serialized.putAll(data);
+            binary.putAll(binaryData);
+            if (dataExposed) {
+                plugin.getRegisteredDataTypes().forEach(identifier -> {
+                    serialized.remove(identifier.toString());
+                    binary.remove(identifier.toString());
+                });
+            }
+            deserialized.forEach((identifier, value) -> {
+                final Serializer<Data> serializer = Objects.requireNonNull(
+                        plugin.<Data>getSerializers().get(identifier),
+                        String.format("No serializer found for %s", identifier)
+                );
+                if (serializer instanceof Serializer.Binary<Data> binarySerializer) {
+                    serialized.remove(identifier.toString());
+                    binary.put(identifier.toString(), binarySerializer.serializeBinary(value));
+                } else {
+                    binary.remove(identifier.toString());
+                    serialized.put(identifier.toString(), serializer.serialize(value));
+                }
+            });
         }
 
         /**
          * Get the data the snapshot is holding
+         * <p>
+         * This will deserialize all data the snapshot holds; prefer using {@link #getData(Identifier)} or the typed
+         * getters to deserialize only the data that is needed
          *
          * @return The data map
          * @since 3.0
          */
         @NotNull
         public Map<Identifier, Data> getData() {
+            if (!fullyDeserialized) {
+                plugin.getRegisteredDataTypes().forEach(this::deserializeData);
+                fullyDeserialized = true;
+                dataExposed = true;
+            }
             return deserialized;
         }
 
+        /**
+         * Get data of a given type held by the snapshot, deserializing it on first access
+         *
+         * @param identifier The identifier of the data to get
+         * @return The data, if present
+         * @since 3.0
+         */
+        @Override
+        public Optional<? extends Data> getData(@NotNull Identifier identifier) {
+            this.deserializeData(identifier);
+            return Optional.ofNullable(deserialized.get(identifier));
+        }
+
+        @Override
+        public void setData(@NotNull Identifier identifier, @NotNull Data data) {
+            deserialized.put(identifier, data);
+        }
+
         /**
          * Pack the {@link DataSnapshot} into a {@link DataSnapshot.Packed packed} snapshot
          *
@@ -382,14 +546,127 @@ public class DataSnapshot {
         @NotNull
         @ApiStatus.Internal
         public DataSnapshot.Packed pack(@NotNull HuskSync plugin) {
+            final Map<String, String> serialized = new LinkedHashMap<>();
+            final Map<String, byte[]> binary = new LinkedHashMap<>();
+            serializeData(plugin, serialized, binary);
             return new DataSnapshot.Packed(
-                    id, pinned, timestamp, saveCause, serializeData(plugin),
+                    id, pinned, timestamp, saveCause, serialized, binary,
                     getMinecraftVersion(), platformType, formatVersion, originServer
             );
         }
 
     }
 
+    /**
+     * The header of a saved {@link DataSnapshot}, holding its metadata without its data.
+     * <p>
+     * Headers are cheap to fetch, and are used for listing a user's snapshots
+     *
+     * @since 3.1
+     */
+    public static class Header {
+
+        private final UUID id;
+        private final boolean pinned;
+        private final OffsetDateTime timestamp;
+        private final SaveCause saveCause;
+        private final String originServer;
+        private final int fileSize;
+
+        private Header(@NotNull UUID id, boolean pinned, @NotNull OffsetDateTime timestamp,
+                       @NotNull SaveCause saveCause, @Nullable String originServer, int fileSize) {
+            this.id = id;
+            this.pinned = pinned;
+            this.timestamp = timestamp;
+            this.saveCause = saveCause;
+            this.originServer = originServer;
+            this.fileSize = fileSize;
+        }
+
+        @NotNull
+        @ApiStatus.Internal
+        public static Header of(@NotNull UUID id, boolean pinned, @NotNull OffsetDateTime timestamp,
+                                @NotNull SaveCause saveCause, @Nullable String originServer, int fileSize) {
+            return new Header(id, pinned, timestamp, saveCause, originServer, fileSize);
+        }
+
+        /**
+         * Return the ID of the snapshot
+         *
+         * @return The snapshot ID
+         * @since 3.1
+         */
+        @NotNull
+        public UUID getId() {
+            return id;
+        }
+
+        /**
+         * Get the short display ID of the snapshot
+         *
+         * @return The short display ID
+         * @since 3.1
+         */
+        @NotNull
+        public String getShortId() {
+            return id.toString().substring(0, 8);
+        }
+
+        /**
+         * Get whether the snapshot is pinned
+         *
+         * @return Whether the snapshot is pinned
+         * @since 3.1
+         */
+        public boolean isPinned() {
+            return pinned;
+        }
+
+        /**
+         * Get when the snapshot was created
+         *
+         * @return The {@link OffsetDateTime timestamp} of the snapshot
+         * @since 3.1
+         */
+        @NotNull
+        public OffsetDateTime getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Get why the snapshot was created
+         *
+         * @return The {@link SaveCause data save cause} of the snapshot
+         * @since 3.1
+         */
+        @NotNull
+        public SaveCause getSaveCause() {
+            return saveCause;
+        }
+
+        /**
+         * Get the name of the server the snapshot was created on
+         *
+         * @return The origin server name, or {@code "N/A"} if it is not known
+         * @since 3.1
+         */
+        @NotNull
+        public String getOriginServer() {
+            return originServer != null ? originServer : "N/A";
+        }
+
+        /**
+         * Get the size of the snapshot as it is stored, in bytes
+         *
+         * @return The stored size of the snapshot
+         * @since 3.1
+         */
+        public int getFileSize() {
+            return fileSize;
+        }
+
+    }
+
     /**
      * A builder for {@link DataSnapshot}s.
      *
@@ -403,11 +680,15 @@ public class DataSnapshot {
         private boolean pinned;
         private OffsetDateTime timestamp;
         private final Map<Identifier, Data> data;
+        private final Map<String, String> serialized;
+        private final Map<String, byte[]> binarySerialized;
 
         private Builder(@NotNull HuskSync plugin) {
             this.plugin = plugin;
             this.pinned = false;
-            this.data = new HashMap<>();
+            this.data = new IdentifierMap<>(plugin.getIdentifierRegistry());
+            this.serialized = new LinkedHashMap<>();
+            this.binarySerialized = new LinkedHashMap<>();
             this.timestamp = OffsetDateTime.now();
         }
 
@@ -489,6 +770,20 @@ public class DataSnapshot {
             return this;
         }
 
+        // Set already-serialized data sections, which are packed as-is unless data is also set for the identifier
+        @NotNull
+        Builder serializedData(@NotNull Map<Identifier, String> serialized) {
+            serialized.forEach((identifier, section) -> this.serialized.put(identifier.toString(), section));
+            return this;
+        }
+
+        // Set already-serialized binary data sections, packed as-is unless data is also set for the identifier
+        @NotNull
+        Builder serializedBinaryData(@NotNull Map<Identifier, byte[]> serialized) {
+            serialized.forEach((identifier, section) -> this.binarySerialized.put(identifier.toString(), section));
+            return this;
+        }
+
         /**
          * Set the inventory contents of the snapshot
          * <p>
@@ -672,11 +967,13 @@ public class DataSnapshot {
                     timestamp,
                     saveCause,
                     data,
+                    serialized,
+                    binarySerialized,
                     plugin.getMinecraftVersion(),
                     plugin.getPlatformType(),
                     DataSnapshot.CURRENT_FORMAT_VERSION,
+                    plugin,
                     setOriginServer()
-
             );
 
         }
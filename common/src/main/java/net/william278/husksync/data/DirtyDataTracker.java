@@ -0,0 +1,226 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.data;
+
+import net.william278.husksync.HuskSync;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks which expensive data types of online players have changed since they were last serialized, so that
+ * periodic snapshots can reuse the serialized sections of data types that are known to be untouched.
+ * <p>
+ * Platforms mark data types dirty from the events that modify them. Because events cannot observe every change
+ * (e.g. items edited by other plugins, or statistics that increment without firing an event), sections are only
+ * reused for {@link DataSnapshot.SaveCause#WORLD_SAVE world save} snapshots, and only for a limited time after
+ * they were captured; every other snapshot captures all data.
+ *
+ * @since 3.1
+ */
+public class DirtyDataTracker {
+
+    // The data types tracked, in the order of their dirty bit index
+    private static final List<Identifier> TRACKED_TYPES = List.of(
+            Identifier.INVENTORY, Identifier.ENDER_CHEST, Identifier.ADVANCEMENTS, Identifier.STATISTICS
+    );
+
+    // The maximum age of a serialized section before it is captured again, even if it is not known to be dirty
+    private static final long MAX_SECTION_AGE_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private final HuskSync plugin;
+    private final Map<UUID, TrackedData> players;
+
+    public DirtyDataTracker(@NotNull HuskSync plugin) {
+        this.plugin = plugin;
+        this.players = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Start tracking changes to a player's data
+     *
+     * @param uuid the UUID of the player
+     */
+    public void track(@NotNull UUID uuid) {
+        players.put(uuid, new TrackedData());
+    }
+
+    /**
+     * Stop tracking changes to a player's data, discarding their serialized sections
+     *
+     * @param uuid the UUID of the player
+     */
+    public void untrack(@NotNull UUID uuid) {
+        players.remove(uuid);
+    }
+
+    /**
+     * Mark a data type of a player as modified. Does nothing if the player or data type is not tracked
+     *
+     * @param uuid       the UUID of the player
+     * @param identifier the identifier of the modified data type
+     */
+    public void markDirty(@NotNull UUID uuid, @NotNull Identifier identifier) {
+        final TrackedData data = players.get(uuid);
+        final int index = TRACKED_TYPES.indexOf(identifier);
+        if (data != null && index != -1) {
+            data.versions.incrementAndGet(index);
+        }
+    }
+
+    /**
+     * Mark every data type of a player as modified
+     *
+     * @param uuid the UUID of the player
+     */
+    public void markAllDirty(@NotNull UUID uuid) {
+        final TrackedData data = players.get(uuid);
+        if (data != null) {
+            for (int i = 0; i < TRACKED_TYPES.size(); i++) {
+                data.versions.incrementAndGet(i);
+            }
+        }
+    }
+
+    /**
+     * Capture a snapshot of a player's data, reusing the serialized sections of data types that haven't been
+     * modified since they were last captured, if the save cause permits it.
+     * <p>
+     * This reads the player's live state, so should be called on the thread that owns it. The returned capture can
+     * then be {@link Capture#pack() packed} on any thread
+     *
+     * @param uuid   the UUID of the player
+     * @param holder the player's data holder
+     * @param cause  the cause of the snapshot
+     * @return the captured snapshot
+     */
+    @NotNull
+    @ApiStatus.Internal
+    public Capture capture(@NotNull UUID uuid, @NotNull UserDataHolder holder, @NotNull DataSnapshot.SaveCause cause) {
+        final TrackedData data = players.get(uuid);
+        if (data == null) {
+            return new Capture(holder.captureSnapshot(cause), null, new long[0], 0, Map.of());
+        }
+
+        // Read versions before capturing, so modifications made during capture mark the sections dirty
+        final long[] versions = new long[TRACKED_TYPES.size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = data.versions.get(i);
+        }
+        final long now = System.currentTimeMillis();
+        final Map<Identifier, Section> reused = cause == DataSnapshot.SaveCause.WORLD_SAVE
+                ? data.getReusableSections(versions, now) : Map.of();
+
+        final Map<Identifier, String> serialized = new HashMap<>();
+        final Map<Identifier, byte[]> binarySerialized = new HashMap<>();
+        reused.forEach((identifier, section) -> {
+            if (section.binaryData() != null) {
+                binarySerialized.put(identifier, section.binaryData());
+            } else {
+                serialized.put(identifier, section.data());
+            }
+        });
+        final DataSnapshot.Unpacked snapshot = DataSnapshot.builder(plugin)
+                .data(holder.getData(identifier -> !reused.containsKey(identifier)))
+                .serializedData(serialized)
+                .serializedBinaryData(binarySerialized)
+                .saveCause(cause)
+                .build();
+        return new Capture(snapshot, data, versions, now, reused);
+    }
+
+    /**
+     * A captured snapshot of a player's data, which has not been serialized yet
+     */
+    public final class Capture {
+
+        private final DataSnapshot.Unpacked snapshot;
+        @Nullable
+        private final TrackedData data;
+        private final long[] versions;
+        private final long capturedAt;
+        private final Map<Identifier, Section> reused;
+
+        private Capture(@NotNull DataSnapshot.Unpacked snapshot, @Nullable TrackedData data, long[] versions,
+                        long capturedAt, @NotNull Map<Identifier, Section> reused) {
+            this.snapshot = snapshot;
+            this.data = data;
+            this.versions = versions;
+            this.capturedAt = capturedAt;
+            this.reused = reused;
+        }
+
+        /**
+         * Serialize the captured snapshot, remembering the freshly serialized sections of tracked data types
+         *
+         * @return the packed snapshot
+         */
+        @NotNull
+        public DataSnapshot.Packed pack() {
+            final DataSnapshot.Packed packed = snapshot.pack(plugin);
+            plugin.getPerformanceMetrics().add("snapshot.sections_reused", reused.size());
+            if (data == null) {
+                return packed;
+            }
+            for (int i = 0; i < versions.length; i++) {
+                final Identifier identifier = TRACKED_TYPES.get(i);
+                final String section = packed.getSerializedData().get(identifier.toString());
+                final byte[] binarySection = packed.getSerializedBinaryData().get(identifier.toString());
+                if (!reused.containsKey(identifier) && (section != null || binarySection != null)) {
+                    data.sections.put(identifier, new Section(versions[i], capturedAt, section, binarySection));
+                }
+            }
+            return packed;
+        }
+
+    }
+
+    // Tracked modification versions and last serialized sections of a player's data
+    private static final class TrackedData {
+
+        private final AtomicLongArray versions = new AtomicLongArray(TRACKED_TYPES.size());
+        private final Map<Identifier, Section> sections = new ConcurrentHashMap<>();
+
+        @NotNull
+        private Map<Identifier, Section> getReusableSections(long[] versions, long now) {
+            final Map<Identifier, Section> reusable = new HashMap<>();
+            for (int i = 0; i < versions.length; i++) {
+                final Identifier identifier = TRACKED_TYPES.get(i);
+                final Section section = sections.get(identifier);
+                if (section != null && section.version() == versions[i]
+                        && now - section.capturedAt() < MAX_SECTION_AGE_MILLIS) {
+                    reusable.put(identifier, section);
+                }
+            }
+            return reusable;
+        }
+
+    }
+
+    // A serialized text or binary data section, with the version of the data type it was captured at
+    private record Section(long version, long capturedAt, @Nullable String data, @Nullable byte[] binaryData) {
+    }
+
+}
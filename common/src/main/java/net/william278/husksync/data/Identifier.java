@@ -46,10 +46,13 @@ public class Identifier {
     public static Identifier PERSISTENT_DATA = huskSync("persistent_data", true);
 
     private final Key key;
+    private final String keyString;
     private final boolean configDefault;
+    private int ordinal = -1;
 
     private Identifier(@NotNull Key key, boolean configDefault) {
         this.key = key;
+        this.keyString = key.asString();
         this.configDefault = configDefault;
     }
 
@@ -157,7 +160,7 @@ public class Identifier {
     @NotNull
     @Override
     public String toString() {
-        return key.asString();
+        return keyString;
     }
 
     /**
@@ -174,4 +177,18 @@ public class Identifier {
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    // Get the ordinal assigned to this identifier when it was registered, or -1 if it is not registered
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
 }
@@ -0,0 +1,201 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.data;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * A map keyed by {@link Identifier}s, backed by an array indexed by the ordinals of an {@link IdentifierRegistry}.
+ * <p>
+ * Entries are iterated in order of registration. Identifiers that aren't registered are held in a fallback map,
+ * so that data for them can still be set. Like a {@link HashMap}, this map is not thread-safe.
+ * <p>
+ * Null values are not supported: a missing value and a {@code null} value are indistinguishable, so {@link #put} and
+ * {@link Entry#setValue} throw a {@link NullPointerException} when given {@code null}
+ *
+ * @param <V> the type of mapped values
+ * @since 3.1
+ */
+public class IdentifierMap<V> extends AbstractMap<Identifier, V> {
+
+    private final IdentifierRegistry registry;
+    private Object[] values;
+    private int size;
+    private Map<Identifier, V> unregistered;
+
+    public IdentifierMap(@NotNull IdentifierRegistry registry) {
+        this.registry = registry;
+        this.values = new Object[registry.size()];
+    }
+
+    @Override
+    public int size() {
+        return size + (unregistered == null ? 0 : unregistered.size());
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (!(key instanceof Identifier identifier)) {
+            return null;
+        }
+        final int ordinal = registry.getOrdinal(identifier);
+        if (ordinal == -1) {
+            return unregistered == null ? null : unregistered.get(identifier);
+        }
+        return ordinal < values.length ? (V) values[ordinal] : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(@NotNull Identifier key, @NotNull V value) {
+        Objects.requireNonNull(value, "Null values are not supported");
+        final int ordinal = registry.getOrdinal(key);
+        if (ordinal == -1) {
+            if (unregistered == null) {
+                unregistered = new HashMap<>();
+            }
+            return unregistered.put(key, value);
+        }
+        if (ordinal >= values.length) {
+            values = Arrays.copyOf(values, registry.size());
+        }
+        final V previous = (V) values[ordinal];
+        values[ordinal] = value;
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        if (!(key instanceof Identifier identifier)) {
+            return null;
+        }
+        final int ordinal = registry.getOrdinal(identifier);
+        if (ordinal == -1) {
+            return unregistered == null ? null : unregistered.remove(identifier);
+        }
+        if (ordinal >= values.length || values[ordinal] == null) {
+            return null;
+        }
+        final V previous = (V) values[ordinal];
+        values[ordinal] = null;
+        size--;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+        unregistered = null;
+    }
+
+    @NotNull
+    @Override
+    public Set<Entry<Identifier, V>> entrySet() {
+        return new AbstractSet<>() {
+            @NotNull
+            @Override
+            public Iterator<Entry<Identifier, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return IdentifierMap.this.size();
+            }
+        };
+    }
+
+    // Iterates over the registered entries by ordinal, then over the unregistered entries
+    private final class EntryIterator implements Iterator<Entry<Identifier, V>> {
+
+        private int next = advance(0);
+        private int current = -1;
+        private Iterator<Entry<Identifier, V>> fallback;
+
+        private int advance(int from) {
+            while (from < values.length && values[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next < values.length) {
+                return true;
+            }
+            if (fallback == null) {
+                fallback = unregistered == null ? Collections.emptyIterator() : unregistered.entrySet().iterator();
+            }
+            return fallback.hasNext();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<Identifier, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (next >= values.length) {
+                current = -1;
+                return fallback.next();
+            }
+            current = next;
+            next = advance(next + 1);
+            final int ordinal = current;
+            return new SimpleEntry<>(Objects.requireNonNull(registry.get(ordinal)), (V) values[ordinal]) {
+                @Override
+                public V setValue(V value) {
+                    values[ordinal] = Objects.requireNonNull(value, "Null values are not supported");
+                    return super.setValue(value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (fallback != null && current == -1) {
+                fallback.remove();
+                return;
+            }
+            if (current == -1 || values[current] == null) {
+                throw new IllegalStateException();
+            }
+            values[current] = null;
+            size--;
+            current = -1;
+        }
+
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.data;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registry of the {@link Identifier}s of registered data types.
+ * <p>
+ * Each identifier is interned when it is registered and given a dense ordinal, in order of registration, which
+ * {@link IdentifierMap}s use as an index into their backing array
+ *
+ * @since 3.1
+ */
+public class IdentifierRegistry {
+
+    private final Map<String, Integer> identifiers;
+    private volatile Identifier[] ordinals;
+
+    public IdentifierRegistry() {
+        this.identifiers = new ConcurrentHashMap<>();
+        this.ordinals = new Identifier[0];
+    }
+
+    /**
+     * Register an identifier, if an identifier with the same key has not already been registered
+     *
+     * @param identifier the identifier to register
+     * @return the registered identifier with the same key
+     */
+    @NotNull
+    public synchronized Identifier register(@NotNull Identifier identifier) {
+        final Integer registered = identifiers.get(identifier.toString());
+        if (registered != null) {
+            return ordinals[registered];
+        }
+        final int ordinal = ordinals.length;
+        final Identifier[] expanded = Arrays.copyOf(ordinals, ordinal + 1);
+        identifier.setOrdinal(ordinal);
+        expanded[ordinal] = identifier;
+        ordinals = expanded;
+        identifiers.put(identifier.toString(), ordinal);
+        return identifier;
+    }
+
+    /**
+     * Get a registered identifier by its key
+     *
+     * @param key the key of the identifier, e.g. {@code husksync:inventory}
+     * @return the identifier, if one is registered with the key
+     */
+    public Optional<Identifier> get(@NotNull String key) {
+        return Optional.ofNullable(identifiers.get(key)).map(this::get);
+    }
+
+    /**
+     * Get the ordinal of an identifier
+     *
+     * @param identifier the identifier
+     * @return the ordinal, or {@code -1} if no identifier with the same key is registered
+     */
+    public int getOrdinal(@NotNull Identifier identifier) {
+        final Identifier[] ordinals = this.ordinals;
+        final int ordinal = identifier.getOrdinal();
+        if (ordinal >= 0 && ordinal < ordinals.length && ordinals[ordinal] == identifier) {
+            return ordinal;
+        }
+        final Integer registered = identifiers.get(identifier.toString());
+        return registered == null ? -1 : registered;
+    }
+
+    /**
+     * Get the identifier registered with an ordinal
+     *
+     * @param ordinal the ordinal
+     * @return the identifier, or {@code null} if the ordinal is out of range
+     */
+    @Nullable
+    public Identifier get(int ordinal) {
+        final Identifier[] ordinals = this.ordinals;
+        return ordinal >= 0 && ordinal < ordinals.length ? ordinals[ordinal] : null;
+    }
+
+    /**
+     * Get the number of registered identifiers
+     *
+     * @return the number of registered identifiers
+     */
+    public int size() {
+        return ordinals.length;
+    }
+
+}
@@ -28,6 +28,41 @@ public interface Serializer<T extends Data> {
     @NotNull
     String serialize(@NotNull T element) throws SerializationException;
 
+    /**
+     * A serializer that encodes data as bytes, rather than as text.
+     * <p>
+     * Binary data is carried in snapshots as raw byte sections, written by {@link #serializeBinary(Data)}. Text
+     * sections of legacy snapshots were written in the serializer's textual format, and are read by
+     * {@link #deserialize(String)} with {@link #deserializeText(String)}. The textual format is still written by
+     * {@link #serializeText(Data)}, for comparing the two formats
+     *
+     * @param <T> the type of data serialized
+     * @since 3.1
+     */
+    interface Binary<T extends Data> extends Serializer<T> {
+
+        T deserializeBinary(byte[] serialized) throws DeserializationException;
+
+        byte[] serializeBinary(@NotNull T element) throws SerializationException;
+
+        T deserializeText(@NotNull String serialized) throws DeserializationException;
+
+        @NotNull
+        String serializeText(@NotNull T element) throws SerializationException;
+
+        @Override
+        default T deserialize(@NotNull String serialized) throws DeserializationException {
+            return deserializeText(serialized);
+        }
+
+        @NotNull
+        @Override
+        default String serialize(@NotNull T element) throws SerializationException {
+            return serializeText(element);
+        }
+
+    }
+
     static final class DeserializationException extends IllegalStateException {
         DeserializationException(@NotNull String message, @NotNull Throwable cause) {
             super(message, cause);
@@ -24,8 +24,8 @@ import net.william278.husksync.HuskSync;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Predicate;
 
 /**
  * A holder of data in the form of {@link Data}s, which can be synced
@@ -41,11 +41,26 @@ public interface UserDataHolder extends DataHolder {
     @Override
     @NotNull
     default Map<Identifier, Data> getData() {
-        return getPlugin().getRegisteredDataTypes().stream()
-                .filter(type -> type.isCustom() || getPlugin().getSettings().isSyncFeatureEnabled(type))
-                .map(id -> Map.entry(id, getData(id)))
-                .filter(data -> data.getValue().isPresent())
-                .collect(HashMap::new, (map, data) -> map.put(data.getKey(), data.getValue().get()), HashMap::putAll);
+        return getData(identifier -> true);
+    }
+
+    /**
+     * Get the data that is enabled for syncing in the config, for the data types accepted by a filter
+     *
+     * @param filter the filter of data types to get
+     * @return the data that is enabled for syncing and accepted by the filter
+     * @since 3.1
+     */
+    @NotNull
+    default Map<Identifier, Data> getData(@NotNull Predicate<Identifier> filter) {
+        final HuskSync plugin = getPlugin();
+        final Map<Identifier, Data> data = new IdentifierMap<>(plugin.getIdentifierRegistry());
+        for (Identifier type : plugin.getRegisteredDataTypes()) {
+            if ((type.isCustom() || plugin.getSettings().isSyncFeatureEnabled(type)) && filter.test(type)) {
+                getData(type).ifPresent(value -> data.put(type, value));
+            }
+        }
+        return data;
     }
 
     /**
@@ -59,7 +74,22 @@ public interface UserDataHolder extends DataHolder {
      */
     @Override
     default void setData(@NotNull Identifier identifier, @NotNull Data data) {
-        getPlugin().runSync(() -> data.apply(this, getPlugin()));
+        getPlugin().runSync(() -> {
+            final long startedAt = System.nanoTime();
+            data.apply(this, getPlugin());
+            markDirty(identifier);
+            getPlugin().recordMainThreadWork(startedAt);
+        });
+    }
+
+    /**
+     * Mark a data type of this holder as modified, so that it is captured again on the next snapshot
+     *
+     * @param identifier the {@link Identifier} of the modified data
+     * @since 3.1
+     */
+    @ApiStatus.Internal
+    default void markDirty(@NotNull Identifier identifier) {
     }
 
     /**
@@ -71,7 +101,19 @@ public interface UserDataHolder extends DataHolder {
      */
     @NotNull
     default DataSnapshot.Packed createSnapshot(@NotNull DataSnapshot.SaveCause saveCause) {
-        return DataSnapshot.builder(getPlugin()).data(this.getData()).saveCause(saveCause).buildAndPack();
+        return captureSnapshot(saveCause).pack(getPlugin());
+    }
+
+    /**
+     * Capture the data of this data owner into an unpacked snapshot, without serializing it
+     *
+     * @param saveCause the cause of the snapshot
+     * @return the unpacked snapshot
+     * @since 3.1
+     */
+    @NotNull
+    default DataSnapshot.Unpacked captureSnapshot(@NotNull DataSnapshot.SaveCause saveCause) {
+        return DataSnapshot.builder(getPlugin()).data(this.getData()).saveCause(saveCause).build();
     }
 
     /**
@@ -88,16 +130,19 @@ public interface UserDataHolder extends DataHolder {
      */
     default void applySnapshot(@NotNull DataSnapshot.Packed snapshot, @NotNull ThrowingConsumer<UserDataHolder> runAfter) {
         final HuskSync plugin = getPlugin();
-        final DataSnapshot.Unpacked unpacked = snapshot.unpack(plugin);
+        final Map<Identifier, Data> unpacked = snapshot.unpack(plugin).getData();
         plugin.runSync(() -> {
-            unpacked.getData().forEach((type, data) -> {
+            final long startedAt = System.nanoTime();
+            unpacked.forEach((type, data) -> {
                 if (plugin.getSettings().isSyncFeatureEnabled(type)) {
                     if (type.isCustom()) {
                         getCustomDataStore().put(type, data);
                     }
                     data.apply(this, plugin);
+                    markDirty(type);
                 }
             });
+            plugin.recordMainThreadWork(startedAt);
             plugin.runAsync(() -> runAfter.accept(this));
         });
     }
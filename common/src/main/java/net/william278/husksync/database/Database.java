@@ -20,21 +20,22 @@
 package net.william278.husksync.database;
 
 import net.william278.husksync.HuskSync;
+import net.william278.husksync.adapter.DataAdapter;
 import net.william278.husksync.config.Settings;
 import net.william278.husksync.data.DataSnapshot;
 import net.william278.husksync.data.DataSnapshot.SaveCause;
 import net.william278.husksync.data.UserDataHolder;
 import net.william278.husksync.user.User;
+import net.william278.husksync.util.RequestCoalescer;
 import org.jetbrains.annotations.Blocking;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
 
 /**
  * An abstract representation of the plugin database, storing player data.
@@ -44,9 +45,17 @@ import java.util.UUID;
 public abstract class Database {
 
     protected final HuskSync plugin;
+    private final SnapshotSaveQueue saveQueue;
+    private final RequestCoalescer<UUID, Optional<DataSnapshot.Packed>> latestSnapshotRequests;
+    private final MapCanvasStore mapCanvasStore;
+    private final Map<UUID, Map.Entry<User, DataSnapshot.Packed>> awaitingSaveEvents;
 
     protected Database(@NotNull HuskSync plugin) {
         this.plugin = plugin;
+        this.saveQueue = new SnapshotSaveQueue(plugin, this);
+        this.awaitingSaveEvents = new ConcurrentHashMap<>();
+        this.mapCanvasStore = new MapCanvasStore(plugin, this);
+        this.latestSnapshotRequests = new RequestCoalescer<>(plugin, "coalesced.latest_snapshot");
     }
 
     /**
@@ -72,7 +81,14 @@ public abstract class Database {
     @NotNull
     protected final String formatStatementTables(@NotNull String sql) {
         return sql.replaceAll("%users_table%", plugin.getSettings().getTableName(Settings.TableName.USERS))
-                .replaceAll("%user_data_table%", plugin.getSettings().getTableName(Settings.TableName.USER_DATA));
+                .replaceAll("%user_data_table%", plugin.getSettings().getTableName(Settings.TableName.USER_DATA))
+                .replaceAll("%map_data_table%", plugin.getSettings().getTableName(Settings.TableName.MAP_DATA))
+                .replaceAll("%map_references_table%",
+                        plugin.getSettings().getTableName(Settings.TableName.MAP_REFERENCES))
+                .replaceAll("%data_sections_table%",
+                        plugin.getSettings().getTableName(Settings.TableName.DATA_SECTIONS))
+                .replaceAll("%data_section_references_table%",
+                        plugin.getSettings().getTableName(Settings.TableName.DATA_SECTION_REFERENCES));
     }
 
     /**
@@ -119,6 +135,77 @@ public abstract class Database {
     @Blocking
     public abstract Optional<DataSnapshot.Packed> getLatestSnapshot(@NotNull User user);
 
+    /**
+     * Get the latest data snapshot for a user, reading it from the redis cache if it is present there.
+     * <p>
+     * Snapshots are cached whenever they are saved, and on a cache miss the snapshot read from the database is cached,
+     * unless the user's cached snapshot is invalidated while it is being read.
+     *
+     * @param user The user to get data for
+     * @return an optional containing the {@link DataSnapshot}, if it exists, or an empty optional if it does not
+     */
+    @Blocking
+    public final Optional<DataSnapshot.Packed> getCachedLatestSnapshot(@NotNull User user) {
+        final Optional<DataSnapshot.Packed> cached = plugin.getRedisManager().getCachedSnapshot(user);
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        // Read the cache generation first, so the snapshot isn't cached if it's invalidated while being read
+        final long generation = plugin.getRedisManager().getCacheGeneration(user);
+        final Optional<DataSnapshot.Packed> latest = this.getLatestSnapshot(user);
+        latest.ifPresent(snapshot -> encodeSnapshot(user, snapshot).ifPresent(encoded -> plugin.getRedisManager()
+                .fillCachedSnapshot(user, snapshot.getTimestamp(), encoded.data(), generation)));
+        return latest;
+    }
+
+    /**
+     * Get the latest data snapshot for a user, sharing the result with concurrent and recent requests for the same
+     * user (see {@link RequestCoalescer}).
+     * <p>
+     * The returned snapshot may be shared with other callers, so it must not be edited;
+     * {@link DataSnapshot.Packed#copy() copy} or unpack it instead.
+     *
+     * @param user The user to get data for
+     * @return an optional containing the {@link DataSnapshot}, if it exists, or an empty optional if it does not
+     */
+    @Blocking
+    public final Optional<DataSnapshot.Packed> getSharedLatestSnapshot(@NotNull User user) {
+        return latestSnapshotRequests.request(
+                user.getUuid(),
+                () -> CompletableFuture.completedFuture(this.getCachedLatestSnapshot(user))
+        ).join();
+    }
+
+    /**
+     * Get the store of locked map canvases referenced by map items
+     *
+     * @return the {@link MapCanvasStore}
+     */
+    @NotNull
+    public MapCanvasStore getMapCanvasStore() {
+        return mapCanvasStore;
+    }
+
+    /**
+     * <b>(Internal)</b> Get a locked map canvas from the database by its hash
+     *
+     * @param hash The SHA-256 hash of the canvas
+     * @return An optional containing the serialized canvas, if it exists
+     */
+    @Blocking
+    protected abstract Optional<byte[]> getMapCanvas(@NotNull String hash);
+
+    /**
+     * <b>(Internal)</b> Save locked map canvases to the database, refreshing the saved time of canvases that already
+     * exist so that they are not pruned
+     *
+     * @param canvases The serialized canvases to save, keyed by hash
+     * @throws IllegalStateException if the canvases could not be saved
+     */
+    @Blocking
+    protected abstract void saveMapCanvases(@NotNull Map<String, byte[]> canvases) throws IllegalStateException;
+
     /**
      * Get all {@link DataSnapshot} entries for a user from the database.
      *
@@ -129,6 +216,16 @@ public abstract class Database {
     @NotNull
     public abstract List<DataSnapshot.Packed> getAllSnapshots(@NotNull User user);
 
+    /**
+     * Get the headers of all {@link DataSnapshot} entries for a user from the database, without fetching their data.
+     *
+     * @param user The user to get snapshot headers for
+     * @return The list of a user's {@link DataSnapshot.Header snapshot headers}, newest first
+     */
+    @Blocking
+    @NotNull
+    public abstract List<DataSnapshot.Header> getSnapshotHeaders(@NotNull User user);
+
     /**
      * Gets a specific {@link DataSnapshot} entry for a user from the database, by its UUID.
      *
@@ -160,7 +257,9 @@ public abstract class Database {
     /**
      * Save user data to the database
      * </p>
-     * This will remove the oldest data for the user if the amount of data exceeds the limit as configured
+     * This will remove the oldest data for the user if the amount of data exceeds the limit as configured. Snapshots
+     * {@link #queueSnapshot(User, DataSnapshot.Packed) queued} for the user are superseded by (or, if pinned, written
+     * before) this snapshot
      *
      * @param user     The user to add data for
      * @param snapshot The {@link DataSnapshot} to set.
@@ -170,14 +269,59 @@ public abstract class Database {
     @Blocking
     public void addSnapshot(@NotNull User user, @NotNull DataSnapshot.Packed snapshot) {
         if (snapshot.getSaveCause() != SaveCause.SERVER_SHUTDOWN) {
-            plugin.fireEvent(
-                    plugin.getDataSaveEvent(user, snapshot),
-                    (event) -> this.addAndRotateSnapshot(user, snapshot)
-            );
+            this.fireSaveEvent(user, snapshot, () -> saveQueue.save(user, snapshot));
             return;
         }
 
-        this.addAndRotateSnapshot(user, snapshot);
+        saveQueue.save(user, snapshot);
+    }
+
+    /**
+     * Queue user data to be saved to the database by the write-behind {@link SnapshotSaveQueue}.
+     * <p>
+     * Snapshots are written in batches, and will be superseded by newer snapshots queued for the same user before
+     * they are written, unless they are pinned. Use this for frequent, non-critical saves (e.g. world saves).
+     *
+     * @param user     The user to add data for
+     * @param snapshot The {@link DataSnapshot} to set.
+     * @see #addSnapshot(User, DataSnapshot.Packed)
+     */
+    public void queueSnapshot(@NotNull User user, @NotNull DataSnapshot.Packed snapshot) {
+        this.fireSaveEvent(user, snapshot, () -> saveQueue.queue(user, snapshot));
+    }
+
+    // Fire a data save event, then save a snapshot on an async thread unless the event is cancelled. Until then, the
+    // snapshot is tracked, so it is still saved if the save queue is drained before the event fires
+    private void fireSaveEvent(@NotNull User user, @NotNull DataSnapshot.Packed snapshot, @NotNull Runnable save) {
+        awaitingSaveEvents.put(snapshot.getId(), Map.entry(user, snapshot));
+        plugin.runSync(() -> {
+            if (plugin.fireIsCancelled(plugin.getDataSaveEvent(user, snapshot))) {
+                awaitingSaveEvents.remove(snapshot.getId());
+                return;
+            }
+            plugin.runAsync(() -> {
+                if (awaitingSaveEvents.remove(snapshot.getId()) != null) {
+                    save.run();
+                }
+            });
+        });
+    }
+
+    /**
+     * Write all snapshots waiting in the save queue to the database, and stop queueing further snapshots.
+     * <p>
+     * Snapshots still waiting for their data save event to be fired are also saved, without firing it.
+     * This must be called before {@link #terminate() terminating} the database
+     */
+    @Blocking
+    public void drainSaveQueue() {
+        saveQueue.drain();
+        awaitingSaveEvents.keySet().forEach(id -> {
+            final Map.Entry<User, DataSnapshot.Packed> awaiting = awaitingSaveEvents.remove(id);
+            if (awaiting != null) {
+                saveQueue.save(awaiting.getKey(), awaiting.getValue());
+            }
+        });
     }
 
     /**
@@ -187,18 +331,198 @@ public abstract class Database {
      *     <li>Create the snapshot</li>
      *     <li>Rotate snapshot backups</li>
      * </ol>
+     * Implementations should override this to perform these steps atomically, where supported
      *
      * @param user     The user to add data for
      * @param snapshot The {@link DataSnapshot} to set.
      */
     @Blocking
-    private void addAndRotateSnapshot(@NotNull User user, @NotNull DataSnapshot.Packed snapshot) {
+    protected void addAndRotateSnapshot(@NotNull User user, @NotNull DataSnapshot.Packed snapshot) {
         final int backupFrequency = plugin.getSettings().getBackupFrequency();
         if (!snapshot.isPinned() && backupFrequency > 0) {
             this.rotateLatestSnapshot(user, snapshot.getTimestamp().minusHours(backupFrequency));
         }
         this.createSnapshot(user, snapshot);
         this.rotateSnapshots(user);
+        encodeSnapshot(user, snapshot).ifPresent(this::cacheSnapshot);
+    }
+
+    /**
+     * <b>Internal</b> - Save a batch of user data to the database, performing the same steps as
+     * {@link #addAndRotateSnapshot(User, DataSnapshot.Packed)} for each snapshot.
+     *
+     * @param snapshots The users and {@link DataSnapshot}s to set, in the order they were created
+     */
+    @Blocking
+    protected void addAndRotateSnapshots(@NotNull List<Map.Entry<User, DataSnapshot.Packed>> snapshots) {
+        final List<EncodedSnapshot> encoded = new ArrayList<>(snapshots.size());
+        snapshots.forEach(entry -> encodeSnapshot(entry.getKey(), entry.getValue()).ifPresent(encoded::add));
+        this.addAndRotateEncodedSnapshots(encoded, true);
+    }
+
+    /**
+     * <b>Internal</b> - Save a batch of already-encoded user data to the database, performing the same steps as
+     * {@link #addAndRotateSnapshot(User, DataSnapshot.Packed)} for each snapshot.
+     * <p>
+     * Implementations should override this to write the batch more efficiently, where supported
+     *
+     * @param snapshots    The {@link EncodedSnapshot}s to set, in the order they were created
+     * @param rotateLatest Whether to delete each user's most recent snapshot if it was created before the backup
+     *                     frequency time. This should be {@code false} when saving snapshots taken in the past, which
+     *                     may be older than the user's most recent snapshot
+     * @return whether the batch was saved
+     */
+    @Blocking
+    protected boolean addAndRotateEncodedSnapshots(@NotNull List<EncodedSnapshot> snapshots, boolean rotateLatest) {
+        snapshots.forEach(encoded -> {
+            if (rotateLatest) {
+                this.addAndRotateSnapshot(encoded.user(), encoded.snapshot());
+                return;
+            }
+            this.createSnapshot(encoded.user(), encoded.snapshot());
+            this.rotateSnapshots(encoded.user());
+            this.cacheSnapshot(encoded);
+        });
+        return true;
+    }
+
+    /**
+     * Save snapshots of users' data taken as the server shuts down.
+     * <p>
+     * Snapshots are packed and encoded in parallel, then written in one batch. If the batch could not be written within
+     * the configured shutdown save timeout, the snapshots are written to a local file, to be saved when the plugin is
+     * next enabled (see {@link #saveUnsavedSnapshots()}).
+     *
+     * @param snapshots The users and their {@link DataSnapshot.SaveCause#SERVER_SHUTDOWN shutdown} snapshots
+     */
+    @Blocking
+    public void addShutdownSnapshots(@NotNull List<Map.Entry<User, DataSnapshot.Unpacked>> snapshots) {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        final long startedAt = System.nanoTime();
+        final long deadline = startedAt + TimeUnit.SECONDS.toNanos(plugin.getSettings().getShutdownSaveTimeout());
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(snapshots.size(), Runtime.getRuntime().availableProcessors())
+        );
+        try {
+            // Pack and encode snapshots in parallel
+            final List<EncodedSnapshot> encoded = snapshots.stream()
+                    .map(entry -> CompletableFuture.supplyAsync(
+                            () -> encodeSnapshot(entry.getKey(), entry.getValue().pack(plugin)), executor
+                    ).exceptionally(e -> {
+                        plugin.log(Level.SEVERE, "Failed to pack user data for " + entry.getKey().getUsername(), e);
+                        return Optional.empty();
+                    }))
+                    .toList().stream()
+                    .map(CompletableFuture::join)
+                    .flatMap(Optional::stream)
+                    .toList();
+            final long encodedAt = plugin.getPerformanceMetrics().recordSince("shutdown_save.encode", startedAt);
+
+            // Write the snapshots in one batch, spilling them to file if they aren't saved before the deadline
+            boolean saved;
+            try {
+                saved = CompletableFuture.supplyAsync(() -> addAndRotateEncodedSnapshots(encoded, true), executor)
+                        .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                plugin.log(Level.WARNING, "Timed out saving user data on shutdown");
+                saved = false;
+            } catch (InterruptedException | ExecutionException e) {
+                plugin.log(Level.SEVERE, "Failed to save user data on shutdown", e);
+                saved = false;
+            }
+            plugin.getPerformanceMetrics().recordSince("shutdown_save.write", encodedAt);
+            if (!saved) {
+                this.spillSnapshots(encoded);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Save snapshots that could not be saved when the server last shut down, if there are any.
+     * <p>
+     * Snapshots are saved without rotating the user's latest snapshot. Snapshots that were already saved, or that are
+     * older than the user's latest snapshot (i.e. the user has played since), are skipped
+     */
+    @Blocking
+    public void saveUnsavedSnapshots() {
+        final UnsavedSnapshotFile file = new UnsavedSnapshotFile(plugin);
+        if (!file.exists()) {
+            return;
+        }
+
+        final List<EncodedSnapshot> failed = new ArrayList<>();
+        final List<EncodedSnapshot> unsaved = file.read();
+        int skipped = 0;
+        for (EncodedSnapshot encoded : unsaved) {
+            this.ensureUser(encoded.user());
+            final Optional<DataSnapshot.Header> latest = getSnapshotHeaders(encoded.user()).stream().findFirst();
+            if (latest.isPresent() && (latest.get().getId().equals(encoded.snapshot().getId())
+                    || !latest.get().getTimestamp().isBefore(encoded.snapshot().getTimestamp()))) {
+                skipped++;
+                continue;
+            }
+            if (!addAndRotateEncodedSnapshots(List.of(encoded), false)) {
+                failed.add(encoded);
+            }
+        }
+        file.delete();
+        if (!failed.isEmpty()) {
+            this.spillSnapshots(failed);
+        }
+        plugin.log(Level.INFO, String.format("Saved %s user data snapshot(s) that could not be saved on shutdown "
+                + "(%s were already saved or superseded)", unsaved.size() - failed.size() - skipped, skipped));
+    }
+
+    /**
+     * Cache a saved snapshot as its user's latest snapshot on redis, unless a later snapshot is already cached, and
+     * stop sharing the result of {@link #getSharedLatestSnapshot(User) shared requests} for the user's latest snapshot.
+     * <p>
+     * Implementations overriding the save methods should call this after each snapshot is saved
+     *
+     * @param encoded The saved snapshot
+     */
+    @Blocking
+    protected final void cacheSnapshot(@NotNull EncodedSnapshot encoded) {
+        plugin.getRedisManager().setCachedSnapshot(
+                encoded.user(), encoded.snapshot().getTimestamp(), encoded.data()
+        );
+        latestSnapshotRequests.invalidate(encoded.user().getUuid());
+    }
+
+    /**
+     * Remove a user's cached latest snapshot from redis, after their saved snapshots are edited or deleted, and stop
+     * sharing the result of {@link #getSharedLatestSnapshot(User) shared requests} for the user's latest snapshot
+     *
+     * @param user The user to remove the cached snapshot of
+     */
+    @Blocking
+    protected final void invalidateCachedSnapshot(@NotNull User user) {
+        plugin.getRedisManager().invalidateCachedSnapshot(user);
+        latestSnapshotRequests.invalidate(user.getUuid());
+    }
+
+    // Write snapshots that could not be saved to the unsaved snapshot file
+    private void spillSnapshots(@NotNull List<EncodedSnapshot> snapshots) {
+        plugin.getPerformanceMetrics().add("shutdown_save.spilled", snapshots.size());
+        if (new UnsavedSnapshotFile(plugin).write(snapshots)) {
+            plugin.log(Level.WARNING, String.format("Wrote %s user data snapshot(s) that could not be saved to file. " +
+                    "They will be saved when the plugin is next enabled.", snapshots.size()));
+        }
+    }
+
+    // Encode a snapshot for saving to the database
+    @NotNull
+    private Optional<EncodedSnapshot> encodeSnapshot(@NotNull User user, @NotNull DataSnapshot.Packed snapshot) {
+        try {
+            return Optional.of(new EncodedSnapshot(user, snapshot, snapshot.asBytes(plugin)));
+        } catch (DataAdapter.AdaptionException e) {
+            plugin.log(Level.SEVERE, "Failed to encode user data for " + user.getUsername(), e);
+            return Optional.empty();
+        }
     }
 
     /**
@@ -271,6 +595,16 @@ public abstract class Database {
      */
     public abstract void terminate();
 
+    /**
+     * A {@link DataSnapshot} to be saved for a user, alongside its encoded bytes
+     *
+     * @param user     The user to save the snapshot for
+     * @param snapshot The snapshot
+     * @param data     The encoded snapshot, as it will be stored
+     */
+    protected record EncodedSnapshot(@NotNull User user, @NotNull DataSnapshot.Packed snapshot, byte[] data) {
+    }
+
     /**
      * Identifies types of databases
      */
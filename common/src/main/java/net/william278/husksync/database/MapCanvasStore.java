@@ -0,0 +1,244 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.database;
+
+import net.william278.husksync.HuskSync;
+import net.william278.husksync.data.DataSnapshot;
+import net.william278.husksync.data.Serializer;
+import org.jetbrains.annotations.Blocking;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Stores locked map canvases once, keyed by the SHA-256 hash of their content, rather than embedding a copy of the
+ * canvas in every map item and every snapshot holding one.
+ * <p>
+ * Map items reference their canvas by storing its hash under the {@link #HASH_KEY} NBT key. Newly rendered canvases
+ * are held here until a snapshot referencing them is saved, when they are written to the database in the same
+ * transaction as the snapshot.
+ */
+public class MapCanvasStore {
+
+    /**
+     * The NBT key map items store the hash of their canvas under
+     */
+    public static final String HASH_KEY = "husksync:canvas_hash";
+
+    // Matches a canvas hash referenced in serialized item NBT; either in text NBT, allowing for quoted and escaped
+    // keys and values, or in binary NBT (read as ISO-8859-1), where the value follows its two-byte length of 64
+    private static final Pattern HASH_PATTERN = Pattern.compile(
+            Pattern.quote(HASH_KEY) + "(?:[\\\\\"']*:[\\\\\"']*|\\x00@)([0-9a-f]{64})"
+    );
+    // The start of the header of a gzip member; binary NBT is written gzip-compressed
+    private static final byte[] GZIP_HEADER = {(byte) 0x1f, (byte) 0x8b, (byte) 0x08};
+    // The number of unsaved canvases to hold before they are written without waiting for a snapshot
+    private static final int MAX_UNSAVED_CANVASES = 256;
+    // How long saved canvases are trusted to still exist in the database. Must be shorter than the pruning grace period
+    private static final long SAVED_CANVAS_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    // The number of saved canvases to track before expired entries are purged
+    private static final int SAVED_PURGE_THRESHOLD = 1024;
+
+    private final HuskSync plugin;
+    private final Database database;
+    private final Map<String, byte[]> unsaved;
+    private final Map<String, Long> saved;
+
+    MapCanvasStore(@NotNull HuskSync plugin, @NotNull Database database) {
+        this.plugin = plugin;
+        this.database = database;
+        this.unsaved = new ConcurrentHashMap<>();
+        this.saved = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Store a rendered canvas, to be saved to the database with the next snapshot that references it
+     *
+     * @param canvas the serialized canvas
+     * @return the hash of the canvas, to be referenced by map items
+     */
+    @NotNull
+    public String store(byte[] canvas) {
+        final String hash = ContentHash.sha256(canvas);
+        if (!isStored(hash)) {
+            unsaved.put(hash, canvas);
+            plugin.getPerformanceMetrics().increment("map_canvas.stored");
+            if (unsaved.size() > MAX_UNSAVED_CANVASES) {
+                plugin.runAsync(() -> save(Set.copyOf(unsaved.keySet())));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Check whether a canvas is waiting to be saved, or has recently been saved to the database
+     *
+     * @param hash the hash of the canvas
+     * @return whether the canvas is stored
+     */
+    public boolean isStored(@NotNull String hash) {
+        if (unsaved.containsKey(hash)) {
+            return true;
+        }
+        final Long savedAt = saved.get(hash);
+        return savedAt != null && System.currentTimeMillis() - savedAt < SAVED_CANVAS_EXPIRY_MILLIS;
+    }
+
+    /**
+     * Get a canvas by its hash, reading it from the database if it has already been saved
+     *
+     * @param hash the hash of the canvas
+     * @return the serialized canvas, if it exists
+     */
+    @Blocking
+    public Optional<byte[]> get(@NotNull String hash) {
+        final byte[] canvas = unsaved.get(hash);
+        if (canvas != null) {
+            return Optional.of(canvas);
+        }
+        plugin.getPerformanceMetrics().increment("map_canvas.fetch");
+        return database.getMapCanvas(hash);
+    }
+
+    /**
+     * Save any unsaved canvases referenced by a snapshot to the database.
+     * <p>
+     * Use this before handing a snapshot to another server ahead of it being saved
+     *
+     * @param snapshot the snapshot to save the referenced canvases of
+     */
+    @Blocking
+    public void saveReferenced(@NotNull DataSnapshot.Packed snapshot) {
+        final Set<String> referenced = getReferencedHashes(snapshot);
+        referenced.retainAll(unsaved.keySet());
+        if (!referenced.isEmpty()) {
+            save(referenced);
+        }
+    }
+
+    // Save a set of unsaved canvases to the database
+    @Blocking
+    private void save(@NotNull Set<String> hashes) {
+        final Map<String, byte[]> canvases = getUnsaved(hashes);
+        if (canvases.isEmpty()) {
+            return;
+        }
+        try {
+            database.saveMapCanvases(canvases);
+            markSaved(canvases.keySet());
+        } catch (Throwable e) {
+            plugin.log(Level.WARNING, "Failed to save locked map canvases to the database", e);
+        }
+    }
+
+    /**
+     * <b>(Internal)</b> Get the canvases in a set of hashes that have not been saved to the database yet
+     *
+     * @param hashes the canvas hashes
+     * @return the unsaved canvases, keyed by hash
+     */
+    @NotNull
+    Map<String, byte[]> getUnsaved(@NotNull Set<String> hashes) {
+        final Map<String, byte[]> canvases = new HashMap<>();
+        hashes.forEach(hash -> {
+            final byte[] canvas = unsaved.get(hash);
+            if (canvas != null) {
+                canvases.put(hash, canvas);
+            }
+        });
+        return canvases;
+    }
+
+    /**
+     * <b>(Internal)</b> Mark canvases as saved to the database
+     *
+     * @param hashes the hashes of the saved canvases
+     */
+    void markSaved(@NotNull Set<String> hashes) {
+        final long now = System.currentTimeMillis();
+        if (saved.size() > SAVED_PURGE_THRESHOLD) {
+            saved.values().removeIf(savedAt -> now - savedAt >= SAVED_CANVAS_EXPIRY_MILLIS);
+        }
+        hashes.forEach(hash -> {
+            saved.put(hash, now);
+            unsaved.remove(hash);
+        });
+    }
+
+    /**
+     * Get the hashes of the canvases referenced by map items in a snapshot.
+     * <p>
+     * Data serialized in a {@link Serializer.Binary binary} format is searched both as-is and in each gzip-compressed
+     * binary NBT compound found in it, so that references are found without needing to deserialize the items
+     *
+     * @param snapshot the snapshot
+     * @return the referenced canvas hashes
+     */
+    @NotNull
+    public static Set<String> getReferencedHashes(@NotNull DataSnapshot.Packed snapshot) {
+        final Set<String> hashes = new HashSet<>();
+        snapshot.getSerializedData().values().forEach(serialized -> findHashes(serialized, hashes));
+        snapshot.getSerializedBinaryData().values().forEach(bytes -> findBinaryHashes(bytes, hashes));
+        return hashes;
+    }
+
+    // Find the canvas hashes referenced in binary data, both as-is and in its gzip-compressed parts
+    private static void findBinaryHashes(byte[] bytes, @NotNull Set<String> hashes) {
+        findHashes(new String(bytes, StandardCharsets.ISO_8859_1), hashes);
+        for (int i = indexOf(bytes, GZIP_HEADER, 0); i >= 0; i = indexOf(bytes, GZIP_HEADER, i + 1)) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes, i, bytes.length - i))) {
+                findHashes(new String(in.readAllBytes(), StandardCharsets.ISO_8859_1), hashes);
+            } catch (IOException e) {
+                // The header bytes were part of other data, rather than the start of a gzip member
+            }
+        }
+    }
+
+    // Find the canvas hashes referenced in serialized text, or binary data read as ISO-8859-1
+    private static void findHashes(@NotNull String serialized, @NotNull Set<String> hashes) {
+        if (!serialized.contains(HASH_KEY)) {
+            return;
+        }
+        final Matcher matcher = HASH_PATTERN.matcher(serialized);
+        while (matcher.find()) {
+            hashes.add(matcher.group(1));
+        }
+    }
+
+    // Get the index of the first occurrence of a byte sequence in an array, from an index, or -1 if there is none
+    private static int indexOf(byte[] bytes, byte[] target, int from) {
+        for (int i = from; i <= bytes.length - target.length; i++) {
+            if (Arrays.equals(bytes, i, i + target.length, target, 0, target.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -22,24 +22,57 @@ package net.william278.husksync.database;
 import com.zaxxer.hikari.HikariDataSource;
 import net.william278.husksync.HuskSync;
 import net.william278.husksync.adapter.DataAdapter;
+import net.william278.husksync.config.Settings;
 import net.william278.husksync.data.DataSnapshot;
 import net.william278.husksync.user.User;
+import net.william278.husksync.util.PerformanceMetrics;
+import net.william278.husksync.util.Task;
 import org.jetbrains.annotations.Blocking;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.*;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 public class MySqlDatabase extends Database {
 
     private static final String DATA_POOL_NAME = "HuskSyncHikariPool";
+    private static final String SNAPSHOT_INDEX_NAME = "player_pinned_timestamp";
+    private static final String INSERT_SNAPSHOT = """
+            INSERT INTO `%user_data_table%`
+            (`player_uuid`,`version_uuid`,`timestamp`,`save_cause`,`pinned`,`data`,`data_size`,`origin_server`,
+            `manifest`)
+            VALUES (?,?,?,?,?,?,?,?,TRUE);""";
+    private static final String ROTATE_LATEST_SNAPSHOT = """
+            DELETE FROM `%user_data_table%`
+            WHERE `player_uuid`=? AND `pinned`=FALSE AND `timestamp`>?
+            ORDER BY `timestamp` ASC
+            LIMIT 1;""";
+    private static final String INSERT_MAP_REFERENCE = """
+            INSERT IGNORE INTO `%map_references_table%` (`version_uuid`,`hash`)
+            VALUES (?,?);""";
+    private static final String INSERT_DATA_SECTION_REFERENCE = """
+            INSERT IGNORE INTO `%data_section_references_table%` (`version_uuid`,`hash`)
+            VALUES (?,?);""";
+    // How often unreferenced map canvases and data sections are pruned
+    private static final long PRUNE_INTERVAL_TICKS = TimeUnit.MINUTES.toSeconds(10) * 20L;
+    // The maximum number of unreferenced entries to delete in one statement, to keep each delete's locks short
+    private static final int PRUNE_BATCH_SIZE = 500;
+    // How long unreferenced map canvases are kept for before they are pruned.
+    // Canvases are kept for a while, as map items may be carried to other servers after being kept in the world
+    private static final long MAP_CANVAS_PRUNE_GRACE_MILLIS = TimeUnit.DAYS.toMillis(30);
+    // How long unreferenced data sections are kept for before they are pruned
+    private static final long DATA_SECTION_PRUNE_GRACE_MILLIS = TimeUnit.HOURS.toMillis(1);
     private final String flavor;
     private final String driverClass;
     private HikariDataSource dataSource;
+    private Task.Repeating pruneTask;
 
     public MySqlDatabase(@NotNull HuskSync plugin) {
         super(plugin);
@@ -120,10 +153,79 @@ public class MySqlDatabase extends Database {
                 throw new IllegalStateException("Failed to create database tables. Please ensure you are running MySQL v8.0+ " +
                         "and that your connecting user account has privileges to create tables.", e);
             }
+
+            // Migrate tables created by older versions of the schema
+            try {
+                migrateSchema(connection);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to migrate the database schema. Please ensure your connecting " +
+                        "user account has privileges to alter tables.", e);
+            }
         } catch (SQLException | IOException e) {
             throw new IllegalStateException("Failed to establish a connection to the MySQL database. " +
                     "Please check the supplied database credentials in the config file", e);
         }
+
+        // Periodically prune map canvases and data sections that are no longer referenced
+        this.pruneTask = plugin.getRepeatingTask(this::pruneUnreferencedData, PRUNE_INTERVAL_TICKS);
+        this.pruneTask.run();
+    }
+
+    /**
+     * Migrate tables created by older versions of the schema, adding any columns and indexes they are missing
+     *
+     * @param connection The {@link Connection} to migrate the schema with
+     * @throws SQLException if the schema could not be migrated
+     */
+    @Blocking
+    private void migrateSchema(@NotNull Connection connection) throws SQLException {
+        final String userDataTable = plugin.getSettings().getTableName(Settings.TableName.USER_DATA);
+        if (!hasSchemaEntry(connection, "statistics", "index_name", userDataTable, SNAPSHOT_INDEX_NAME)) {
+            plugin.log(Level.INFO, "Adding snapshot lookup index to the user data table. This may take a moment...");
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(formatStatementTables("""
+                        ALTER TABLE `%user_data_table%`
+                        ADD INDEX `%index_name%` (`player_uuid`, `pinned`, `timestamp`);"""
+                        .replace("%index_name%", SNAPSHOT_INDEX_NAME)));
+            }
+        }
+        if (!hasSchemaEntry(connection, "columns", "column_name", userDataTable, "data_size")) {
+            plugin.log(Level.INFO, "Adding snapshot size column to the user data table. This may take a moment...");
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(formatStatementTables("""
+                        ALTER TABLE `%user_data_table%`
+                        ADD COLUMN `data_size` int NOT NULL DEFAULT 0 AFTER `data`;"""));
+                statement.executeUpdate(formatStatementTables("""
+                        UPDATE `%user_data_table%`
+                        SET `data_size`=OCTET_LENGTH(`data`);"""));
+            }
+        }
+        if (!hasSchemaEntry(connection, "columns", "column_name", userDataTable, "manifest")) {
+            plugin.log(Level.INFO, "Adding snapshot manifest column to the user data table. This may take a moment...");
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(formatStatementTables("""
+                        ALTER TABLE `%user_data_table%`
+                        ADD COLUMN `manifest` boolean NOT NULL DEFAULT FALSE AFTER `origin_server`;"""));
+            }
+        }
+    }
+
+    // Check whether an entry (e.g. a column or index) exists on a table in the information schema
+    @Blocking
+    private boolean hasSchemaEntry(@NotNull Connection connection, @NotNull String schemaTable,
+                                   @NotNull String nameColumn, @NotNull String table,
+                                   @NotNull String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("""
+                SELECT COUNT(*)
+                FROM `information_schema`.`%schema_table%`
+                WHERE `table_schema`=DATABASE() AND `table_name`=? AND `%name_column%`=?;"""
+                .replace("%schema_table%", schemaTable)
+                .replace("%name_column%", nameColumn))) {
+            statement.setString(1, table);
+            statement.setString(2, name);
+            final ResultSet resultSet = statement.executeQuery();
+            return resultSet.next() && resultSet.getInt(1) > 0;
+        }
     }
 
     @Blocking
@@ -217,19 +319,13 @@ public class MySqlDatabase extends Database {
     public Optional<DataSnapshot.Packed> getLatestSnapshot(@NotNull User user) {
         try (Connection connection = getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
-                    SELECT `version_uuid`, `timestamp`, `save_cause`, `pinned`, `data`, `origin_server`
+                    SELECT `version_uuid`, `timestamp`, `save_cause`, `pinned`, `data`, `origin_server`, `manifest`
                     FROM `%user_data_table%`
                     WHERE `player_uuid`=?
                     ORDER BY `timestamp` DESC
                     LIMIT 1;"""))) {
                 statement.setString(1, user.getUuid().toString());
-                final ResultSet resultSet = statement.executeQuery();
-                if (resultSet.next()) {
-                    final Blob blob = resultSet.getBlob("data");
-                    final byte[] dataByteArray = blob.getBytes(1, (int) blob.length());
-                    blob.free();
-                    return Optional.of(DataSnapshot.deserialize(plugin, dataByteArray));
-                }
+                return readSnapshots(connection, statement.executeQuery()).stream().findFirst();
             }
         } catch (SQLException | DataAdapter.AdaptionException e) {
             plugin.log(Level.SEVERE, "Failed to fetch a user's current user data from the database", e);
@@ -244,18 +340,12 @@ public class MySqlDatabase extends Database {
         final List<DataSnapshot.Packed> retrievedData = new ArrayList<>();
         try (Connection connection = getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
-                    SELECT `version_uuid`, `timestamp`, `save_cause`, `pinned`, `data`, `origin_server`
+                    SELECT `version_uuid`, `timestamp`, `save_cause`, `pinned`, `data`, `origin_server`, `manifest`
                     FROM `%user_data_table%`
                     WHERE `player_uuid`=?
                     ORDER BY `timestamp` DESC;"""))) {
                 statement.setString(1, user.getUuid().toString());
-                final ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    final Blob blob = resultSet.getBlob("data");
-                    final byte[] dataByteArray = blob.getBytes(1, (int) blob.length());
-                    blob.free();
-                    retrievedData.add(DataSnapshot.deserialize(plugin, dataByteArray));
-                }
+                retrievedData.addAll(readSnapshots(connection, statement.executeQuery()));
                 return retrievedData;
             }
         } catch (SQLException | DataAdapter.AdaptionException e) {
@@ -264,25 +354,51 @@ public class MySqlDatabase extends Database {
         return retrievedData;
     }
 
+    @Blocking
+    @Override
+    @NotNull
+    public List<DataSnapshot.Header> getSnapshotHeaders(@NotNull User user) {
+        final List<DataSnapshot.Header> retrievedHeaders = new ArrayList<>();
+        try (Connection connection = getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
+                    SELECT `version_uuid`, `timestamp`, `save_cause`, `pinned`, `data_size`, `origin_server`
+                    FROM `%user_data_table%`
+                    WHERE `player_uuid`=?
+                    ORDER BY `timestamp` DESC;"""))) {
+                statement.setString(1, user.getUuid().toString());
+                final ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    retrievedHeaders.add(DataSnapshot.Header.of(
+                            UUID.fromString(resultSet.getString("version_uuid")),
+                            resultSet.getBoolean("pinned"),
+                            OffsetDateTime.ofInstant(
+                                    resultSet.getTimestamp("timestamp").toInstant(), ZoneId.systemDefault()
+                            ),
+                            DataSnapshot.SaveCause.valueOf(resultSet.getString("save_cause")),
+                            resultSet.getString("origin_server"),
+                            resultSet.getInt("data_size")
+                    ));
+                }
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            plugin.log(Level.SEVERE, "Failed to fetch a user's snapshot headers from the database", e);
+        }
+        return retrievedHeaders;
+    }
+
     @Blocking
     @Override
     public Optional<DataSnapshot.Packed> getSnapshot(@NotNull User user, @NotNull UUID versionUuid) {
         try (Connection connection = getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
-                    SELECT `version_uuid`, `timestamp`, `save_cause`, `pinned`, `data`, `origin_server`
+                    SELECT `version_uuid`, `timestamp`, `save_cause`, `pinned`, `data`, `origin_server`, `manifest`
                     FROM `%user_data_table%`
                     WHERE `player_uuid`=? AND `version_uuid`=?
                     ORDER BY `timestamp` DESC
                     LIMIT 1;"""))) {
                 statement.setString(1, user.getUuid().toString());
                 statement.setString(2, versionUuid.toString());
-                final ResultSet resultSet = statement.executeQuery();
-                if (resultSet.next()) {
-                    final Blob blob = resultSet.getBlob("data");
-                    final byte[] dataByteArray = blob.getBytes(1, (int) blob.length());
-                    blob.free();
-                    return Optional.of(DataSnapshot.deserialize(plugin, dataByteArray));
-                }
+                return readSnapshots(connection, statement.executeQuery()).stream().findFirst();
             }
         } catch (SQLException | DataAdapter.AdaptionException e) {
             plugin.log(Level.SEVERE, "Failed to fetch specific user data by UUID from the database", e);
@@ -290,26 +406,119 @@ public class MySqlDatabase extends Database {
         return Optional.empty();
     }
 
+    /**
+     * Read the snapshots in a result set, resolving the data sections of snapshots stored as manifests
+     *
+     * @param connection The {@link Connection} to read data sections with
+     * @param resultSet  The result set of snapshot rows
+     * @return the snapshots, in the order of the result set
+     * @throws SQLException if the snapshots could not be read
+     */
+    @Blocking
+    @NotNull
+    private List<DataSnapshot.Packed> readSnapshots(@NotNull Connection connection,
+                                                    @NotNull ResultSet resultSet) throws SQLException {
+        final List<Map.Entry<DataSnapshot.Packed, byte[]>> rows = new ArrayList<>();
+        final Set<String> hashes = new HashSet<>();
+        while (resultSet.next()) {
+            final Blob blob = resultSet.getBlob("data");
+            final byte[] dataByteArray = blob.getBytes(1, (int) blob.length());
+            blob.free();
+            if (!resultSet.getBoolean("manifest")) {
+                rows.add(new AbstractMap.SimpleImmutableEntry<>(null, dataByteArray));
+                continue;
+            }
+            final DataSnapshot.Packed manifest = plugin.getDataAdapter().fromBytes(
+                    dataByteArray, DataSnapshot.Packed.class
+            );
+            hashes.addAll(SnapshotManifest.getHashes(manifest).values());
+            rows.add(new AbstractMap.SimpleImmutableEntry<>(manifest, dataByteArray));
+        }
+
+        final Map<String, byte[]> sections = getDataSections(connection, hashes);
+        final List<DataSnapshot.Packed> snapshots = new ArrayList<>(rows.size());
+        for (Map.Entry<DataSnapshot.Packed, byte[]> row : rows) {
+            snapshots.add(row.getKey() == null
+                    ? DataSnapshot.deserialize(plugin, row.getValue())
+                    : DataSnapshot.deserialize(
+                            plugin, SnapshotManifest.resolve(row.getKey(), sections), row.getValue()
+                    ));
+        }
+        return snapshots;
+    }
+
+    // Read data sections from the database by their hashes
+    @Blocking
+    @NotNull
+    private Map<String, byte[]> getDataSections(@NotNull Connection connection,
+                                                @NotNull Set<String> hashes) throws SQLException {
+        if (hashes.isEmpty()) {
+            return Map.of();
+        }
+        final List<String> hashList = List.copyOf(hashes);
+        final Map<String, byte[]> sections = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
+                SELECT `hash`, `data`
+                FROM `%data_sections_table%`
+                WHERE `hash` IN (%hashes%);""").replace("%hashes%", getPlaceholders(hashList.size())))) {
+            for (int i = 0; i < hashList.size(); i++) {
+                statement.setString(i + 1, hashList.get(i));
+            }
+            final ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                final Blob blob = resultSet.getBlob("data");
+                final byte[] data = blob.getBytes(1, (int) blob.length());
+                blob.free();
+                sections.put(resultSet.getString("hash"), SnapshotManifest.decodeSection(data));
+            }
+        } catch (IOException e) {
+            throw new DataAdapter.AdaptionException("Failed to decode a snapshot data section", e);
+        }
+        return sections;
+    }
+
+    // Get a comma-separated list of statement parameter placeholders
+    @NotNull
+    private static String getPlaceholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
     @Blocking
     @Override
     protected void rotateSnapshots(@NotNull User user) {
-        final List<DataSnapshot.Packed> unpinnedUserData = getAllSnapshots(user).stream()
-                .filter(dataSnapshot -> !dataSnapshot.isPinned()).toList();
-        if (unpinnedUserData.size() > plugin.getSettings().getMaxUserDataSnapshots()) {
-            try (Connection connection = getConnection()) {
-                try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
-                        DELETE FROM `%user_data_table%`
-                        WHERE `player_uuid`=?
-                        AND `pinned` IS FALSE
-                        ORDER BY `timestamp` ASC
-                        LIMIT %entry_count%;""".replace("%entry_count%",
-                        Integer.toString(unpinnedUserData.size() - plugin.getSettings().getMaxUserDataSnapshots()))))) {
-                    statement.setString(1, user.getUuid().toString());
-                    statement.executeUpdate();
-                }
-            } catch (SQLException e) {
-                plugin.log(Level.SEVERE, "Failed to prune user data from the database", e);
-            }
+        try (Connection connection = getConnection()) {
+            rotateSnapshots(connection, user);
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to prune user data from the database", e);
+        }
+    }
+
+    @Blocking
+    private void rotateSnapshots(@NotNull Connection connection, @NotNull User user) throws SQLException {
+        // Count the user's unpinned snapshots without reading their data
+        final int unpinnedSnapshots;
+        try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
+                SELECT COUNT(*)
+                FROM `%user_data_table%`
+                WHERE `player_uuid`=? AND `pinned`=FALSE;"""))) {
+            statement.setString(1, user.getUuid().toString());
+            final ResultSet resultSet = statement.executeQuery();
+            unpinnedSnapshots = resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+
+        // Delete the oldest unpinned snapshots exceeding the limit
+        final int excessSnapshots = unpinnedSnapshots - plugin.getSettings().getMaxUserDataSnapshots();
+        if (excessSnapshots <= 0) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
+                DELETE FROM `%user_data_table%`
+                WHERE `player_uuid`=? AND `pinned`=FALSE
+                ORDER BY `timestamp` ASC
+                LIMIT ?;"""))) {
+            statement.setString(1, user.getUuid().toString());
+            statement.setInt(2, excessSnapshots);
+            statement.executeUpdate();
         }
     }
 
@@ -323,7 +532,11 @@ public class MySqlDatabase extends Database {
                     LIMIT 1;"""))) {
                 statement.setString(1, user.getUuid().toString());
                 statement.setString(2, versionUuid.toString());
-                return statement.executeUpdate() > 0;
+                if (statement.executeUpdate() > 0) {
+                    invalidateCachedSnapshot(user);
+                    return true;
+                }
+                return false;
             }
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to delete specific user data from the database", e);
@@ -335,61 +548,495 @@ public class MySqlDatabase extends Database {
     @Override
     protected void rotateLatestSnapshot(@NotNull User user, @NotNull OffsetDateTime within) {
         try (Connection connection = getConnection()) {
-            try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
-                    DELETE FROM `%user_data_table%`
-                    WHERE `player_uuid`=? AND `timestamp`>? AND `pinned` IS FALSE
-                    ORDER BY `timestamp` ASC
-                    LIMIT 1;"""))) {
-                statement.setString(1, user.getUuid().toString());
-                statement.setTimestamp(2, Timestamp.from(within.toInstant()));
-                statement.executeUpdate();
-            }
+            rotateLatestSnapshot(connection, user, within);
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to delete a user's data from the database", e);
         }
     }
 
+    @Blocking
+    private void rotateLatestSnapshot(@NotNull Connection connection, @NotNull User user,
+                                      @NotNull OffsetDateTime within) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(formatStatementTables(ROTATE_LATEST_SNAPSHOT))) {
+            statement.setString(1, user.getUuid().toString());
+            statement.setTimestamp(2, Timestamp.from(within.toInstant()));
+            statement.executeUpdate();
+        }
+    }
+
     @Blocking
     @Override
     protected void createSnapshot(@NotNull User user, @NotNull DataSnapshot.Packed data) {
         try (Connection connection = getConnection()) {
-            try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
-                    INSERT INTO `%user_data_table%`
-                    (`player_uuid`,`version_uuid`,`timestamp`,`save_cause`,`pinned`,`data`,`origin_server`)
-                    VALUES (?,?,?,?,?,?,?);"""))) {
-                statement.setString(1, user.getUuid().toString());
-                statement.setString(2, data.getId().toString());
-                statement.setTimestamp(3, Timestamp.from(data.getTimestamp().toInstant()));
-                statement.setString(4, data.getSaveCause().name());
-                statement.setBoolean(5, data.isPinned());
-                statement.setBlob(6, new ByteArrayInputStream(data.asBytes(plugin)));
-                statement.setString(7, data.setOriginServer());
-                statement.executeUpdate();
-            }
+            final Set<String> savedCanvases = createSnapshot(connection, user, SnapshotManifest.of(plugin, data));
+            getMapCanvasStore().markSaved(savedCanvases);
         } catch (SQLException | DataAdapter.AdaptionException e) {
             plugin.log(Level.SEVERE, "Failed to set user data in the database", e);
         }
     }
 
+    // Insert a snapshot as a manifest with its data sections and map canvas references,
+    // returning the hashes of the map canvases saved with it
+    @Blocking
+    @NotNull
+    private Set<String> createSnapshot(@NotNull Connection connection, @NotNull User user,
+                                       @NotNull SnapshotManifest manifest) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(formatStatementTables(INSERT_SNAPSHOT))) {
+            setSnapshotParameters(statement, user, manifest);
+            statement.executeUpdate();
+        }
+        saveDataSections(connection, List.of(manifest));
+        return saveMapCanvasReferences(connection, List.of(manifest.snapshot()));
+    }
+
+    // Set the parameters of an INSERT_SNAPSHOT statement. The size of the snapshot is that of its manifest and sections
+    private void setSnapshotParameters(@NotNull PreparedStatement statement, @NotNull User user,
+                                       @NotNull SnapshotManifest manifest) throws SQLException {
+        final DataSnapshot.Packed data = manifest.snapshot();
+        statement.setString(1, user.getUuid().toString());
+        statement.setString(2, data.getId().toString());
+        statement.setTimestamp(3, Timestamp.from(data.getTimestamp().toInstant()));
+        statement.setString(4, data.getSaveCause().name());
+        statement.setBoolean(5, data.isPinned());
+        statement.setBlob(6, new ByteArrayInputStream(manifest.stored()));
+        statement.setInt(7, manifest.size());
+        statement.setString(8, data.setOriginServer());
+    }
+
+    /**
+     * Save user data to the database in a single transaction on one connection, rotating the user's snapshots.
+     * <p>
+     * The time taken by each phase of the save is recorded in the plugin's performance metrics
+     *
+     * @param user     The user to add data for
+     * @param snapshot The {@link DataSnapshot} to set.
+     */
+    @Blocking
+    @Override
+    protected void addAndRotateSnapshot(@NotNull User user, @NotNull DataSnapshot.Packed snapshot) {
+        final PerformanceMetrics metrics = plugin.getPerformanceMetrics();
+        final long startedAt = System.nanoTime();
+        try {
+            final byte[] dataBytes = snapshot.asBytes(plugin);
+            final SnapshotManifest manifest = SnapshotManifest.of(plugin, snapshot);
+            long phaseStartedAt = metrics.recordSince("database.save.encode", startedAt);
+            try (Connection connection = getConnection()) {
+                phaseStartedAt = metrics.recordSince("database.save.connection", phaseStartedAt);
+                connection.setAutoCommit(false);
+                try {
+                    final int backupFrequency = plugin.getSettings().getBackupFrequency();
+                    if (!snapshot.isPinned() && backupFrequency > 0) {
+                        rotateLatestSnapshot(connection, user, snapshot.getTimestamp().minusHours(backupFrequency));
+                        phaseStartedAt = metrics.recordSince("database.save.rotate_latest", phaseStartedAt);
+                    }
+                    final Set<String> savedCanvases = createSnapshot(connection, user, manifest);
+                    phaseStartedAt = metrics.recordSince("database.save.insert", phaseStartedAt);
+                    rotateSnapshots(connection, user);
+                    phaseStartedAt = metrics.recordSince("database.save.rotate", phaseStartedAt);
+                    connection.commit();
+                    getMapCanvasStore().markSaved(savedCanvases);
+                    phaseStartedAt = metrics.recordSince("database.save.commit", phaseStartedAt);
+                    cacheSnapshot(new EncodedSnapshot(user, snapshot, dataBytes));
+                    metrics.recordSince("database.save.cache", phaseStartedAt);
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException | DataAdapter.AdaptionException e) {
+            plugin.log(Level.SEVERE, "Failed to save user data to the database", e);
+            return;
+        }
+        metrics.recordSince("database.save.total", startedAt);
+    }
+
+    /**
+     * Save a batch of encoded user data to the database in a single transaction, using batched statements.
+     * <p>
+     * Latest snapshot rotations and snapshot insertions are each sent as one batch, before each user's snapshots are
+     * rotated once
+     *
+     * @param snapshots    The {@link EncodedSnapshot}s to set, in the order they were created
+     * @param rotateLatest Whether to delete each user's most recent snapshot if it was created before the backup
+     *                     frequency time
+     * @return whether the batch was saved
+     */
+    @Blocking
+    @Override
+    protected boolean addAndRotateEncodedSnapshots(@NotNull List<EncodedSnapshot> snapshots, boolean rotateLatest) {
+        if (snapshots.isEmpty()) {
+            return true;
+        }
+        final List<SnapshotManifest> manifests;
+        try {
+            manifests = snapshots.stream().map(encoded -> SnapshotManifest.of(plugin, encoded.snapshot())).toList();
+        } catch (DataAdapter.AdaptionException e) {
+            plugin.log(Level.SEVERE, "Failed to encode a batch of user data for the database", e);
+            return false;
+        }
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                final int backupFrequency = plugin.getSettings().getBackupFrequency();
+                if (rotateLatest && backupFrequency > 0) {
+                    try (PreparedStatement statement = connection.prepareStatement(
+                            formatStatementTables(ROTATE_LATEST_SNAPSHOT))) {
+                        for (EncodedSnapshot encoded : snapshots) {
+                            if (encoded.snapshot().isPinned()) {
+                                continue;
+                            }
+                            statement.setString(1, encoded.user().getUuid().toString());
+                            statement.setTimestamp(2, Timestamp.from(encoded.snapshot().getTimestamp()
+                                    .minusHours(backupFrequency).toInstant()));
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
+                }
+                try (PreparedStatement statement = connection.prepareStatement(formatStatementTables(INSERT_SNAPSHOT))) {
+                    for (int i = 0; i < snapshots.size(); i++) {
+                        final EncodedSnapshot encoded = snapshots.get(i);
+                        setSnapshotParameters(statement, encoded.user(), manifests.get(i));
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+                saveDataSections(connection, manifests);
+                final Set<String> savedCanvases = saveMapCanvasReferences(connection, snapshots.stream()
+                        .map(EncodedSnapshot::snapshot).toList());
+                final Map<UUID, User> users = new LinkedHashMap<>();
+                snapshots.forEach(encoded -> users.putIfAbsent(encoded.user().getUuid(), encoded.user()));
+                for (User user : users.values()) {
+                    rotateSnapshots(connection, user);
+                }
+                connection.commit();
+                getMapCanvasStore().markSaved(savedCanvases);
+                snapshots.forEach(this::cacheSnapshot);
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to save a batch of user data to the database", e);
+        }
+        return false;
+    }
+
     @Blocking
     @Override
     public void updateSnapshot(@NotNull User user, @NotNull DataSnapshot.Packed data) {
         try (Connection connection = getConnection()) {
+            final SnapshotManifest manifest = SnapshotManifest.of(plugin, data);
+            final Set<String> savedCanvases;
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
+                        UPDATE `%user_data_table%`
+                        SET `save_cause`=?,`pinned`=?,`data`=?,`data_size`=?,`origin_server`=?,`manifest`=TRUE
+                        WHERE `player_uuid`=? AND `version_uuid`=?
+                        LIMIT 1;"""))) {
+                    statement.setString(1, data.getSaveCause().name());
+                    statement.setBoolean(2, data.isPinned());
+                    statement.setBlob(3, new ByteArrayInputStream(manifest.stored()));
+                    statement.setInt(4, manifest.size());
+                    statement.setString(5, data.setOriginServer());
+                    statement.setString(6, user.getUuid().toString());
+                    statement.setString(7, data.getId().toString());
+                    if (statement.executeUpdate() == 0) {
+                        connection.rollback();
+                        return;
+                    }
+                }
+
+                // Replace the snapshot's data section and map canvas references
+                for (String referencesTable : List.of("%data_section_references_table%", "%map_references_table%")) {
+                    try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
+                            DELETE FROM `%references_table%`
+                            WHERE `version_uuid`=?;""".replace("%references_table%", referencesTable)))) {
+                        statement.setString(1, data.getId().toString());
+                        statement.executeUpdate();
+                    }
+                }
+                saveDataSections(connection, List.of(manifest));
+                savedCanvases = saveMapCanvasReferences(connection, List.of(data));
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            getMapCanvasStore().markSaved(savedCanvases);
+            invalidateCachedSnapshot(user);
+        } catch (SQLException | DataAdapter.AdaptionException e) {
+            plugin.log(Level.SEVERE, "Failed to pin user data in the database", e);
+        }
+    }
+
+    /**
+     * Save the data sections of snapshots stored as manifests, and each snapshot's references to its sections.
+     * <p>
+     * Only sections that aren't already stored are written. Stored sections are locked until the transaction ends,
+     * so that they can't be pruned before the new references to them are committed
+     *
+     * @param connection The {@link Connection} to save the sections with
+     * @param manifests  The manifests of the snapshots to save the sections of, which must already be inserted
+     * @throws SQLException if the sections could not be saved
+     */
+    @Blocking
+    private void saveDataSections(@NotNull Connection connection,
+                                  @NotNull List<SnapshotManifest> manifests) throws SQLException {
+        final Map<String, byte[]> sections = new HashMap<>();
+        manifests.forEach(manifest -> manifest.hashes().forEach(
+                (identifier, hash) -> sections.putIfAbsent(hash, manifest.getSection(identifier))
+        ));
+        if (sections.isEmpty()) {
+            return;
+        }
+
+        // Find and lock the sections that are already stored
+        final List<String> hashes = List.copyOf(sections.keySet());
+        final Set<String> stored = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
+                SELECT `hash`
+                FROM `%data_sections_table%`
+                WHERE `hash` IN (%hashes%)
+                LOCK IN SHARE MODE;""").replace("%hashes%", getPlaceholders(hashes.size())))) {
+            for (int i = 0; i < hashes.size(); i++) {
+                statement.setString(i + 1, hashes.get(i));
+            }
+            final ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                stored.add(resultSet.getString("hash"));
+            }
+        }
+
+        // Write the sections that aren't stored yet
+        if (stored.size() < sections.size()) {
             try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
-                    UPDATE `%user_data_table%`
-                    SET `save_cause`=?,`pinned`=?,`data`=?,`origin_server`=?
-                    WHERE `player_uuid`=? AND `version_uuid`=?
+                    INSERT IGNORE INTO `%data_sections_table%` (`hash`,`data`,`created`)
+                    VALUES (?,?,?);"""))) {
+                final Timestamp now = Timestamp.from(Instant.now());
+                final boolean compress = plugin.getSettings().doCompressData();
+                for (Map.Entry<String, byte[]> section : sections.entrySet()) {
+                    if (stored.contains(section.getKey())) {
+                        continue;
+                    }
+                    statement.setString(1, section.getKey());
+                    statement.setBlob(2, new ByteArrayInputStream(
+                            SnapshotManifest.encodeSection(section.getValue(), compress)
+                    ));
+                    statement.setTimestamp(3, now);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            } catch (IOException e) {
+                throw new SQLException("Failed to compress a snapshot data section", e);
+            }
+        }
+        plugin.getPerformanceMetrics().add("database.sections.reused", stored.size());
+        plugin.getPerformanceMetrics().add("database.sections.written", sections.size() - stored.size());
+
+        // Save each snapshot's references to its sections
+        try (PreparedStatement statement = connection.prepareStatement(
+                formatStatementTables(INSERT_DATA_SECTION_REFERENCE))) {
+            for (SnapshotManifest manifest : manifests) {
+                for (String hash : new HashSet<>(manifest.hashes().values())) {
+                    statement.setString(1, manifest.snapshot().getId().toString());
+                    statement.setString(2, hash);
+                    statement.addBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Save the map canvas references of snapshots, along with any referenced canvases that have not been saved yet
+     *
+     * @param connection The {@link Connection} to save the references with
+     * @param snapshots  The snapshots to save the references of, which must already be inserted
+     * @return the hashes of the canvases that were saved
+     * @throws SQLException if the references could not be saved
+     */
+    @Blocking
+    @NotNull
+    private Set<String> saveMapCanvasReferences(@NotNull Connection connection,
+                                                @NotNull List<DataSnapshot.Packed> snapshots) throws SQLException {
+        final Map<UUID, Set<String>> references = new HashMap<>();
+        final Set<String> referenced = new HashSet<>();
+        for (DataSnapshot.Packed snapshot : snapshots) {
+            final Set<String> hashes = MapCanvasStore.getReferencedHashes(snapshot);
+            if (!hashes.isEmpty()) {
+                references.put(snapshot.getId(), hashes);
+                referenced.addAll(hashes);
+            }
+        }
+        if (referenced.isEmpty()) {
+            return Set.of();
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(formatStatementTables(INSERT_MAP_REFERENCE))) {
+            for (Map.Entry<UUID, Set<String>> entry : references.entrySet()) {
+                for (String hash : entry.getValue()) {
+                    statement.setString(1, entry.getKey().toString());
+                    statement.setString(2, hash);
+                    statement.addBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+        final Map<String, byte[]> unsaved = getMapCanvasStore().getUnsaved(referenced);
+        saveMapCanvases(connection, unsaved);
+        return unsaved.keySet();
+    }
+
+    @Blocking
+    @Override
+    protected Optional<byte[]> getMapCanvas(@NotNull String hash) {
+        try (Connection connection = getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
+                    SELECT `data`
+                    FROM `%map_data_table%`
+                    WHERE `hash`=?
                     LIMIT 1;"""))) {
-                statement.setString(1, data.getSaveCause().name());
-                statement.setBoolean(2, data.isPinned());
-                statement.setBlob(3, new ByteArrayInputStream(data.asBytes(plugin)));
-                statement.setString(4, data.setOriginServer());
-                statement.setString(5, user.getUuid().toString());
-                statement.setString(6, data.getId().toString());
-                statement.executeUpdate();
+                statement.setString(1, hash);
+                final ResultSet resultSet = statement.executeQuery();
+                if (resultSet.next()) {
+                    final Blob blob = resultSet.getBlob("data");
+                    final byte[] data = blob.getBytes(1, (int) blob.length());
+                    blob.free();
+                    return Optional.of(data);
+                }
             }
         } catch (SQLException e) {
-            plugin.log(Level.SEVERE, "Failed to pin user data in the database", e);
+            plugin.log(Level.SEVERE, "Failed to fetch a locked map canvas from the database", e);
+        }
+        return Optional.empty();
+    }
+
+    @Blocking
+    @Override
+    protected void saveMapCanvases(@NotNull Map<String, byte[]> canvases) throws IllegalStateException {
+        try (Connection connection = getConnection()) {
+            saveMapCanvases(connection, canvases);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to save locked map canvases to the database", e);
+        }
+    }
+
+    @Blocking
+    private void saveMapCanvases(@NotNull Connection connection,
+                                 @NotNull Map<String, byte[]> canvases) throws SQLException {
+        if (canvases.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
+                INSERT INTO `%map_data_table%` (`hash`,`data`,`created`)
+                VALUES (?,?,?)
+                ON DUPLICATE KEY UPDATE `created`=VALUES(`created`);"""))) {
+            final Timestamp now = Timestamp.from(Instant.now());
+            for (Map.Entry<String, byte[]> canvas : canvases.entrySet()) {
+                statement.setString(1, canvas.getKey());
+                statement.setBlob(2, new ByteArrayInputStream(canvas.getValue()));
+                statement.setTimestamp(3, now);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Delete map canvases and data sections that are no longer referenced by any snapshot, on the prune task.
+     * <p>
+     * Entries saved within their grace period are kept, as servers may still be saving snapshots that reference them
+     */
+    @Blocking
+    private void pruneUnreferencedData() {
+        final long now = System.currentTimeMillis();
+        try (Connection connection = getConnection()) {
+            pruneUnreferenced(connection, "%map_data_table%", "%map_references_table%",
+                    now - MAP_CANVAS_PRUNE_GRACE_MILLIS, "locked map canvas(es)");
+            pruneUnreferenced(connection, "%data_sections_table%", "%data_section_references_table%",
+                    now - DATA_SECTION_PRUNE_GRACE_MILLIS, "snapshot data section(s)");
+        } catch (SQLException | IllegalStateException e) {
+            plugin.log(Level.WARNING, "Failed to prune unreferenced data from the database", e);
+        }
+    }
+
+    // Delete entries from a content-addressed table that are unreferenced and were saved before a time, in batches
+    @Blocking
+    private void pruneUnreferenced(@NotNull Connection connection, @NotNull String table,
+                                   @NotNull String referencesTable, long savedBefore, @NotNull String entryName) {
+        final Timestamp before = Timestamp.from(Instant.ofEpochMilli(savedBefore));
+        int pruned = 0;
+        try {
+            List<String> hashes;
+            do {
+                hashes = findUnreferenced(connection, table, referencesTable, before);
+                pruned += deleteUnreferenced(connection, table, referencesTable, before, hashes);
+            } while (hashes.size() == PRUNE_BATCH_SIZE);
+        } catch (SQLException e) {
+            plugin.log(Level.WARNING, "Failed to prune unreferenced " + entryName + " from the database", e);
+        }
+        if (pruned > 0) {
+            plugin.debug(String.format("Pruned %s unreferenced %s", pruned, entryName));
+        }
+    }
+
+    // Find the hashes of up to a batch of unreferenced entries in a content-addressed table saved before a time
+    @Blocking
+    @NotNull
+    private List<String> findUnreferenced(@NotNull Connection connection, @NotNull String table,
+                                          @NotNull String referencesTable,
+                                          @NotNull Timestamp before) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
+                SELECT `entry`.`hash`
+                FROM `%table%` AS `entry`
+                LEFT JOIN `%references_table%` AS `reference` ON `entry`.`hash`=`reference`.`hash`
+                WHERE `reference`.`hash` IS NULL AND `entry`.`created`<?
+                LIMIT ?;"""
+                .replace("%table%", table)
+                .replace("%references_table%", referencesTable)))) {
+            statement.setTimestamp(1, before);
+            statement.setInt(2, PRUNE_BATCH_SIZE);
+            final ResultSet resultSet = statement.executeQuery();
+            final List<String> hashes = new ArrayList<>();
+            while (resultSet.next()) {
+                hashes.add(resultSet.getString("hash"));
+            }
+            return hashes;
+        }
+    }
+
+    // Delete entries from a content-addressed table, unless they have been referenced or saved again since being found
+    @Blocking
+    private int deleteUnreferenced(@NotNull Connection connection, @NotNull String table,
+                                   @NotNull String referencesTable, @NotNull Timestamp before,
+                                   @NotNull List<String> hashes) throws SQLException {
+        if (hashes.isEmpty()) {
+            return 0;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(formatStatementTables("""
+                DELETE FROM `%table%`
+                WHERE `hash` IN (%hashes%) AND `created`<? AND NOT EXISTS (
+                    SELECT 1
+                    FROM `%references_table%` AS `reference`
+                    WHERE `reference`.`hash`=`%table%`.`hash`
+                );"""
+                .replace("%table%", table)
+                .replace("%references_table%", referencesTable))
+                .replace("%hashes%", getPlaceholders(hashes.size())))) {
+            for (int i = 0; i < hashes.size(); i++) {
+                statement.setString(i + 1, hashes.get(i));
+            }
+            statement.setTimestamp(hashes.size() + 1, before);
+            return statement.executeUpdate();
         }
     }
 
@@ -399,6 +1046,7 @@ public class MySqlDatabase extends Database {
             try (Statement statement = connection.createStatement()) {
                 statement.executeUpdate(formatStatementTables("DELETE FROM `%user_data_table%`;"));
             }
+            plugin.getRedisManager().invalidateCachedSnapshots();
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to wipe the database", e);
         }
@@ -406,6 +1054,9 @@ public class MySqlDatabase extends Database {
 
     @Override
     public void terminate() {
+        if (pruneTask != null) {
+            pruneTask.cancel();
+        }
         if (dataSource != null) {
             if (!dataSource.isClosed()) {
                 dataSource.close();
@@ -0,0 +1,184 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.database;
+
+import net.william278.husksync.HuskSync;
+import net.william278.husksync.adapter.DataAdapter;
+import net.william278.husksync.data.DataSnapshot;
+import org.jetbrains.annotations.NotNull;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A snapshot split into content-addressed data sections, so that sections identical to those of other snapshots
+ * (e.g. unchanged advancements or statistics) are stored once, rather than in every snapshot.
+ * <p>
+ * In its stored form, a manifest is a snapshot whose serialized data maps each identifier to the SHA-256 hash of its
+ * section, rather than to the section itself. The hashes of binary sections are held as the (UTF-8) binary data of the
+ * stored form, so that they are resolved back to binary sections. Sections are stored as bytes, text sections as UTF-8.
+ *
+ * @param snapshot the snapshot
+ * @param hashes   the hash of each section of the snapshot, keyed by identifier
+ * @param stored   the encoded stored form of the manifest
+ * @param size     the size of the snapshot's stored form and sections, in bytes, before the sections are compressed
+ */
+record SnapshotManifest(@NotNull DataSnapshot.Packed snapshot, @NotNull Map<String, String> hashes, byte[] stored,
+                        int size) {
+
+    private static final int FLAG_COMPRESSED = 0x01;
+
+    /**
+     * Hash each data section of a snapshot, and encode the stored form of its manifest: a copy of the snapshot with
+     * its sections replaced by their hashes
+     *
+     * @param plugin   the plugin instance
+     * @param snapshot the snapshot
+     * @return the snapshot's manifest
+     * @throws DataAdapter.AdaptionException if the manifest could not be encoded
+     */
+    @NotNull
+    static SnapshotManifest of(@NotNull HuskSync plugin,
+                               @NotNull DataSnapshot.Packed snapshot) throws DataAdapter.AdaptionException {
+        final Map<String, String> hashes = new LinkedHashMap<>();
+        final Map<String, String> textHashes = new LinkedHashMap<>();
+        final Map<String, byte[]> binaryHashes = new LinkedHashMap<>();
+        int sectionsSize = 0;
+        for (Map.Entry<String, String> section : snapshot.getSerializedData().entrySet()) {
+            final byte[] bytes = section.getValue().getBytes(StandardCharsets.UTF_8);
+            final String hash = ContentHash.sha256(bytes);
+            hashes.put(section.getKey(), hash);
+            textHashes.put(section.getKey(), hash);
+            sectionsSize += bytes.length;
+        }
+        for (Map.Entry<String, byte[]> section : snapshot.getSerializedBinaryData().entrySet()) {
+            final String hash = ContentHash.sha256(section.getValue());
+            hashes.put(section.getKey(), hash);
+            binaryHashes.put(section.getKey(), hash.getBytes(StandardCharsets.UTF_8));
+            sectionsSize += section.getValue().length;
+        }
+        final DataSnapshot.Packed stored = DataSnapshot.Packed.from(
+                snapshot.getId(), snapshot.isPinned(), snapshot.getTimestamp(), snapshot.getSaveCause(), textHashes,
+                binaryHashes, snapshot.getMinecraftVersion(), snapshot.getPlatformType(), snapshot.getFormatVersion(),
+                snapshot.getOriginServer()
+        );
+        final byte[] storedBytes = stored.asBytes(plugin);
+        return new SnapshotManifest(snapshot, hashes, storedBytes, storedBytes.length + sectionsSize);
+    }
+
+    /**
+     * Get a data section of the snapshot, as it is stored
+     *
+     * @param identifier the identifier of the section
+     * @return the section's bytes
+     */
+    byte[] getSection(@NotNull String identifier) {
+        final byte[] binary = snapshot.getSerializedBinaryData().get(identifier);
+        return binary != null ? binary : snapshot.getSerializedData().get(identifier).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the hashes of the sections referenced by a stored manifest snapshot
+     *
+     * @param stored the stored manifest snapshot
+     * @return the section hashes, keyed by identifier
+     */
+    @NotNull
+    static Map<String, String> getHashes(@NotNull DataSnapshot.Packed stored) {
+        final Map<String, String> hashes = new LinkedHashMap<>(stored.getSerializedData());
+        stored.getSerializedBinaryData().forEach(
+                (identifier, hash) -> hashes.put(identifier, new String(hash, StandardCharsets.UTF_8))
+        );
+        return hashes;
+    }
+
+    /**
+     * Resolve a stored manifest snapshot, replacing the hashes of its sections with their content
+     *
+     * @param stored   the stored manifest snapshot
+     * @param sections the content of sections, keyed by hash
+     * @return the resolved snapshot
+     * @throws DataAdapter.AdaptionException if a section is missing
+     */
+    @NotNull
+    static DataSnapshot.Packed resolve(@NotNull DataSnapshot.Packed stored,
+                                       @NotNull Map<String, byte[]> sections) throws DataAdapter.AdaptionException {
+        final Map<String, String> data = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : stored.getSerializedData().entrySet()) {
+            data.put(entry.getKey(), new String(getStoredSection(stored, sections, entry.getKey(), entry.getValue()),
+                    StandardCharsets.UTF_8));
+        }
+        final Map<String, byte[]> binaryData = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> entry : stored.getSerializedBinaryData().entrySet()) {
+            binaryData.put(entry.getKey(), getStoredSection(stored, sections, entry.getKey(),
+                    new String(entry.getValue(), StandardCharsets.UTF_8)));
+        }
+        return DataSnapshot.Packed.from(
+                stored.getId(), stored.isPinned(), stored.getTimestamp(), stored.getSaveCause(), data, binaryData,
+                stored.getMinecraftVersion(), stored.getPlatformType(), stored.getFormatVersion(),
+                stored.getOriginServer()
+        );
+    }
+
+    // Get the content of a section of a stored manifest snapshot by its hash
+    private static byte[] getStoredSection(@NotNull DataSnapshot.Packed stored, @NotNull Map<String, byte[]> sections,
+                                           @NotNull String identifier,
+                                           @NotNull String hash) throws DataAdapter.AdaptionException {
+        final byte[] section = sections.get(hash);
+        if (section == null) {
+            throw new DataAdapter.AdaptionException(String.format("Missing data section %s (%s) of snapshot %s",
+                    identifier, hash, stored.getId()));
+        }
+        return section;
+    }
+
+    /**
+     * Encode a section to be stored
+     *
+     * @param bytes    the section's bytes
+     * @param compress whether to compress the section
+     * @return the encoded section
+     * @throws IOException if the section could not be compressed
+     */
+    static byte[] encodeSection(byte[] bytes, boolean compress) throws IOException {
+        final byte[] body = compress ? Snappy.compress(bytes) : bytes;
+        final byte[] encoded = new byte[body.length + 1];
+        encoded[0] = (byte) (compress ? FLAG_COMPRESSED : 0);
+        System.arraycopy(body, 0, encoded, 1, body.length);
+        return encoded;
+    }
+
+    /**
+     * Decode a stored section
+     *
+     * @param encoded the encoded section
+     * @return the section's bytes
+     * @throws IOException if the section could not be decompressed
+     */
+    static byte[] decodeSection(byte[] encoded) throws IOException {
+        final byte[] body = Arrays.copyOfRange(encoded, 1, encoded.length);
+        return (encoded[0] & FLAG_COMPRESSED) != 0 ? Snappy.uncompress(body) : body;
+    }
+
+}
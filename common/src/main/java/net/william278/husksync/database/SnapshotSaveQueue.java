@@ -0,0 +1,284 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.database;
+
+import net.william278.husksync.HuskSync;
+import net.william278.husksync.data.DataSnapshot;
+import net.william278.husksync.user.User;
+import org.jetbrains.annotations.Blocking;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * A write-behind queue of {@link DataSnapshot}s waiting to be saved to the {@link Database}.
+ * <p>
+ * Snapshots queued for the same user before they are written are coalesced, so only the newest snapshot (and any
+ * pinned or {@link DataSnapshot.SaveCause#DEATH death} snapshots) are kept. Queued snapshots are periodically flushed
+ * to the database in batches.
+ * Snapshots {@link #save(User, DataSnapshot.Packed) saved immediately} supersede those queued for the same user.
+ * </p>
+ * The queue is bounded; threads queueing snapshots will block while it is full.
+ */
+public class SnapshotSaveQueue {
+
+    // The maximum number of snapshots that can be queued or being written at once
+    private static final int MAX_QUEUED_SNAPSHOTS = 512;
+    // The maximum number of snapshots to write to the database in a single batch
+    private static final int MAX_BATCH_SIZE = 128;
+    // How long to wait after a snapshot is queued before flushing, allowing more snapshots to be batched
+    private static final long FLUSH_DELAY_TICKS = 20L;
+
+    private final HuskSync plugin;
+    private final Database database;
+    private final Map<UUID, Pending> pending;
+    private final Set<UUID> writing;
+    private int queued;
+    private boolean flushScheduled;
+    private boolean flushing;
+    private boolean closed;
+
+    protected SnapshotSaveQueue(@NotNull HuskSync plugin, @NotNull Database database) {
+        this.plugin = plugin;
+        this.database = database;
+        this.pending = new LinkedHashMap<>();
+        this.writing = new HashSet<>();
+        plugin.getPerformanceMetrics().registerGauge("save_queue.depth", this::getQueuedCount);
+    }
+
+    /**
+     * Queue a snapshot to be saved to the database, blocking while the queue is full.
+     * <p>
+     * If the queue has been {@link #drain() drained}, the snapshot will be saved immediately on this thread instead
+     *
+     * @param user     The user to save the snapshot for
+     * @param snapshot The snapshot to save
+     */
+    @Blocking
+    public void queue(@NotNull User user, @NotNull DataSnapshot.Packed snapshot) {
+        synchronized (this) {
+            awaitCapacity();
+            if (!closed) {
+                final Pending entry = pending.computeIfAbsent(user.getUuid(), uuid -> new Pending(user));
+                if (entry.add(snapshot)) {
+                    plugin.getPerformanceMetrics().increment("save_queue.coalesced");
+                } else {
+                    queued++;
+                }
+                this.scheduleFlush(queued >= MAX_BATCH_SIZE ? 0 : FLUSH_DELAY_TICKS);
+                return;
+            }
+        }
+        database.addAndRotateSnapshot(user, snapshot);
+    }
+
+    /**
+     * Save a snapshot to the database immediately on this thread.
+     * <p>
+     * Any snapshots queued for the user are superseded by the snapshot, except pinned and death snapshots, which are
+     * written before it, so that an older queued snapshot is never written after (and rotated in place of) the saved
+     * snapshot
+     *
+     * @param user     The user to save the snapshot for
+     * @param snapshot The snapshot to save
+     */
+    @Blocking
+    public void save(@NotNull User user, @NotNull DataSnapshot.Packed snapshot) {
+        final List<DataSnapshot.Packed> retained = new ArrayList<>();
+        synchronized (this) {
+            awaitWrite(user.getUuid());
+            final Pending entry = pending.remove(user.getUuid());
+            if (entry != null) {
+                entry.snapshots.stream().filter(SnapshotSaveQueue::isRetained).forEach(retained::add);
+                plugin.getPerformanceMetrics().add("save_queue.coalesced", entry.snapshots.size() - retained.size());
+                queued -= entry.snapshots.size();
+                notifyAll();
+            }
+        }
+        retained.forEach(queuedSnapshot -> database.addAndRotateSnapshot(user, queuedSnapshot));
+        database.addAndRotateSnapshot(user, snapshot);
+    }
+
+    /**
+     * Write all queued snapshots to the database on this thread, and stop queueing further snapshots
+     */
+    @Blocking
+    public void drain() {
+        synchronized (this) {
+            closed = true;
+            awaitFlush();
+            flushing = true;
+        }
+        try {
+            List<Map.Entry<User, DataSnapshot.Packed>> batch;
+            while (!(batch = takeBatch()).isEmpty()) {
+                this.write(batch);
+            }
+        } finally {
+            synchronized (this) {
+                flushing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Get the number of snapshots that are queued or being written
+     *
+     * @return the number of queued snapshots
+     */
+    public synchronized int getQueuedCount() {
+        return queued;
+    }
+
+    // Flush a batch of queued snapshots to the database
+    private void flush() {
+        final List<Map.Entry<User, DataSnapshot.Packed>> batch;
+        synchronized (this) {
+            flushScheduled = false;
+            if (flushing || pending.isEmpty()) {
+                return;
+            }
+            flushing = true;
+            batch = takeBatch();
+        }
+        try {
+            this.write(batch);
+        } finally {
+            synchronized (this) {
+                flushing = false;
+                notifyAll();
+                if (!pending.isEmpty()) {
+                    this.scheduleFlush(0);
+                }
+            }
+        }
+    }
+
+    // Write a batch of snapshots to the database, then free up their capacity in the queue
+    private void write(@NotNull List<Map.Entry<User, DataSnapshot.Packed>> batch) {
+        final long startedAt = System.nanoTime();
+        try {
+            database.addAndRotateSnapshots(batch);
+        } catch (Throwable e) {
+            plugin.log(Level.SEVERE, "Failed to save a batch of queued snapshots to the database", e);
+        } finally {
+            plugin.getPerformanceMetrics().recordSince("save_queue.flush", startedAt);
+            plugin.getPerformanceMetrics().add("save_queue.flushed", batch.size());
+            synchronized (this) {
+                batch.forEach(entry -> writing.remove(entry.getKey().getUuid()));
+                queued -= batch.size();
+                notifyAll();
+            }
+        }
+    }
+
+    // Remove the oldest queued snapshots from the queue, up to the maximum batch size
+    @NotNull
+    private synchronized List<Map.Entry<User, DataSnapshot.Packed>> takeBatch() {
+        final List<Map.Entry<User, DataSnapshot.Packed>> batch = new ArrayList<>();
+        final Iterator<Pending> iterator = pending.values().iterator();
+        while (iterator.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+            final Pending entry = iterator.next();
+            entry.snapshots.forEach(snapshot -> batch.add(Map.entry(entry.user, snapshot)));
+            writing.add(entry.user.getUuid());
+            iterator.remove();
+        }
+        return batch;
+    }
+
+    // Whether a snapshot must never be superseded: pinned snapshots, and death snapshots, which back up a player's drops
+    private static boolean isRetained(@NotNull DataSnapshot.Packed snapshot) {
+        return snapshot.isPinned() || snapshot.getSaveCause() == DataSnapshot.SaveCause.DEATH;
+    }
+
+    private void scheduleFlush(long delayTicks) {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            plugin.runAsyncDelayed(this::flush, delayTicks);
+        }
+    }
+
+    // Wait for capacity in the queue, applying backpressure to the calling thread
+    private void awaitCapacity() {
+        if (queued < MAX_QUEUED_SNAPSHOTS || closed) {
+            return;
+        }
+        final long startedAt = System.nanoTime();
+        try {
+            while (queued >= MAX_QUEUED_SNAPSHOTS && !closed) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        plugin.getPerformanceMetrics().recordSince("save_queue.backpressure", startedAt);
+    }
+
+    // Wait for any snapshots of a user that are being written to finish writing
+    private void awaitWrite(@NotNull UUID uuid) {
+        try {
+            while (writing.contains(uuid)) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Wait for any ongoing flush to finish
+    private void awaitFlush() {
+        try {
+            while (flushing) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Snapshots queued for a user
+     */
+    private static class Pending {
+
+        private final User user;
+        private final List<DataSnapshot.Packed> snapshots = new ArrayList<>(1);
+
+        private Pending(@NotNull User user) {
+            this.user = user;
+        }
+
+        /**
+         * Queue a snapshot, superseding any snapshot queued before it that isn't retained
+         *
+         * @param snapshot the snapshot to queue
+         * @return {@code true} if a snapshot was superseded
+         */
+        private boolean add(@NotNull DataSnapshot.Packed snapshot) {
+            final boolean superseded = snapshots.removeIf(existing -> !isRetained(existing));
+            snapshots.add(snapshot);
+            return superseded;
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.database;
+
+import net.william278.husksync.HuskSync;
+import net.william278.husksync.data.DataSnapshot;
+import net.william278.husksync.user.User;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * A local file holding encoded snapshots that could not be saved to the database when the server shut down
+ */
+class UnsavedSnapshotFile {
+
+    private static final String FILE_NAME = "unsaved_snapshots.dat";
+
+    private final HuskSync plugin;
+    private final File file;
+
+    UnsavedSnapshotFile(@NotNull HuskSync plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), FILE_NAME);
+    }
+
+    boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Append snapshots to the file
+     *
+     * @param snapshots the snapshots to write
+     * @return whether the snapshots were written
+     */
+    boolean write(@NotNull List<Database.EncodedSnapshot> snapshots) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            for (Database.EncodedSnapshot encoded : snapshots) {
+                out.writeUTF(encoded.user().getUuid().toString());
+                out.writeUTF(encoded.user().getUsername());
+                out.writeInt(encoded.data().length);
+                out.write(encoded.data());
+            }
+            return true;
+        } catch (IOException e) {
+            plugin.log(Level.SEVERE, "Failed to write unsaved user data to " + file.getName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Read all snapshots from the file, skipping any that can't be read
+     *
+     * @return the snapshots in the file
+     */
+    @NotNull
+    List<Database.EncodedSnapshot> read() {
+        final List<Database.EncodedSnapshot> snapshots = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (in.available() > 0) {
+                final User user = new User(UUID.fromString(in.readUTF()), in.readUTF());
+                final byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                try {
+                    snapshots.add(new Database.EncodedSnapshot(user, DataSnapshot.deserialize(plugin, data), data));
+                } catch (IllegalStateException e) {
+                    plugin.log(Level.SEVERE, "Failed to read unsaved user data for " + user.getUsername(), e);
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            plugin.log(Level.SEVERE, "Failed to read unsaved user data from " + file.getName(), e);
+        }
+        return snapshots;
+    }
+
+    void delete() {
+        if (!file.delete()) {
+            plugin.log(Level.WARNING, "Failed to delete " + file.getName());
+        }
+    }
+
+}
@@ -123,7 +123,7 @@ public class PlanHook {
         // Get the user's latest data snapshot
         private Optional<DataSnapshot.Unpacked> getLatestSnapshot(@NotNull UUID uuid) {
             return plugin.getDatabase().getUser(uuid)
-                    .flatMap(user -> plugin.getDatabase().getLatestSnapshot(user))
+                    .flatMap(user -> plugin.getDatabase().getSharedLatestSnapshot(user))
                     .map(snapshot -> snapshot.unpack(plugin));
         }
 
@@ -262,7 +262,7 @@ public class PlanHook {
                     .columnThree("Cause", new Icon(Family.SOLID, "flag", Color.NONE))
                     .columnFour("Pinned", new Icon(Family.SOLID, "thumbtack", Color.NONE));
             plugin.getDatabase().getUser(playerUUID).ifPresent(user ->
-                    plugin.getDatabase().getAllSnapshots(user).forEach(snapshot -> dataSnapshotsTable.addRow(
+                    plugin.getDatabase().getSnapshotHeaders(user).forEach(snapshot -> dataSnapshotsTable.addRow(
                             snapshot.getTimestamp().toEpochSecond(),
                             snapshot.getShortId(),
                             snapshot.getSaveCause().getDisplayName(),
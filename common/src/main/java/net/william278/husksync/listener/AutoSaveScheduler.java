@@ -0,0 +1,129 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.listener;
+
+import net.william278.husksync.HuskSync;
+import net.william278.husksync.data.DataSnapshot;
+import net.william278.husksync.user.OnlineUser;
+import net.william278.husksync.util.Task;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically saves online users' data, spreading saves evenly over the configured auto save interval.
+ * <p>
+ * Each second, the users whose last save is older than the interval are released to the
+ * {@link SnapshotCapturePipeline}, oldest first, up to the share of online users due that second. Their data is
+ * then captured within the per-tick capture budget.
+ */
+public class AutoSaveScheduler {
+
+    // How often to release users who are due a save
+    private static final long RELEASE_PERIOD_TICKS = 20L;
+
+    private final HuskSync plugin;
+    private final SnapshotCapturePipeline capturePipeline;
+    private final Map<UUID, Long> lastSaved;
+    private final Task.Repeating task;
+
+    protected AutoSaveScheduler(@NotNull HuskSync plugin, @NotNull SnapshotCapturePipeline capturePipeline) {
+        this.plugin = plugin;
+        this.capturePipeline = capturePipeline;
+        this.lastSaved = new ConcurrentHashMap<>();
+        this.task = plugin.getRepeatingTask(this::release, RELEASE_PERIOD_TICKS);
+        this.task.run();
+        plugin.getPerformanceMetrics().registerGauge("autosave.overdue", this::getOverdueCount);
+    }
+
+    /**
+     * Start tracking when a user was last saved, counting from now
+     *
+     * @param uuid the UUID of the user who joined
+     */
+    public void track(@NotNull UUID uuid) {
+        lastSaved.put(uuid, System.currentTimeMillis());
+    }
+
+    /**
+     * Stop tracking when a user was last saved
+     *
+     * @param uuid the UUID of the user who quit
+     */
+    public void untrack(@NotNull UUID uuid) {
+        lastSaved.remove(uuid);
+    }
+
+    /**
+     * Get whether auto saving is enabled
+     *
+     * @return {@code true} if an auto save interval is configured
+     */
+    public boolean isEnabled() {
+        return plugin.getSettings().getAutoSaveIntervalSeconds() > 0;
+    }
+
+    // Queue captures for the users who have gone longest without a save, up to this period's share of users
+    private void release() {
+        if (!isEnabled()) {
+            return;
+        }
+        final long interval = TimeUnit.SECONDS.toMillis(plugin.getSettings().getAutoSaveIntervalSeconds());
+        final long now = System.currentTimeMillis();
+        final long quota = (long) Math.ceil(lastSaved.size() * (RELEASE_PERIOD_TICKS * 50d) / interval);
+        plugin.getOnlineUsers().stream()
+                .filter(user -> !user.isNpc() && lastSaved.containsKey(user.getUuid()))
+                .filter(user -> now - getLastSaved(user, now) >= interval)
+                .sorted(Comparator.comparingLong(user -> getLastSaved(user, now)))
+                .limit(quota)
+                .forEach(user -> {
+                    lastSaved.computeIfPresent(user.getUuid(), (key, saved) -> now);
+                    plugin.getPerformanceMetrics().increment("autosave.released");
+                    capturePipeline.queue(user, DataSnapshot.SaveCause.WORLD_SAVE,
+                            snapshot -> plugin.getDatabase().queueSnapshot(user, snapshot));
+                });
+    }
+
+    private long getLastSaved(@NotNull OnlineUser user, long now) {
+        return lastSaved.getOrDefault(user.getUuid(), now);
+    }
+
+    // Get the number of tracked users whose last save is older than the auto save interval
+    private long getOverdueCount() {
+        if (!isEnabled()) {
+            return 0;
+        }
+        final long interval = TimeUnit.SECONDS.toMillis(plugin.getSettings().getAutoSaveIntervalSeconds());
+        final long now = System.currentTimeMillis();
+        return lastSaved.values().stream().filter(saved -> now - saved >= interval).count();
+    }
+
+    /**
+     * Stop auto saving
+     */
+    public void terminate() {
+        task.cancel();
+    }
+
+}
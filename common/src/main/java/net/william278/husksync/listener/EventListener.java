@@ -22,13 +22,14 @@ package net.william278.husksync.listener;
 import net.william278.husksync.HuskSync;
 import net.william278.husksync.data.Data;
 import net.william278.husksync.data.DataSnapshot;
+import net.william278.husksync.redis.RedisManager;
 import net.william278.husksync.user.OnlineUser;
-import net.william278.husksync.util.Task;
+import net.william278.husksync.user.User;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 /**
@@ -36,6 +37,9 @@ import java.util.logging.Level;
  */
 public abstract class EventListener {
 
+    // How long to wait for a user's data to be handed off while they are switching servers, beyond the latency
+    private static final long HANDOFF_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(8);
+
     // The plugin instance
     protected final HuskSync plugin;
 
@@ -46,6 +50,21 @@ public abstract class EventListener {
      */
     private final Set<UUID> lockedPlayers;
 
+    /**
+     * Cache of users' latest database snapshots, fetched while they log in
+     */
+    private final SnapshotPrefetchCache prefetchCache;
+
+    /**
+     * Pipeline for capturing users' data on the main thread and saving it on worker threads
+     */
+    private final SnapshotCapturePipeline capturePipeline;
+
+    /**
+     * Scheduler for periodically saving users' data, spread over the auto save interval
+     */
+    private final AutoSaveScheduler autoSaveScheduler;
+
     /**
      * Whether the plugin is currently being disabled
      */
@@ -54,9 +73,25 @@ public abstract class EventListener {
     protected EventListener(@NotNull HuskSync plugin) {
         this.plugin = plugin;
         this.lockedPlayers = new HashSet<>();
+        this.prefetchCache = new SnapshotPrefetchCache(plugin);
+        this.capturePipeline = new SnapshotCapturePipeline(plugin);
+        this.autoSaveScheduler = new AutoSaveScheduler(plugin, capturePipeline);
         this.disabling = false;
     }
 
+    /**
+     * Handle a player logging in, before they have joined the server. Starts fetching their latest data snapshot
+     * from the database so that it is ready for when they join, if they aren't switching servers.
+     *
+     * @param user The {@link User} logging in
+     */
+    protected final void handlePlayerPreLogin(@NotNull User user) {
+        if (disabling) {
+            return;
+        }
+        prefetchCache.prefetch(user);
+    }
+
     /**
      * Handle a player joining the server (including players switching from another server on the network)
      *
@@ -67,38 +102,43 @@ public abstract class EventListener {
             return;
         }
         lockedPlayers.add(user.getUuid());
-
-        plugin.runAsyncDelayed(() -> {
-            // Fetch from the database if the user isn't changing servers
-            if (!plugin.getRedisManager().getUserServerSwitch(user)) {
-                this.setUserFromDatabase(user);
-                return;
+        plugin.getDirtyDataTracker().track(user.getUuid());
+        autoSaveScheduler.track(user.getUuid());
+
+        // Listen for the source server handing off data before checking the handoff, so the notification isn't missed
+        final long joinedAt = System.nanoTime();
+        final long networkLatency = plugin.getSettings().getNetworkLatencyMilliseconds();
+        final CompletableFuture<Boolean> notified = plugin.getRedisManager()
+                .awaitUserDataHandoff(user, networkLatency + HANDOFF_TIMEOUT_MILLIS);
+        plugin.runAsync(() -> {
+            final RedisManager.HandoffState state = plugin.getRedisManager().getUserHandoffState(user);
+            plugin.getRedisManager().setUserPresence(user);
+            switch (state) {
+                // Read the data straight away if it has already been handed off
+                case READY -> notified.complete(false);
+                // Wait for the source server to finish capturing and handing off the data
+                case PENDING -> plugin.getPerformanceMetrics().increment("server_switch.wait");
+                // Otherwise, apply the prefetched or database data straight away
+                case NONE -> notified.complete(false);
             }
+            notified.thenAccept(wasNotified -> plugin.runAsync(
+                    () -> this.setUserFromHandoff(user, wasNotified, joinedAt)
+            ));
+        });
+    }
 
-            // Set the user as soon as the source server has set the data to redis
-            final long MAX_ATTEMPTS = 16L;
-            final AtomicLong timesRun = new AtomicLong(0L);
-            final AtomicReference<Task.Repeating> task = new AtomicReference<>();
-            final Runnable runnable = () -> {
-                if (user.isOffline()) {
-                    task.get().cancel();
-                    return;
-                }
-                if (disabling || timesRun.getAndIncrement() > MAX_ATTEMPTS) {
-                    task.get().cancel();
-                    this.setUserFromDatabase(user);
-                    return;
-                }
-
-                plugin.getRedisManager().getUserData(user).ifPresent(redisData -> {
-                    task.get().cancel();
-                    user.applySnapshot(redisData, DataSnapshot.UpdateCause.SYNCHRONIZED);
-                });
-            };
-            task.set(plugin.getRepeatingTask(runnable, 10));
-            task.get().run();
-
-        }, Math.max(0, plugin.getSettings().getNetworkLatencyMilliseconds() / 50L));
+    // Set a user's data from data handed off by the server they switched from, or from the database if there is none
+    private void setUserFromHandoff(@NotNull OnlineUser user, boolean notified, long joinedAt) {
+        // Consume the server switch keys, reading the handed-off data
+        final Optional<DataSnapshot.Packed> handedOff = plugin.getRedisManager().consumeUserHandoff(user);
+        if (handedOff.isPresent()) {
+            final String metric = notified ? "server_switch.push" : "server_switch.get";
+            this.applySwitchData(user, handedOff.get(), metric, joinedAt);
+            return;
+        }
+
+        // Fetch from the database if the user isn't changing servers
+        this.setUserFromDatabase(user);
     }
 
     /**
@@ -107,18 +147,34 @@ public abstract class EventListener {
      * @param user The user to set the data for
      */
     private void setUserFromDatabase(@NotNull OnlineUser user) {
-        plugin.getDatabase().getLatestSnapshot(user).ifPresentOrElse(
+        final Optional<DataSnapshot.Packed> latest = prefetchCache.consume(user)
+                .orElseGet(() -> plugin.getDatabase().getCachedLatestSnapshot(user));
+        latest.ifPresentOrElse(
                 snapshot -> user.applySnapshot(snapshot, DataSnapshot.UpdateCause.SYNCHRONIZED),
                 () -> user.completeSync(true, DataSnapshot.UpdateCause.NEW_USER, plugin)
         );
     }
 
+    // Apply data received from redis when a user switches servers, recording how long the switch took
+    private void applySwitchData(@NotNull OnlineUser user, @NotNull DataSnapshot.Packed data,
+                                 @NotNull String metric, long joinedAt) {
+        prefetchCache.invalidate(user);
+        if (user.isOffline()) {
+            return;
+        }
+        plugin.getPerformanceMetrics().recordSince(metric, joinedAt);
+        user.applySnapshot(data, DataSnapshot.UpdateCause.SYNCHRONIZED);
+    }
+
     /**
      * Handle a player leaving the server (including players switching to another proxied server)
      *
      * @param user The {@link OnlineUser} to handle
      */
     protected final void handlePlayerQuit(@NotNull OnlineUser user) {
+        plugin.getDirtyDataTracker().untrack(user.getUuid());
+        autoSaveScheduler.untrack(user.getUuid());
+
         // Players quitting have their data manually saved when the plugin is disabled
         if (disabling) {
             return;
@@ -129,12 +185,14 @@ public abstract class EventListener {
             return;
         }
 
-        // Handle disconnection
+        // Handle disconnection, capturing the user's data while they are still online. Until the data is handed off
+        // and the user's presence here is cleared, the server they join waits for it
         try {
             lockedPlayers.add(user.getUuid());
-            plugin.getRedisManager().setUserServerSwitch(user).thenRun(() -> {
-                final DataSnapshot.Packed data = user.createSnapshot(DataSnapshot.SaveCause.DISCONNECT);
-                plugin.getRedisManager().setUserData(user, data);
+            capturePipeline.capture(user, DataSnapshot.SaveCause.DISCONNECT, data -> {
+                plugin.getRedisManager().setUserHandoff(user, data);
+                plugin.getDatabase().getMapCanvasStore().saveReferenced(data);
+                plugin.getRedisManager().clearUserPresence(user);
                 plugin.getDatabase().addSnapshot(user, data);
             });
         } catch (Throwable e) {
@@ -143,19 +201,19 @@ public abstract class EventListener {
     }
 
     /**
-     * Handles the saving of data when the world save event is fired
+     * Handles the saving of data when the world save event is fired. Must be called on the main thread; users' data
+     * is captured over the following ticks, within the capture tick budget. Skipped if auto saving is enabled
      *
      * @param usersInWorld a list of users in the world that is being saved
      */
     protected final void saveOnWorldSave(@NotNull List<OnlineUser> usersInWorld) {
-        if (disabling || !plugin.getSettings().doSaveOnWorldSave()) {
+        if (disabling || !plugin.getSettings().doSaveOnWorldSave() || autoSaveScheduler.isEnabled()) {
             return;
         }
         usersInWorld.stream()
                 .filter(user -> !lockedPlayers.contains(user.getUuid()) && !user.isNpc())
-                .forEach(user -> plugin.getDatabase().addSnapshot(
-                        user, user.createSnapshot(DataSnapshot.SaveCause.WORLD_SAVE)
-                ));
+                .forEach(user -> capturePipeline.queue(user, DataSnapshot.SaveCause.WORLD_SAVE,
+                        snapshot -> plugin.getDatabase().queueSnapshot(user, snapshot)));
     }
 
     /**
@@ -170,9 +228,10 @@ public abstract class EventListener {
             return;
         }
 
-        final DataSnapshot.Packed snapshot = user.createSnapshot(DataSnapshot.SaveCause.DEATH);
-        snapshot.edit(plugin, (data -> data.getInventory().ifPresent(inventory -> inventory.setContents(drops))));
-        plugin.getDatabase().addSnapshot(user, snapshot);
+        capturePipeline.capture(user, DataSnapshot.SaveCause.DEATH, snapshot -> {
+            snapshot.edit(plugin, (data -> data.getInventory().ifPresent(inventory -> inventory.setContents(drops))));
+            plugin.getDatabase().queueSnapshot(user, snapshot);
+        });
     }
 
     /**
@@ -191,13 +250,22 @@ public abstract class EventListener {
     public final void handlePluginDisable() {
         disabling = true;
 
-        // Save data for all online users
-        plugin.getOnlineUsers().stream()
+        // Finish saving data that has already been captured, then write snapshots waiting in the save queue
+        autoSaveScheduler.terminate();
+        capturePipeline.terminate();
+        plugin.getDatabase().drainSaveQueue();
+
+        // Capture data for all online users on this thread, then encode and save it in parallel
+        final List<Map.Entry<User, DataSnapshot.Unpacked>> snapshots = plugin.getOnlineUsers().stream()
                 .filter(user -> !lockedPlayers.contains(user.getUuid()) && !user.isNpc())
-                .forEach(user -> {
+                .map(user -> {
                     lockedPlayers.add(user.getUuid());
-                    plugin.getDatabase().addSnapshot(user, user.createSnapshot(DataSnapshot.SaveCause.SERVER_SHUTDOWN));
-                });
+                    return Map.<User, DataSnapshot.Unpacked>entry(
+                            user, user.captureSnapshot(DataSnapshot.SaveCause.SERVER_SHUTDOWN)
+                    );
+                })
+                .toList();
+        plugin.getDatabase().addShutdownSnapshots(snapshots);
 
         // Close outstanding connections
         plugin.getDatabase().terminate();
@@ -208,6 +276,11 @@ public abstract class EventListener {
         return this.lockedPlayers;
     }
 
+    @NotNull
+    public final SnapshotCapturePipeline getCapturePipeline() {
+        return this.capturePipeline;
+    }
+
     /**
      * Represents priorities for events that HuskSync listens to
      */
@@ -0,0 +1,211 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.listener;
+
+import net.william278.husksync.HuskSync;
+import net.william278.husksync.data.DataSnapshot;
+import net.william278.husksync.data.DirtyDataTracker;
+import net.william278.husksync.user.OnlineUser;
+import org.jetbrains.annotations.Blocking;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Saves user data snapshots in two phases: user data is first captured on the main thread, which owns the live
+ * player state, then serialized and saved on a pool of worker threads.
+ * <p>
+ * Captures can be made immediately, or queued and captured in batches that are limited to a time budget per tick,
+ * to bound the time spent on the main thread when saving many users at once.
+ */
+public class SnapshotCapturePipeline {
+
+    private final HuskSync plugin;
+    private final ExecutorService encoders;
+    private final Queue<Request> pending;
+    private final AtomicBoolean draining;
+
+    protected SnapshotCapturePipeline(@NotNull HuskSync plugin) {
+        this.plugin = plugin;
+        this.encoders = Executors.newFixedThreadPool(
+                Math.max(1, plugin.getSettings().getSnapshotEncoderThreads()), new EncoderThreadFactory()
+        );
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.draining = new AtomicBoolean(false);
+        plugin.getPerformanceMetrics().registerGauge("snapshot.capture_queue", pending::size);
+    }
+
+    /**
+     * Capture a user's data now, then serialize and save it on a worker thread. Must be called on the main thread
+     *
+     * @param user  the user to capture the data of
+     * @param cause the cause of the snapshot
+     * @param save  consumer for saving the serialized snapshot, called on a worker thread
+     */
+    public void capture(@NotNull OnlineUser user, @NotNull DataSnapshot.SaveCause cause,
+                        @NotNull Consumer<DataSnapshot.Packed> save) {
+        final long startedAt = System.nanoTime();
+        this.captureAndEncode(user, cause, save, e -> logFailure(user, e));
+        plugin.recordMainThreadWork(startedAt);
+    }
+
+    /**
+     * Capture a user's data on the main thread, then serialize it on a worker thread. May be called from any thread.
+     * <p>
+     * The data is captured on a later tick, so the main thread must not block waiting for the returned future
+     *
+     * @param user  the user to capture the data of
+     * @param cause the cause of the snapshot
+     * @return a future completing with the serialized snapshot, or with an empty optional if the user has gone offline
+     * by the time their data is captured
+     */
+    @NotNull
+    public CompletableFuture<Optional<DataSnapshot.Packed>> supply(@NotNull OnlineUser user,
+                                                                   @NotNull DataSnapshot.SaveCause cause) {
+        final CompletableFuture<Optional<DataSnapshot.Packed>> supplied = new CompletableFuture<>();
+        plugin.runSync(() -> {
+            if (user.isOffline()) {
+                supplied.complete(Optional.empty());
+                return;
+            }
+            final long startedAt = System.nanoTime();
+            try {
+                this.captureAndEncode(user, cause, snapshot -> supplied.complete(Optional.of(snapshot)),
+                        supplied::completeExceptionally);
+            } catch (Throwable e) {
+                supplied.completeExceptionally(e);
+            }
+            plugin.recordMainThreadWork(startedAt);
+        });
+        return supplied;
+    }
+
+    // Capture a user's data on this (main) thread, then serialize and save it on a worker thread
+    private void captureAndEncode(@NotNull OnlineUser user, @NotNull DataSnapshot.SaveCause cause,
+                                  @NotNull Consumer<DataSnapshot.Packed> save, @NotNull Consumer<Throwable> failed) {
+        final long startedAt = System.nanoTime();
+        final DirtyDataTracker.Capture capture = plugin.getDirtyDataTracker().capture(user.getUuid(), user, cause);
+        plugin.getPerformanceMetrics().recordSince("snapshot.capture", startedAt);
+
+        encoders.execute(() -> {
+            try {
+                final long encodeStartedAt = System.nanoTime();
+                final DataSnapshot.Packed snapshot = capture.pack();
+                plugin.getPerformanceMetrics().recordSince("snapshot.encode", encodeStartedAt);
+                save.accept(snapshot);
+            } catch (Throwable e) {
+                failed.accept(e);
+            }
+        });
+    }
+
+    // Log a failure to serialize or save a user's captured data
+    private void logFailure(@NotNull OnlineUser user, @NotNull Throwable e) {
+        plugin.log(Level.SEVERE, "Failed to save data for " + user.getUsername(), e);
+    }
+
+    /**
+     * Queue a user's data to be captured on the main thread within the per-tick capture budget, then serialized and
+     * saved on a worker thread. Users who have gone offline or been locked by the time they are captured are skipped
+     *
+     * @param user  the user to capture the data of
+     * @param cause the cause of the snapshot
+     * @param save  consumer for saving the serialized snapshot, called on a worker thread
+     */
+    public void queue(@NotNull OnlineUser user, @NotNull DataSnapshot.SaveCause cause,
+                      @NotNull Consumer<DataSnapshot.Packed> save) {
+        pending.add(new Request(user, cause, save));
+        if (draining.compareAndSet(false, true)) {
+            plugin.runSync(this::drain);
+        }
+    }
+
+    // Capture queued users until this tick's budget is spent, continuing on the next tick if any are left
+    private void drain() {
+        final long startedAt = System.nanoTime();
+        final long budget = TimeUnit.MICROSECONDS.toNanos(plugin.getSettings().getCaptureTickBudgetMicroseconds());
+        Request request;
+        while ((request = pending.poll()) != null) {
+            if (!request.user().isOffline() && !request.user().isLocked()) {
+                this.captureAndEncode(request.user(), request.cause(), request.save(),
+                        e -> logFailure(request.user(), e));
+            }
+            if (System.nanoTime() - startedAt >= budget) {
+                break;
+            }
+        }
+        plugin.getPerformanceMetrics().recordSince("snapshot.capture_tick", startedAt);
+        plugin.recordMainThreadWork(startedAt);
+
+        // Release the drain flag before checking for more work, so requests queued meanwhile aren't missed
+        draining.set(false);
+        if (!pending.isEmpty() && draining.compareAndSet(false, true)) {
+            plugin.runSyncDelayed(this::drain, 1);
+        }
+    }
+
+    /**
+     * Discard queued captures and wait for captured snapshots to finish saving, for up to the shutdown save timeout
+     */
+    @Blocking
+    public void terminate() {
+        pending.clear();
+        encoders.shutdown();
+        try {
+            if (!encoders.awaitTermination(plugin.getSettings().getShutdownSaveTimeout(), TimeUnit.SECONDS)) {
+                plugin.log(Level.WARNING, "Timed out saving captured user data on shutdown");
+            }
+        } catch (InterruptedException e) {
+            plugin.log(Level.SEVERE, "Interrupted saving captured user data on shutdown", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Creates named daemon encoder threads, so they are identifiable in thread dumps and never hold the server open
+    private static class EncoderThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            final Thread thread = new Thread(runnable, "husksync:snapshot_encoder_" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+    // A user queued to have their data captured
+    private record Request(@NotNull OnlineUser user, @NotNull DataSnapshot.SaveCause cause,
+                           @NotNull Consumer<DataSnapshot.Packed> save) {
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.listener;
+
+import net.william278.husksync.HuskSync;
+import net.william278.husksync.data.DataSnapshot;
+import net.william278.husksync.user.User;
+import org.jetbrains.annotations.Blocking;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * A bounded, expiring cache of users' latest database snapshots, fetched while they are logging in.
+ * <p>
+ * Fetching starts before the player entity exists, so that the database lookup overlaps with the login handshake
+ * rather than being made after the player has joined.
+ */
+public class SnapshotPrefetchCache {
+
+    // The maximum number of users to hold prefetched snapshots for at once
+    private static final int MAX_PREFETCHED_USERS = 256;
+
+    // How long a prefetched snapshot is kept before it is considered stale
+    private static final long PREFETCH_EXPIRY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final HuskSync plugin;
+    private final Map<UUID, Prefetch> prefetched;
+
+    protected SnapshotPrefetchCache(@NotNull HuskSync plugin) {
+        this.plugin = plugin;
+        this.prefetched = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Start fetching a user's latest snapshot from the database
+     *
+     * @param user the user who is logging in
+     */
+    public void prefetch(@NotNull User user) {
+        final long now = System.nanoTime();
+        prefetched.values().removeIf(prefetch -> prefetch.isExpired(now));
+        if (prefetched.size() >= MAX_PREFETCHED_USERS) {
+            plugin.getPerformanceMetrics().increment("prefetch.rejected");
+            return;
+        }
+
+        prefetched.put(user.getUuid(), new Prefetch(
+                plugin.supplyAsync(() -> plugin.getDatabase().getCachedLatestSnapshot(user)), now
+        ));
+    }
+
+    /**
+     * Take a user's prefetched snapshot out of the cache, waiting for the fetch to complete if needed
+     *
+     * @param user the user who has joined
+     * @return the result of the prefetch, or an empty optional if there is no unexpired prefetch for the user
+     */
+    @Blocking
+    public Optional<Optional<DataSnapshot.Packed>> consume(@NotNull User user) {
+        final Prefetch prefetch = prefetched.remove(user.getUuid());
+        if (prefetch == null || prefetch.isExpired(System.nanoTime())) {
+            plugin.getPerformanceMetrics().increment("prefetch.miss");
+            return Optional.empty();
+        }
+
+        try {
+            final Optional<DataSnapshot.Packed> snapshot = prefetch.snapshot().join();
+            plugin.getPerformanceMetrics().increment("prefetch.hit");
+            return Optional.of(snapshot);
+        } catch (Throwable e) {
+            plugin.log(Level.WARNING, "Failed to prefetch data for " + user.getUsername(), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Discard a user's prefetched snapshot, if there is one
+     *
+     * @param user the user to discard the prefetched snapshot of
+     */
+    public void invalidate(@NotNull User user) {
+        prefetched.remove(user.getUuid());
+    }
+
+    // A snapshot being fetched for a user, and when the fetch started
+    private record Prefetch(@NotNull CompletableFuture<Optional<DataSnapshot.Packed>> snapshot, long startedAt) {
+
+        private boolean isExpired(long now) {
+            return now - startedAt > PREFETCH_EXPIRY_NANOS;
+        }
+
+    }
+
+}
@@ -25,8 +25,10 @@ import java.util.Locale;
 
 public enum RedisKeyType {
     CACHE(60 * 60 * 24),
+    CACHE_GENERATION(60 * 60 * 24),
     DATA_UPDATE(10),
-    SERVER_SWITCH(10);
+    SERVER_SWITCH(10),
+    PRESENCE(30);
 
     private final int timeToLive;
 
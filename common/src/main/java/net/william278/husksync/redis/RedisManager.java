@@ -21,17 +21,25 @@ package net.william278.husksync.redis;
 
 import net.william278.husksync.HuskSync;
 import net.william278.husksync.data.DataSnapshot;
+import net.william278.husksync.user.OnlineUser;
 import net.william278.husksync.user.User;
+import net.william278.husksync.util.RequestCoalescer;
+import net.william278.husksync.util.Task;
 import org.jetbrains.annotations.Blocking;
 import org.jetbrains.annotations.NotNull;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
-import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.BinaryJedisPubSub;
 import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
 
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.time.OffsetDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -41,19 +49,33 @@ import java.util.logging.Level;
 /**
  * Manages the connection to the Redis server, handling the caching of user data
  */
-public class RedisManager extends JedisPubSub {
+public class RedisManager extends BinaryJedisPubSub {
 
     protected static final String KEY_NAMESPACE = "husksync:";
 
+    private static final byte[] CACHE_DATA_FIELD = "data".getBytes(StandardCharsets.UTF_8);
+
+    // How often to refresh the presence of users online on this server
+    private static final long PRESENCE_HEARTBEAT_TICKS = 200L;
+
     private final HuskSync plugin;
     private final String clusterId;
+    private final UUID serverId;
     private JedisPool jedisPool;
     private final Map<UUID, CompletableFuture<Optional<DataSnapshot.Packed>>> pendingRequests;
+    private final RequestCoalescer<UUID, Optional<DataSnapshot.Packed>> userDataRequests;
+    private final Map<UUID, CompletableFuture<Boolean>> pendingHandoffs;
+    private final Map<RedisScript, byte[]> scriptHashes;
+    private Task.Repeating presenceHeartbeat;
 
     public RedisManager(@NotNull HuskSync plugin) {
         this.plugin = plugin;
         this.clusterId = plugin.getSettings().getClusterId();
+        this.serverId = UUID.randomUUID();
         this.pendingRequests = new ConcurrentHashMap<>();
+        this.userDataRequests = new RequestCoalescer<>(plugin, "coalesced.user_data_request");
+        this.pendingHandoffs = new ConcurrentHashMap<>();
+        this.scriptHashes = new ConcurrentHashMap<>();
     }
 
     /**
@@ -75,9 +97,12 @@ public class RedisManager extends JedisPubSub {
                 ? new JedisPool(config, host, port, 0, useSSL)
                 : new JedisPool(config, host, port, 0, password, useSSL);
 
-        // Ping the server to check the connection
-        try {
-            jedisPool.getResource().ping();
+        // Ping the server to check the connection, then load scripts
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.ping();
+            for (RedisScript script : RedisScript.values()) {
+                scriptHashes.put(script, jedis.scriptLoad(script.getSource()));
+            }
         } catch (JedisException e) {
             throw new IllegalStateException("Failed to establish connection with the Redis server. "
                     + "Please check the supplied credentials in the config file", e);
@@ -85,152 +110,278 @@ public class RedisManager extends JedisPubSub {
 
         // Subscribe using a thread (rather than a task)
         new Thread(this::subscribe, "husksync:redis_subscriber").start();
+
+        // Keep the presence of users on this server from expiring
+        this.presenceHeartbeat = plugin.getRepeatingTask(this::refreshPresence, PRESENCE_HEARTBEAT_TICKS);
+        this.presenceHeartbeat.run();
     }
 
     @Blocking
     private void subscribe() {
         try (Jedis jedis = jedisPool.getResource()) {
-            jedis.subscribe(
-                    this,
-                    Arrays.stream(RedisMessageType.values())
-                            .map(type -> type.getMessageChannel(clusterId))
-                            .toArray(String[]::new)
-            );
+            final List<byte[]> channels = new ArrayList<>();
+            for (RedisMessageType type : RedisMessageType.values()) {
+                channels.add(type.getMessageChannel(clusterId).getBytes(StandardCharsets.UTF_8));
+            }
+            channels.add(RedisMessageType.REQUEST_USER_DATA.getServerMessageChannel(clusterId, serverId)
+                    .getBytes(StandardCharsets.UTF_8));
+            jedis.subscribe(this, channels.toArray(byte[][]::new));
         }
     }
 
     @Override
-    public void onMessage(@NotNull String channel, @NotNull String message) {
-        final RedisMessageType messageType = RedisMessageType.getTypeFromChannel(channel, clusterId).orElse(null);
-        if (messageType == null) {
+    public void onMessage(byte[] channel, byte[] message) {
+        final RedisMessage redisMessage = RedisMessage.fromBytes(message).orElse(null);
+        if (redisMessage == null) {
+            plugin.debug("Ignoring unreadable message received on redis channel "
+                    + new String(channel, StandardCharsets.UTF_8));
             return;
         }
 
-        final RedisMessage redisMessage = RedisMessage.fromJson(plugin, message);
-        switch (messageType) {
+        switch (redisMessage.getType()) {
             case UPDATE_USER_DATA -> plugin.getOnlineUser(redisMessage.getTargetUuid()).ifPresent(
                     user -> user.applySnapshot(
                             DataSnapshot.deserialize(plugin, redisMessage.getPayload()),
                             DataSnapshot.UpdateCause.UPDATED
                     )
             );
-            case REQUEST_USER_DATA -> plugin.getOnlineUser(redisMessage.getTargetUuid()).ifPresent(
-                    user -> RedisMessage.create(
-                            UUID.fromString(new String(redisMessage.getPayload(), StandardCharsets.UTF_8)),
-                            user.createSnapshot(DataSnapshot.SaveCause.INVENTORY_COMMAND).asBytes(plugin)
-                    ).dispatch(plugin, RedisMessageType.RETURN_USER_DATA)
-            );
+            case REQUEST_USER_DATA -> this.replyUserData(redisMessage);
             case RETURN_USER_DATA -> {
-                final CompletableFuture<Optional<DataSnapshot.Packed>> future = pendingRequests.get(
-                        redisMessage.getTargetUuid()
+                final CompletableFuture<Optional<DataSnapshot.Packed>> future = pendingRequests.remove(
+                        redisMessage.getCorrelationId()
                 );
                 if (future != null) {
-                    future.complete(Optional.of(DataSnapshot.deserialize(plugin, redisMessage.getPayload())));
-                    pendingRequests.remove(redisMessage.getTargetUuid());
+                    future.complete(redisMessage.getPayload().length == 0
+                            ? Optional.empty()
+                            : Optional.of(DataSnapshot.deserialize(plugin, redisMessage.getPayload())));
+                }
+            }
+            case USER_DATA_READY -> {
+                final CompletableFuture<Boolean> future = pendingHandoffs.remove(redisMessage.getTargetUuid());
+                if (future != null) {
+                    future.complete(true);
                 }
             }
         }
     }
 
+    // Reply to a request with a user's data, captured on the main thread. Reply with an empty payload if the user is no
+    // longer online here, so the requester needn't wait
+    private void replyUserData(@NotNull RedisMessage request) {
+        plugin.getOnlineUser(request.getTargetUuid())
+                .map(user -> plugin.getCapturePipeline().supply(user, DataSnapshot.SaveCause.INVENTORY_COMMAND))
+                .orElseGet(() -> CompletableFuture.completedFuture(Optional.empty()))
+                .exceptionally(e -> {
+                    plugin.log(Level.SEVERE, "An exception occurred capturing a user's data for a request", e);
+                    return Optional.empty();
+                })
+                .thenAccept(data -> RedisMessage.create(
+                        RedisMessageType.RETURN_USER_DATA,
+                        request.getTargetUuid(),
+                        request.getCorrelationId(),
+                        data.map(snapshot -> snapshot.asBytes(plugin)).orElse(new byte[0])
+                ).dispatch(plugin));
+    }
+
     @Blocking
-    protected void sendMessage(@NotNull String channel, @NotNull String message) {
+    protected void sendMessage(@NotNull String channel, byte[] message) {
         try (Jedis jedis = jedisPool.getResource()) {
-            jedis.publish(channel, message);
+            jedis.publish(channel.getBytes(StandardCharsets.UTF_8), message);
         }
     }
 
     public void sendUserDataUpdate(@NotNull User user, @NotNull DataSnapshot.Packed data) {
         plugin.runAsync(() -> {
-            final RedisMessage redisMessage = RedisMessage.create(user.getUuid(), data.asBytes(plugin));
-            redisMessage.dispatch(plugin, RedisMessageType.UPDATE_USER_DATA);
+            final RedisMessage redisMessage = RedisMessage.create(
+                    RedisMessageType.UPDATE_USER_DATA, user.getUuid(), data.asBytes(plugin)
+            );
+            redisMessage.dispatch(plugin);
         });
     }
 
     public CompletableFuture<Optional<DataSnapshot.Packed>> getUserData(@NotNull UUID requestId, @NotNull User user) {
         return plugin.getOnlineUser(user.getUuid())
-                .map(online -> CompletableFuture.completedFuture(
-                        Optional.of(online.createSnapshot(DataSnapshot.SaveCause.API)))
-                )
-                .orElse(this.requestData(requestId, user));
+                .map(online -> plugin.getCapturePipeline().supply(online, DataSnapshot.SaveCause.API))
+                .orElseGet(() -> userDataRequests.request(user.getUuid(), () -> this.requestData(requestId, user)));
     }
 
+    // Request a user's data from the server they are online on, if they are online on another server
     private CompletableFuture<Optional<DataSnapshot.Packed>> requestData(@NotNull UUID requestId, @NotNull User user) {
-        final CompletableFuture<Optional<DataSnapshot.Packed>> future = new CompletableFuture<>();
-        pendingRequests.put(requestId, future);
-        plugin.runAsync(() -> {
-            final RedisMessage redisMessage = RedisMessage.create(
-                    user.getUuid(),
-                    requestId.toString().getBytes(StandardCharsets.UTF_8)
-            );
-            redisMessage.dispatch(plugin, RedisMessageType.REQUEST_USER_DATA);
+        return plugin.supplyAsync(() -> this.getUserServer(user)).thenCompose(server -> {
+            if (server.isEmpty() || server.get().equals(serverId)) {
+                plugin.getPerformanceMetrics().increment("redis.request.offline");
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+
+            final CompletableFuture<Optional<DataSnapshot.Packed>> future = new CompletableFuture<>();
+            pendingRequests.put(requestId, future);
+            RedisMessage.create(RedisMessageType.REQUEST_USER_DATA, user.getUuid(), requestId, new byte[0])
+                    .dispatch(plugin, server.get());
+            plugin.getPerformanceMetrics().increment("redis.request.routed");
+            return future.orTimeout(
+                            plugin.getSettings().getNetworkLatencyMilliseconds(),
+                            TimeUnit.MILLISECONDS
+                    )
+                    .exceptionally(throwable -> {
+                        pendingRequests.remove(requestId);
+                        return Optional.empty();
+                    });
         });
-        return future.orTimeout(
-                        plugin.getSettings().getNetworkLatencyMilliseconds(),
-                        TimeUnit.MILLISECONDS
-                )
-                .exceptionally(throwable -> {
-                    pendingRequests.remove(requestId);
-                    return Optional.empty();
-                });
     }
 
     /**
-     * Set a user's data to the Redis server
+     * Mark a user as being online on this server
      *
-     * @param user the user to set data for
-     * @param data the user's data to set
+     * @param user the user who is online
      */
-    public void setUserData(@NotNull User user, @NotNull DataSnapshot.Packed data) {
-        plugin.runAsync(() -> {
-            try (Jedis jedis = jedisPool.getResource()) {
-                jedis.setex(
-                        getKey(RedisKeyType.DATA_UPDATE, user.getUuid(), clusterId),
-                        RedisKeyType.DATA_UPDATE.getTimeToLive(),
-                        data.asBytes(plugin)
-                );
-                plugin.debug(String.format("[%s] Set %s key to redis at: %s", user.getUsername(),
-                        RedisKeyType.DATA_UPDATE.name(), new SimpleDateFormat("mm:ss.SSS").format(new Date())));
-            } catch (Throwable e) {
-                plugin.log(Level.SEVERE, "An exception occurred setting a user's server switch", e);
-            }
-        });
+    @Blocking
+    public void setUserPresence(@NotNull User user) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.setex(
+                    getKey(RedisKeyType.PRESENCE, user.getUuid(), clusterId),
+                    RedisKeyType.PRESENCE.getTimeToLive(),
+                    serverId.toString().getBytes(StandardCharsets.UTF_8)
+            );
+        } catch (Throwable e) {
+            plugin.log(Level.SEVERE, "An exception occurred setting a user's presence on redis", e);
+        }
     }
 
     /**
-     * Set a user's server switch to the Redis server
+     * Remove a user's presence, if they are marked as online on this server. If they have since joined another
+     * server, their presence there is kept
      *
-     * @param user the user to set the server switch for
-     * @return a future returning void when complete
+     * @param user the user who has left this server
      */
-    public CompletableFuture<Void> setUserServerSwitch(@NotNull User user) {
-        final CompletableFuture<Void> future = new CompletableFuture<>();
-        plugin.runAsync(() -> {
-            try (Jedis jedis = jedisPool.getResource()) {
-                jedis.setex(
-                        getKey(RedisKeyType.SERVER_SWITCH, user.getUuid(), clusterId),
-                        RedisKeyType.SERVER_SWITCH.getTimeToLive(), new byte[0]
-                );
-                future.complete(null);
-                plugin.debug(String.format("[%s] Set %s key to redis at: %s", user.getUsername(),
-                        RedisKeyType.SERVER_SWITCH.name(), new SimpleDateFormat("mm:ss.SSS").format(new Date())));
-            } catch (Throwable e) {
-                plugin.log(Level.SEVERE, "An exception occurred setting a user's server switch", e);
-            }
-        });
-        return future;
+    @Blocking
+    public void clearUserPresence(@NotNull User user) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            evalScript(
+                    jedis, RedisScript.CLEAR_PRESENCE,
+                    List.of(getKey(RedisKeyType.PRESENCE, user.getUuid(), clusterId)),
+                    List.of(serverId.toString().getBytes(StandardCharsets.UTF_8))
+            );
+        } catch (Throwable e) {
+            plugin.log(Level.SEVERE, "An exception occurred clearing a user's presence on redis", e);
+        }
+    }
+
+    // Get the ID of the server a user is online on, if they are online
+    @Blocking
+    private Optional<UUID> getUserServer(@NotNull User user) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            final byte[] server = jedis.get(getKey(RedisKeyType.PRESENCE, user.getUuid(), clusterId));
+            return server == null
+                    ? Optional.empty()
+                    : Optional.of(UUID.fromString(new String(server, StandardCharsets.UTF_8)));
+        } catch (Throwable e) {
+            plugin.log(Level.SEVERE, "An exception occurred fetching a user's presence from redis", e);
+            return Optional.empty();
+        }
+    }
+
+    // Refresh the presence of all users online on this server
+    @Blocking
+    private void refreshPresence() {
+        final List<OnlineUser> users = plugin.getOnlineUsers().stream().filter(user -> !user.isNpc()).toList();
+        if (users.isEmpty()) {
+            return;
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            final Pipeline pipeline = jedis.pipelined();
+            final byte[] server = serverId.toString().getBytes(StandardCharsets.UTF_8);
+            users.forEach(user -> pipeline.setex(
+                    getKey(RedisKeyType.PRESENCE, user.getUuid(), clusterId),
+                    RedisKeyType.PRESENCE.getTimeToLive(),
+                    server
+            ));
+            pipeline.sync();
+        } catch (Throwable e) {
+            plugin.log(Level.WARNING, "An exception occurred refreshing user presence on redis", e);
+        }
+    }
+
+    /**
+     * Get the state of a user's data handoff from the server they are switching from
+     *
+     * @param user the user to get the handoff state of
+     * @return the {@link HandoffState}
+     */
+    @Blocking
+    @NotNull
+    public HandoffState getUserHandoffState(@NotNull User user) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            final Object state = evalScript(
+                    jedis, RedisScript.GET_HANDOFF_STATE,
+                    List.of(
+                            getKey(RedisKeyType.SERVER_SWITCH, user.getUuid(), clusterId),
+                            getKey(RedisKeyType.DATA_UPDATE, user.getUuid(), clusterId),
+                            getKey(RedisKeyType.PRESENCE, user.getUuid(), clusterId)
+                    ),
+                    List.of(serverId.toString().getBytes(StandardCharsets.UTF_8))
+            );
+            return HandoffState.values()[((Long) state).intValue()];
+        } catch (Throwable e) {
+            plugin.log(Level.SEVERE, "An exception occurred fetching a user's server switch from redis", e);
+            return HandoffState.NONE;
+        }
+    }
+
+    /**
+     * Set a user's data to the Redis server, marking them as switching servers, then notify servers that it is ready.
+     * <p>
+     * The server switch marker, the data and the notification are all set in one atomic call. The notification only
+     * identifies the user; the server they join reads the data with {@link #consumeUserHandoff(User)}
+     *
+     * @param user the user to set data for
+     * @param data the user's data to set
+     */
+    @Blocking
+    public void setUserHandoff(@NotNull User user, @NotNull DataSnapshot.Packed data) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            final byte[] dataBytes = data.asBytes(plugin);
+            evalScript(
+                    jedis, RedisScript.SET_HANDOFF,
+                    List.of(
+                            getKey(RedisKeyType.SERVER_SWITCH, user.getUuid(), clusterId),
+                            getKey(RedisKeyType.DATA_UPDATE, user.getUuid(), clusterId)
+                    ),
+                    List.of(
+                            toBytes(RedisKeyType.SERVER_SWITCH.getTimeToLive()),
+                            toBytes(RedisKeyType.DATA_UPDATE.getTimeToLive()),
+                            RedisMessageType.USER_DATA_READY.getMessageChannel(clusterId)
+                                    .getBytes(StandardCharsets.UTF_8),
+                            RedisMessage.create(RedisMessageType.USER_DATA_READY, user.getUuid(), new byte[0])
+                                    .toBytes(),
+                            dataBytes
+                    )
+            );
+            plugin.debug(String.format("[%s] Set %s and %s keys to redis at: %s", user.getUsername(),
+                    RedisKeyType.SERVER_SWITCH.name(), RedisKeyType.DATA_UPDATE.name(),
+                    new SimpleDateFormat("mm:ss.SSS").format(new Date())));
+        } catch (Throwable e) {
+            plugin.log(Level.SEVERE, "An exception occurred setting a user's server switch", e);
+        }
     }
 
     /**
-     * Fetch a user's data from the Redis server and consume the key if found
+     * Consume (read and delete) a user's server switch marker and data from the Redis server in one atomic call
      *
-     * @param user The user to fetch data for
-     * @return The user's data, if it's present on the database. Otherwise, an empty optional.
+     * @param user the user to consume the data of
+     * @return the user's data, if they are switching servers. Otherwise, an empty optional
      */
-    public Optional<DataSnapshot.Packed> getUserData(@NotNull User user) {
+    @Blocking
+    public Optional<DataSnapshot.Packed> consumeUserHandoff(@NotNull User user) {
         try (Jedis jedis = jedisPool.getResource()) {
-            final byte[] key = getKey(RedisKeyType.DATA_UPDATE, user.getUuid(), clusterId);
-            final byte[] dataByteArray = jedis.get(key);
-            if (dataByteArray == null) {
+            final Object data = evalScript(
+                    jedis, RedisScript.CONSUME_HANDOFF,
+                    List.of(
+                            getKey(RedisKeyType.SERVER_SWITCH, user.getUuid(), clusterId),
+                            getKey(RedisKeyType.DATA_UPDATE, user.getUuid(), clusterId)
+                    ),
+                    List.of()
+            );
+            if (!(data instanceof byte[] dataBytes)) {
                 plugin.debug("[" + user.getUsername() + "] Could not read " +
                         RedisKeyType.DATA_UPDATE.name() + " key from redis at: " +
                         new SimpleDateFormat("mm:ss.SSS").format(new Date()));
@@ -239,42 +390,185 @@ public class RedisManager extends JedisPubSub {
             plugin.debug("[" + user.getUsername() + "] Successfully read "
                     + RedisKeyType.DATA_UPDATE.name() + " key from redis at: " +
                     new SimpleDateFormat("mm:ss.SSS").format(new Date()));
+            return Optional.of(DataSnapshot.deserialize(plugin, dataBytes));
+        } catch (Throwable e) {
+            plugin.log(Level.SEVERE, "An exception occurred fetching a user's data from redis", e);
+            return Optional.empty();
+        }
+    }
 
-            // Consume the key (delete from redis)
-            jedis.del(key);
+    /**
+     * Listen for a user's data being handed off by the server they are switching from.
+     * <p>
+     * The returned future completes with {@code true} as soon as the source server notifies that it has set the data,
+     * ready to be read with {@link #consumeUserHandoff(User)}, or with {@code false} if no notification is received
+     * before the timeout. Complete the future with {@code false} to stop waiting early.
+     *
+     * @param user          the user to wait for the data of
+     * @param timeoutMillis how long to wait for the notification, in milliseconds
+     * @return a future returning whether the source server notified that the data was handed off
+     */
+    @NotNull
+    public CompletableFuture<Boolean> awaitUserDataHandoff(@NotNull User user, long timeoutMillis) {
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        final CompletableFuture<Boolean> previous = pendingHandoffs.put(user.getUuid(), future);
+        if (previous != null) {
+            previous.complete(false);
+        }
+        future.completeOnTimeout(false, timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((data, throwable) -> pendingHandoffs.remove(user.getUuid(), future));
+        return future;
+    }
 
-            // Use Snappy to decompress the json
-            return Optional.of(DataSnapshot.deserialize(plugin, dataByteArray));
+    /**
+     * Get a user's latest snapshot from the cache, if it is present
+     *
+     * @param user the user to get the cached snapshot of
+     * @return the cached snapshot, if present
+     */
+    @Blocking
+    public Optional<DataSnapshot.Packed> getCachedSnapshot(@NotNull User user) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            final byte[] data = jedis.hget(getKey(RedisKeyType.CACHE, user.getUuid(), clusterId), CACHE_DATA_FIELD);
+            if (data == null) {
+                plugin.getPerformanceMetrics().increment("redis_cache.miss");
+                return Optional.empty();
+            }
+            plugin.getPerformanceMetrics().increment("redis_cache.hit");
+            return Optional.of(DataSnapshot.deserialize(plugin, data));
         } catch (Throwable e) {
-            plugin.log(Level.SEVERE, "An exception occurred fetching a user's data from redis", e);
+            plugin.log(Level.SEVERE, "An exception occurred fetching a user's cached data from redis", e);
             return Optional.empty();
         }
     }
 
-    public boolean getUserServerSwitch(@NotNull User user) {
+    /**
+     * Cache a user's latest snapshot. The snapshot will not be cached if a snapshot with a later timestamp has
+     * already been cached for the user
+     *
+     * @param user      the user to cache the snapshot of
+     * @param timestamp the timestamp of the snapshot
+     * @param data      the encoded snapshot
+     */
+    @Blocking
+    public void setCachedSnapshot(@NotNull User user, @NotNull OffsetDateTime timestamp, byte[] data) {
         try (Jedis jedis = jedisPool.getResource()) {
-            final byte[] key = getKey(RedisKeyType.SERVER_SWITCH, user.getUuid(), clusterId);
-            final byte[] readData = jedis.get(key);
-            if (readData == null) {
-                plugin.debug("[" + user.getUsername() + "] Could not read " +
-                        RedisKeyType.SERVER_SWITCH.name() + " key from redis at: " +
-                        new SimpleDateFormat("mm:ss.SSS").format(new Date()));
-                return false;
+            evalScript(
+                    jedis, RedisScript.CACHE_SNAPSHOT,
+                    List.of(getKey(RedisKeyType.CACHE, user.getUuid(), clusterId)),
+                    List.of(toBytes(timestamp.toInstant().toEpochMilli()), data,
+                            toBytes(RedisKeyType.CACHE.getTimeToLive()))
+            );
+        } catch (Throwable e) {
+            plugin.log(Level.SEVERE, "An exception occurred caching a user's data to redis", e);
+        }
+    }
+
+    /**
+     * Get a user's cache generation, which is incremented each time their cached snapshot is
+     * {@link #invalidateCachedSnapshot(User) invalidated}.
+     * <p>
+     * Read this before reading a snapshot from the database to {@link #fillCachedSnapshot fill} the cache with
+     *
+     * @param user the user to get the cache generation of
+     * @return the cache generation, or {@code -1} if it could not be read
+     */
+    @Blocking
+    public long getCacheGeneration(@NotNull User user) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            final byte[] generation = jedis.get(getKey(RedisKeyType.CACHE_GENERATION, user.getUuid(), clusterId));
+            return generation == null ? 0 : Long.parseLong(new String(generation, StandardCharsets.UTF_8));
+        } catch (Throwable e) {
+            plugin.log(Level.SEVERE, "An exception occurred fetching a user's cache generation from redis", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Cache a user's latest snapshot after reading it from the database on a cache miss. The snapshot will not be
+     * cached if the user's cached snapshot has been invalidated since the cache generation was read, or if a snapshot
+     * with a later timestamp has already been cached for the user
+     *
+     * @param user       the user to cache the snapshot of
+     * @param timestamp  the timestamp of the snapshot
+     * @param data       the encoded snapshot
+     * @param generation the {@link #getCacheGeneration(User) cache generation} read before the snapshot was read
+     */
+    @Blocking
+    public void fillCachedSnapshot(@NotNull User user, @NotNull OffsetDateTime timestamp, byte[] data,
+                                   long generation) {
+        if (generation < 0) {
+            return;
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            final Object filled = evalScript(
+                    jedis, RedisScript.FILL_CACHED_SNAPSHOT,
+                    List.of(
+                            getKey(RedisKeyType.CACHE, user.getUuid(), clusterId),
+                            getKey(RedisKeyType.CACHE_GENERATION, user.getUuid(), clusterId)
+                    ),
+                    List.of(toBytes(timestamp.toInstant().toEpochMilli()), data,
+                            toBytes(RedisKeyType.CACHE.getTimeToLive()), toBytes(generation))
+            );
+            if (filled instanceof Long result && result == 0) {
+                plugin.getPerformanceMetrics().increment("redis_cache.stale_fill");
             }
-            plugin.debug("[" + user.getUsername() + "] Successfully read "
-                    + RedisKeyType.SERVER_SWITCH.name() + " key from redis at: " +
-                    new SimpleDateFormat("mm:ss.SSS").format(new Date()));
+        } catch (Throwable e) {
+            plugin.log(Level.SEVERE, "An exception occurred caching a user's data to redis", e);
+        }
+    }
 
-            // Consume the key (delete from redis)
-            jedis.del(key);
-            return true;
+    /**
+     * Remove a user's latest snapshot from the cache, preventing snapshots already being read from the database from
+     * being cached
+     *
+     * @param user the user to remove the cached snapshot of
+     */
+    @Blocking
+    public void invalidateCachedSnapshot(@NotNull User user) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            evalScript(
+                    jedis, RedisScript.INVALIDATE_CACHED_SNAPSHOT,
+                    List.of(
+                            getKey(RedisKeyType.CACHE, user.getUuid(), clusterId),
+                            getKey(RedisKeyType.CACHE_GENERATION, user.getUuid(), clusterId)
+                    ),
+                    List.of(toBytes(RedisKeyType.CACHE_GENERATION.getTimeToLive()))
+            );
         } catch (Throwable e) {
-            plugin.log(Level.SEVERE, "An exception occurred fetching a user's server switch from redis", e);
-            return false;
+            plugin.log(Level.SEVERE, "An exception occurred invalidating a user's cached data on redis", e);
+        }
+    }
+
+    /**
+     * Remove all users' latest snapshots from the cache
+     */
+    @Blocking
+    public void invalidateCachedSnapshots() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            final ScanParams params = new ScanParams()
+                    .match(RedisKeyType.CACHE.getKeyPrefix(clusterId) + ":*")
+                    .count(1000);
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                final ScanResult<String> result = jedis.scan(cursor, params);
+                if (!result.getResult().isEmpty()) {
+                    jedis.del(result.getResult().toArray(String[]::new));
+                }
+                cursor = result.getCursor();
+            } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+        } catch (Throwable e) {
+            plugin.log(Level.SEVERE, "An exception occurred invalidating cached data on redis", e);
         }
     }
 
     public void terminate() {
+        if (presenceHeartbeat != null) {
+            presenceHeartbeat.cancel();
+        }
+        if (jedisPool != null && !jedisPool.isClosed()) {
+            plugin.getOnlineUsers().forEach(this::clearUserPresence);
+        }
         if (jedisPool != null) {
             if (!jedisPool.isClosed()) {
                 jedisPool.close();
@@ -283,8 +577,46 @@ public class RedisManager extends JedisPubSub {
         this.unsubscribe();
     }
 
+    // Run a script by its hash, loading it again if the Redis server no longer has it (e.g. after a restart)
+    @Blocking
+    private Object evalScript(@NotNull Jedis jedis, @NotNull RedisScript script,
+                              @NotNull List<byte[]> keys, @NotNull List<byte[]> args) {
+        final byte[] hash = scriptHashes.get(script);
+        if (hash != null) {
+            try {
+                return jedis.evalsha(hash, keys, args);
+            } catch (JedisNoScriptException e) {
+                plugin.debug("Reloading redis script " + script.name());
+            }
+        }
+        scriptHashes.put(script, jedis.scriptLoad(script.getSource()));
+        return jedis.eval(script.getSource(), keys, args);
+    }
+
+    private static byte[] toBytes(long number) {
+        return Long.toString(number).getBytes(StandardCharsets.UTF_8);
+    }
+
     private static byte[] getKey(@NotNull RedisKeyType keyType, @NotNull UUID uuid, @NotNull String clusterId) {
         return String.format("%s:%s", keyType.getKeyPrefix(clusterId), uuid).getBytes(StandardCharsets.UTF_8);
     }
 
+    /**
+     * The state of a user's data handoff from the server they are switching from
+     */
+    public enum HandoffState {
+        /**
+         * The user isn't switching servers, nor present on another server
+         */
+        NONE,
+        /**
+         * The user is switching servers, but their data hasn't been handed off yet
+         */
+        PENDING,
+        /**
+         * The user's handed-off data is ready to be consumed
+         */
+        READY
+    }
+
 }
@@ -19,62 +19,130 @@
 
 package net.william278.husksync.redis;
 
-import com.google.gson.JsonSyntaxException;
-import com.google.gson.annotations.SerializedName;
 import net.william278.husksync.HuskSync;
-import net.william278.husksync.adapter.Adaptable;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.ByteBuffer;
+import java.util.Optional;
 import java.util.UUID;
 
-public class RedisMessage implements Adaptable {
+/**
+ * A message sent between servers over redis pub/sub.
+ * <p>
+ * Messages are sent as binary frames: a version byte, the {@link RedisMessageType} ordinal, the target UUID and the
+ * correlation UUID (or {@code 0} bits if there is none), followed by the raw payload bytes.
+ */
+public class RedisMessage {
 
-    @SerializedName("target_uuid")
-    private UUID targetUuid;
-    @SerializedName("payload")
-    private byte[] payload;
+    // The version of the binary frame format, written as the first byte of every message
+    private static final byte FRAME_VERSION = 1;
 
-    private RedisMessage(@NotNull UUID targetUuid, byte[] message) {
-        this.setTargetUuid(targetUuid);
-        this.setPayload(message);
-    }
+    // The length of the frame header, in bytes: version, message type, target UUID and correlation UUID
+    private static final int HEADER_LENGTH = 2 + 16 + 16;
+
+    private static final UUID NO_CORRELATION_ID = new UUID(0L, 0L);
+
+    private final RedisMessageType type;
+    private final UUID targetUuid;
+    private final UUID correlationId;
+    private final byte[] payload;
 
-    @SuppressWarnings("unused")
-    public RedisMessage() {
+    private RedisMessage(@NotNull RedisMessageType type, @NotNull UUID targetUuid, @NotNull UUID correlationId,
+                         byte[] payload) {
+        this.type = type;
+        this.targetUuid = targetUuid;
+        this.correlationId = correlationId;
+        this.payload = payload;
     }
 
     @NotNull
-    public static RedisMessage create(@NotNull UUID targetUuid, byte[] message) {
-        return new RedisMessage(targetUuid, message);
+    public static RedisMessage create(@NotNull RedisMessageType type, @NotNull UUID targetUuid, byte[] payload) {
+        return new RedisMessage(type, targetUuid, NO_CORRELATION_ID, payload);
     }
 
     @NotNull
-    public static RedisMessage fromJson(@NotNull HuskSync plugin, @NotNull String json) throws JsonSyntaxException {
-        return plugin.getGson().fromJson(json, RedisMessage.class);
+    public static RedisMessage create(@NotNull RedisMessageType type, @NotNull UUID targetUuid,
+                                      @NotNull UUID correlationId, byte[] payload) {
+        return new RedisMessage(type, targetUuid, correlationId, payload);
+    }
+
+    /**
+     * Read a message from a binary frame
+     *
+     * @param frame the frame bytes
+     * @return the message, or an empty optional if the frame is not a valid message
+     */
+    public static Optional<RedisMessage> fromBytes(byte[] frame) {
+        if (frame.length < HEADER_LENGTH || frame[0] != FRAME_VERSION
+                || frame[1] < 0 || frame[1] >= RedisMessageType.values().length) {
+            return Optional.empty();
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(frame, 2, HEADER_LENGTH - 2);
+        final UUID targetUuid = new UUID(buffer.getLong(), buffer.getLong());
+        final UUID correlationId = new UUID(buffer.getLong(), buffer.getLong());
+        final byte[] payload = new byte[frame.length - HEADER_LENGTH];
+        System.arraycopy(frame, HEADER_LENGTH, payload, 0, payload.length);
+        return Optional.of(new RedisMessage(
+                RedisMessageType.values()[frame[1]], targetUuid, correlationId, payload
+        ));
+    }
+
+    /**
+     * Write this message as a binary frame
+     *
+     * @return the frame bytes
+     */
+    public byte[] toBytes() {
+        return ByteBuffer.allocate(HEADER_LENGTH + payload.length)
+                .put(getHeader())
+                .put(payload)
+                .array();
+    }
+
+    // Write the header of this message's binary frame, which is followed by the payload
+    byte[] getHeader() {
+        return ByteBuffer.allocate(HEADER_LENGTH)
+                .put(FRAME_VERSION)
+                .put((byte) type.ordinal())
+                .putLong(targetUuid.getMostSignificantBits())
+                .putLong(targetUuid.getLeastSignificantBits())
+                .putLong(correlationId.getMostSignificantBits())
+                .putLong(correlationId.getLeastSignificantBits())
+                .array();
     }
 
-    public void dispatch(@NotNull HuskSync plugin, @NotNull RedisMessageType type) {
+    public void dispatch(@NotNull HuskSync plugin) {
         plugin.runAsync(() -> plugin.getRedisManager().sendMessage(
                 type.getMessageChannel(plugin.getSettings().getClusterId()),
-                plugin.getGson().toJson(this)
+                this.toBytes()
+        ));
+    }
+
+    public void dispatch(@NotNull HuskSync plugin, @NotNull UUID serverId) {
+        plugin.runAsync(() -> plugin.getRedisManager().sendMessage(
+                type.getServerMessageChannel(plugin.getSettings().getClusterId(), serverId),
+                this.toBytes()
         ));
     }
 
+    @NotNull
+    public RedisMessageType getType() {
+        return type;
+    }
+
     @NotNull
     public UUID getTargetUuid() {
         return targetUuid;
     }
 
-    public void setTargetUuid(@NotNull UUID targetUuid) {
-        this.targetUuid = targetUuid;
+    @NotNull
+    public UUID getCorrelationId() {
+        return correlationId;
     }
 
     public byte[] getPayload() {
         return payload;
     }
 
-    public void setPayload(byte[] payload) {
-        this.payload = payload;
-    }
-
-}
\ No newline at end of file
+}
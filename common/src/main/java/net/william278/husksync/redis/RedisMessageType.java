@@ -24,12 +24,14 @@ import org.jetbrains.annotations.NotNull;
 import java.util.Arrays;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.UUID;
 
 public enum RedisMessageType {
 
     UPDATE_USER_DATA,
     REQUEST_USER_DATA,
-    RETURN_USER_DATA;
+    RETURN_USER_DATA,
+    USER_DATA_READY;
 
     @NotNull
     public String getMessageChannel(@NotNull String clusterId) {
@@ -41,6 +43,18 @@ public enum RedisMessageType {
         );
     }
 
+    /**
+     * Get the channel for messages of this type sent to a specific server
+     *
+     * @param clusterId the cluster ID
+     * @param serverId  the ID of the server to send messages to
+     * @return the channel name
+     */
+    @NotNull
+    public String getServerMessageChannel(@NotNull String clusterId, @NotNull UUID serverId) {
+        return String.format("%s:%s", getMessageChannel(clusterId), serverId);
+    }
+
     public static Optional<RedisMessageType> getTypeFromChannel(@NotNull String channel, @NotNull String clusterId) {
         return Arrays.stream(values())
                 .filter(messageType -> messageType.getMessageChannel(clusterId).equalsIgnoreCase(channel))
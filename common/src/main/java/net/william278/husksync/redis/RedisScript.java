@@ -0,0 +1,144 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.redis;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lua scripts run on the Redis server, loaded once when the {@link RedisManager} is initialized.
+ * <p>
+ * Scripts run atomically, so keys read and deleted by a script can't be changed by other clients in between
+ */
+enum RedisScript {
+
+    /**
+     * Set a user's cached snapshot, unless a snapshot with a later timestamp has already been cached.
+     * <p>
+     * Keys: cache key. Args: snapshot timestamp (epoch millis), snapshot data, time to live (seconds)
+     */
+    CACHE_SNAPSHOT("""
+            local cached = redis.call('HGET', KEYS[1], 'timestamp')
+            if cached and tonumber(cached) > tonumber(ARGV[1]) then
+                return 0
+            end
+            redis.call('HSET', KEYS[1], 'timestamp', ARGV[1], 'data', ARGV[2])
+            redis.call('EXPIRE', KEYS[1], ARGV[3])
+            return 1"""),
+
+    /**
+     * Set a user's cached snapshot read from the database, unless their cached snapshot has been invalidated since the
+     * given cache generation was read, or a snapshot with a later timestamp has already been cached.
+     * <p>
+     * Keys: cache key, cache generation key. Args: snapshot timestamp (epoch millis), snapshot data,
+     * time to live (seconds), cache generation
+     */
+    FILL_CACHED_SNAPSHOT("""
+            if (redis.call('GET', KEYS[2]) or '0') ~= ARGV[4] then
+                return 0
+            end
+            local cached = redis.call('HGET', KEYS[1], 'timestamp')
+            if cached and tonumber(cached) > tonumber(ARGV[1]) then
+                return 0
+            end
+            redis.call('HSET', KEYS[1], 'timestamp', ARGV[1], 'data', ARGV[2])
+            redis.call('EXPIRE', KEYS[1], ARGV[3])
+            return 1"""),
+
+    /**
+     * Remove a user's cached snapshot, and increment their cache generation so that snapshots read from the database
+     * before the removal are not cached.
+     * <p>
+     * Keys: cache key, cache generation key. Args: cache generation time to live (seconds)
+     */
+    INVALIDATE_CACHED_SNAPSHOT("""
+            redis.call('DEL', KEYS[1])
+            redis.call('INCR', KEYS[2])
+            redis.call('EXPIRE', KEYS[2], ARGV[1])
+            return 1"""),
+
+    /**
+     * Set a user's server switch marker and data together, then notify servers that the data is ready. The
+     * notification doesn't carry the data, which is read by the server the user joins.
+     * <p>
+     * Keys: server switch key, data key. Args: switch time to live (seconds), data time to live (seconds),
+     * notification channel, notification message, snapshot data
+     */
+    SET_HANDOFF("""
+            redis.call('SET', KEYS[1], '', 'EX', ARGV[1])
+            redis.call('SET', KEYS[2], ARGV[5], 'EX', ARGV[2])
+            redis.call('PUBLISH', ARGV[3], ARGV[4])
+            return 1"""),
+
+    /**
+     * Get the state of a user's server switch: {@code 0} if they aren't switching servers, {@code 1} if they are but
+     * their data hasn't been handed off yet, or {@code 2} if their data is ready. A user still marked as present on
+     * another server is treated as switching, as that server clears their presence only once it has handed off their
+     * data.
+     * <p>
+     * Keys: server switch key, data key, presence key. Args: server ID
+     */
+    GET_HANDOFF_STATE("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                local server = redis.call('GET', KEYS[3])
+                if server and server ~= ARGV[1] then
+                    return 1
+                end
+                return 0
+            end
+            return redis.call('EXISTS', KEYS[2]) + 1"""),
+
+    /**
+     * Consume a user's server switch marker and data, returning the data if the user is switching servers.
+     * <p>
+     * Keys: server switch key, data key
+     */
+    CONSUME_HANDOFF("""
+            local switching = redis.call('GET', KEYS[1])
+            local data = redis.call('GET', KEYS[2])
+            redis.call('DEL', KEYS[1], KEYS[2])
+            if not switching then
+                return false
+            end
+            return data"""),
+
+    /**
+     * Remove a user's presence, if they are marked as online on the given server.
+     * <p>
+     * Keys: presence key. Args: server ID
+     */
+    CLEAR_PRESENCE("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0""");
+
+    private final byte[] source;
+
+    RedisScript(@NotNull String source) {
+        this.source = source.getBytes(StandardCharsets.UTF_8);
+    }
+
+    byte[] getSource() {
+        return source;
+    }
+
+}
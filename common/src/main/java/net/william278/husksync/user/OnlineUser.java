@@ -166,6 +166,17 @@ public abstract class OnlineUser extends User implements CommandUser, UserDataHo
         plugin.getDatabase().ensureUser(this);
     }
 
+    @NotNull
+    @Override
+    public DataSnapshot.Packed createSnapshot(@NotNull DataSnapshot.SaveCause saveCause) {
+        return getPlugin().getDirtyDataTracker().capture(getUuid(), this, saveCause).pack();
+    }
+
+    @Override
+    public void markDirty(@NotNull Identifier identifier) {
+        getPlugin().getDirtyDataTracker().markDirty(getUuid(), identifier);
+    }
+
     @NotNull
     @Override
     public Map<Identifier, Data> getCustomDataStore() {
@@ -41,7 +41,7 @@ public class DataSnapshotList {
     @NotNull
     private final PaginatedList paginatedList;
 
-    private DataSnapshotList(@NotNull List<DataSnapshot.Packed> snapshots, @NotNull User dataOwner,
+    private DataSnapshotList(@NotNull List<DataSnapshot.Header> snapshots, @NotNull User dataOwner,
                              @NotNull HuskSync plugin) {
         final AtomicInteger snapshotNumber = new AtomicInteger(1);
         this.paginatedList = PaginatedList.of(snapshots.stream()
@@ -57,7 +57,7 @@ public class DataSnapshotList {
                                         snapshot.getTimestamp().format(DateTimeFormatter
                                                 .ofPattern("MMM dd yyyy, HH:mm:ss.SSS")),
                                         snapshot.getSaveCause().getDisplayName(),
-                                        String.format("%.2fKiB", snapshot.getFileSize(plugin) / 1024f))
+                                        String.format("%.2fKiB", snapshot.getFileSize() / 1024f))
                                 .orElse("• " + snapshot.getId())).toList(),
                 plugin.getLocales().getBaseChatList(6)
                         .setHeaderFormat(plugin.getLocales()
@@ -69,15 +69,15 @@ public class DataSnapshotList {
     }
 
     /**
-     * Create a new {@link DataSnapshotList} from a list of {@link DataSnapshot}s
+     * Create a new {@link DataSnapshotList} from a list of {@link DataSnapshot.Header}s
      *
-     * @param snapshots The list of {@link DataSnapshot}s to display
+     * @param snapshots The list of {@link DataSnapshot.Header}s to display
      * @param user      The {@link User} who owns the {@link DataSnapshot}s
      * @param plugin    The instance of the plugin
      * @return A new {@link DataSnapshotList}, to be viewed with {@link #displayPage(CommandUser, int)}
      */
     @NotNull
-    public static DataSnapshotList create(@NotNull List<DataSnapshot.Packed> snapshots, @NotNull User user,
+    public static DataSnapshotList create(@NotNull List<DataSnapshot.Header> snapshots, @NotNull User user,
                                           @NotNull HuskSync plugin) {
         return new DataSnapshotList(snapshots, user, plugin);
     }
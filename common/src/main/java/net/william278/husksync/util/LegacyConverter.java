@@ -35,4 +35,23 @@ public abstract class LegacyConverter {
     @NotNull
     public abstract DataSnapshot.Packed convert(@NotNull byte[] data) throws DataAdapter.AdaptionException;
 
+    /**
+     * Convert a snapshot with an older format version, as read by the data adapter, to the current format
+     *
+     * @param snapshot The snapshot read by the data adapter
+     * @param data     The raw snapshot bytes
+     * @return The converted snapshot
+     * @throws DataAdapter.AdaptionException If the snapshot could not be converted
+     */
+    @NotNull
+    public DataSnapshot.Packed convert(@NotNull DataSnapshot.Packed snapshot,
+                                       @NotNull byte[] data) throws DataAdapter.AdaptionException {
+        // Format v4 and v5 snapshots differ only in how they are encoded, and binary item serializers still read
+        // their textual item data, so their data can be carried over
+        if (snapshot.getFormatVersion() == 4 || snapshot.getFormatVersion() == 5) {
+            return snapshot.upgradeFormatVersion();
+        }
+        return convert(data);
+    }
+
 }
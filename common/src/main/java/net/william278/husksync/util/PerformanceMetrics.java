@@ -0,0 +1,219 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks internal counters, gauges and timings used to diagnose synchronization performance.
+ * <p>
+ * Metrics are identified by dot-separated keys (e.g. {@code server_switch.push}) and can be viewed in-game
+ * with {@code /husksync status}.
+ */
+public class PerformanceMetrics {
+
+    // The number of most recent samples kept per timer for calculating percentiles
+    private static final int TIMER_SAMPLE_SIZE = 1024;
+
+    private final Map<String, LongAdder> counters;
+    private final Map<String, Timer> timers;
+    private final Map<String, LongSupplier> gauges;
+    private final Map<String, Long> ticks;
+
+    public PerformanceMetrics() {
+        this.counters = new ConcurrentSkipListMap<>();
+        this.timers = new ConcurrentSkipListMap<>();
+        this.gauges = new ConcurrentHashMap<>();
+        this.ticks = new HashMap<>();
+    }
+
+    /**
+     * Increment a counter by one
+     *
+     * @param key the counter key
+     */
+    public void increment(@NotNull String key) {
+        add(key, 1);
+    }
+
+    /**
+     * Add an amount to a counter
+     *
+     * @param key    the counter key
+     * @param amount the amount to add
+     */
+    public void add(@NotNull String key, long amount) {
+        counters.computeIfAbsent(key, k -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * Get the current value of a counter
+     *
+     * @param key the counter key
+     * @return the value of the counter, or {@code 0} if it has never been incremented
+     */
+    public long getCount(@NotNull String key) {
+        final LongAdder counter = counters.get(key);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Record the time elapsed since a {@link System#nanoTime()} timestamp against a timer
+     *
+     * @param key           the timer key
+     * @param startNanoTime the {@link System#nanoTime()} the operation started at
+     * @return the current {@link System#nanoTime()}, for timing consecutive phases of an operation
+     */
+    public long recordSince(@NotNull String key, long startNanoTime) {
+        final long now = System.nanoTime();
+        record(key, now - startNanoTime);
+        return now;
+    }
+
+    /**
+     * Record a duration against a timer
+     *
+     * @param key   the timer key
+     * @param nanos the duration, in nanoseconds
+     */
+    public void record(@NotNull String key, long nanos) {
+        timers.computeIfAbsent(key, k -> new Timer()).record(nanos);
+    }
+
+    /**
+     * Add a duration to the current tick's total for a timer, which is recorded as one sample when the tick is
+     * {@link #completeTick(String) completed}
+     *
+     * @param key   the timer key
+     * @param nanos the duration, in nanoseconds
+     * @return {@code true} if this is the first duration added to the tick, and so the tick should be completed later
+     */
+    public boolean addToTick(@NotNull String key, long nanos) {
+        synchronized (ticks) {
+            final Long total = ticks.get(key);
+            ticks.put(key, total == null ? nanos : total + nanos);
+            return total == null;
+        }
+    }
+
+    /**
+     * Complete the current tick for a timer, recording the durations added to it as one sample
+     *
+     * @param key the timer key
+     */
+    public void completeTick(@NotNull String key) {
+        final Long total;
+        synchronized (ticks) {
+            total = ticks.remove(key);
+        }
+        if (total != null) {
+            record(key, total);
+        }
+    }
+
+    /**
+     * Get a timer, if it has recorded any samples
+     *
+     * @param key the timer key
+     * @return the timer, if present
+     */
+    public Optional<Timer> getTimer(@NotNull String key) {
+        return Optional.ofNullable(timers.get(key));
+    }
+
+    /**
+     * Register a gauge, which is sampled whenever metrics are displayed
+     *
+     * @param key   the gauge key
+     * @param gauge a supplier of the gauge's current value
+     */
+    public void registerGauge(@NotNull String key, @NotNull LongSupplier gauge) {
+        gauges.put(key, gauge);
+    }
+
+    /**
+     * Get a formatted summary of all metrics, one line per metric
+     *
+     * @return the summary lines, sorted by key
+     */
+    @NotNull
+    public List<String> getSummary() {
+        final List<String> lines = new ArrayList<>();
+        new TreeMap<>(gauges).forEach((key, gauge) -> lines.add(String.format("%s: %d", key, gauge.getAsLong())));
+        counters.forEach((key, counter) -> lines.add(String.format("%s: %d", key, counter.sum())));
+        timers.forEach((key, timer) -> lines.add(String.format("%s: %s", key, timer)));
+        return lines;
+    }
+
+    /**
+     * A timer, tracking the total number of samples and a window of the most recent samples for percentiles
+     */
+    public static class Timer {
+
+        private final long[] samples = new long[TIMER_SAMPLE_SIZE];
+        private long count;
+
+        private synchronized void record(long nanos) {
+            samples[(int) (count++ % samples.length)] = nanos;
+        }
+
+        /**
+         * Get the total number of samples recorded by this timer
+         *
+         * @return the sample count
+         */
+        public synchronized long getCount() {
+            return count;
+        }
+
+        /**
+         * Get a percentile of the most recent samples recorded by this timer
+         *
+         * @param percentile the percentile to get, between {@code 0} and {@code 100}
+         * @return the percentile duration, in milliseconds
+         */
+        public synchronized double getPercentile(double percentile) {
+            final int size = (int) Math.min(count, samples.length);
+            if (size == 0) {
+                return 0d;
+            }
+            final long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            final int index = (int) Math.ceil((percentile / 100d) * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return String.format("n=%d, p50=%.2fms, p95=%.2fms, p99=%.2fms, max=%.2fms",
+                    getCount(), getPercentile(50), getPercentile(95), getPercentile(99), getPercentile(100));
+        }
+
+    }
+
+}
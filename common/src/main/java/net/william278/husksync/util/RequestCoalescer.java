@@ -0,0 +1,129 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.util;
+
+import net.william278.husksync.HuskSync;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent requests for the same key, so that they share a single in-flight request and its result.
+ * <p>
+ * Successful results are also reused for requests made within the configured
+ * {@link net.william278.husksync.config.Settings#getRequestCoalesceWindowMilliseconds() coalesce window} of the
+ * request completing. The number of coalesced requests is recorded against a counter in the plugin's
+ * {@link PerformanceMetrics}.
+ *
+ * @param <K> the request key type
+ * @param <V> the result type
+ */
+public class RequestCoalescer<K, V> {
+
+    // The number of requests to keep before expired results are purged
+    private static final int PURGE_THRESHOLD = 256;
+
+    private final HuskSync plugin;
+    private final String metric;
+    private final Map<K, Flight<V>> flights;
+
+    /**
+     * Create a request coalescer
+     *
+     * @param plugin the plugin instance
+     * @param metric the key of the counter to record coalesced requests against
+     */
+    public RequestCoalescer(@NotNull HuskSync plugin, @NotNull String metric) {
+        this.plugin = plugin;
+        this.metric = metric;
+        this.flights = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Make a request, sharing the result of an in-flight or recently completed request for the same key if there
+     * is one
+     *
+     * @param key     the request key
+     * @param request a supplier starting the request, called only if there is no request to share
+     * @return a future completing with the result of the request
+     */
+    @NotNull
+    public CompletableFuture<V> request(@NotNull K key, @NotNull Supplier<CompletableFuture<V>> request) {
+        final long now = System.nanoTime();
+        final long window = TimeUnit.MILLISECONDS.toNanos(plugin.getSettings().getRequestCoalesceWindowMilliseconds());
+        if (flights.size() > PURGE_THRESHOLD) {
+            flights.values().removeIf(flight -> flight.isExpired(now, window));
+        }
+
+        final Flight<V> created = new Flight<>();
+        final Flight<V> flight = flights.compute(key, (k, existing) ->
+                existing != null && !existing.isExpired(now, window) ? existing : created);
+        if (flight != created) {
+            plugin.getPerformanceMetrics().increment(metric);
+            return flight.future;
+        }
+
+        CompletableFuture<V> result;
+        try {
+            result = request.get();
+        } catch (Throwable e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, throwable) -> {
+            created.completedAt = System.nanoTime();
+            if (throwable != null || window <= 0) {
+                flights.remove(key, created);
+            }
+            if (throwable != null) {
+                created.future.completeExceptionally(throwable);
+                return;
+            }
+            created.future.complete(value);
+        });
+        return created.future;
+    }
+
+    /**
+     * Stop sharing the in-flight or recently completed request for a key, so that the next request for it is made
+     * afresh. Call this when the requested data changes
+     *
+     * @param key the request key
+     */
+    public void invalidate(@NotNull K key) {
+        flights.remove(key);
+    }
+
+    // A request, and when it completed
+    private static final class Flight<V> {
+
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private volatile long completedAt;
+
+        private boolean isExpired(long now, long window) {
+            return future.isDone() && now - completedAt > window;
+        }
+
+    }
+
+}
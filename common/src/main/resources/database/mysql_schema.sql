@@ -23,8 +23,57 @@ CREATE TABLE IF NOT EXISTS `%user_data_table%`
     `save_cause`   varchar(32) NOT NULL,
     `pinned`       boolean     NOT NULL DEFAULT FALSE,
     `data`         longblob    NOT NULL,
+    `data_size`    int         NOT NULL DEFAULT 0,
     `origin_server` varchar(32) NOT NULL,
+    `manifest`     boolean     NOT NULL DEFAULT FALSE,
     PRIMARY KEY (`version_uuid`, `player_uuid`),
+    INDEX `player_pinned_timestamp` (`player_uuid`, `pinned`, `timestamp`),
     FOREIGN KEY (`player_uuid`) REFERENCES `%users_table%` (`uuid`) ON DELETE CASCADE
+) CHARACTER SET utf8
+  COLLATE utf8_unicode_ci;
+
+# Create the locked map canvas table if it does not exist
+CREATE TABLE IF NOT EXISTS `%map_data_table%`
+(
+    `hash`    char(64)   NOT NULL,
+    `data`    mediumblob NOT NULL,
+    `created` datetime   NOT NULL,
+
+    PRIMARY KEY (`hash`)
+) CHARACTER SET utf8
+  COLLATE utf8_unicode_ci;
+
+# Create the table of canvases referenced by each snapshot if it does not exist
+CREATE TABLE IF NOT EXISTS `%map_references_table%`
+(
+    `version_uuid` char(36) NOT NULL,
+    `hash`         char(64) NOT NULL,
+
+    PRIMARY KEY (`version_uuid`, `hash`),
+    INDEX `hash` (`hash`),
+    FOREIGN KEY (`version_uuid`) REFERENCES `%user_data_table%` (`version_uuid`) ON DELETE CASCADE
+) CHARACTER SET utf8
+  COLLATE utf8_unicode_ci;
+
+# Create the content-addressed snapshot data section table if it does not exist
+CREATE TABLE IF NOT EXISTS `%data_sections_table%`
+(
+    `hash`    char(64) NOT NULL,
+    `data`    longblob NOT NULL,
+    `created` datetime NOT NULL,
+
+    PRIMARY KEY (`hash`)
+) CHARACTER SET utf8
+  COLLATE utf8_unicode_ci;
+
+# Create the table of data sections referenced by each snapshot if it does not exist
+CREATE TABLE IF NOT EXISTS `%data_section_references_table%`
+(
+    `version_uuid` char(36) NOT NULL,
+    `hash`         char(64) NOT NULL,
+
+    PRIMARY KEY (`version_uuid`, `hash`),
+    INDEX `hash` (`hash`),
+    FOREIGN KEY (`version_uuid`) REFERENCES `%user_data_table%` (`version_uuid`) ON DELETE CASCADE
 ) CHARACTER SET utf8
   COLLATE utf8_unicode_ci;
\ No newline at end of file
@@ -0,0 +1,127 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync;
+
+import com.google.gson.Gson;
+import net.william278.husksync.adapter.BinaryAdapter;
+import net.william278.husksync.adapter.DataAdapter;
+import net.william278.husksync.config.Settings;
+import net.william278.husksync.util.PerformanceMetrics;
+import net.william278.husksync.util.Task;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A minimal {@link HuskSync} implementation for unit tests, backed by a dynamic proxy.
+ * <p>
+ * It provides settings, performance metrics, Gson and a {@link BinaryAdapter}. Scheduled tasks are held until
+ * {@link #runScheduledTasks()} is called, rather than run. Other methods without a default implementation throw an
+ * {@link UnsupportedOperationException}.
+ */
+public final class TestPlugin implements InvocationHandler {
+
+    private final HuskSync plugin;
+    private final Settings settings;
+    private final PerformanceMetrics metrics;
+    private final Gson gson;
+    private final DataAdapter dataAdapter;
+    private final List<Runnable> scheduled;
+
+    public TestPlugin() {
+        this(new Settings());
+    }
+
+    public TestPlugin(@NotNull Settings settings) {
+        this.plugin = (HuskSync) Proxy.newProxyInstance(
+                HuskSync.class.getClassLoader(), new Class<?>[]{HuskSync.class}, this
+        );
+        this.settings = settings;
+        this.metrics = new PerformanceMetrics();
+        this.gson = plugin.createGson();
+        this.dataAdapter = new BinaryAdapter(plugin, false);
+        this.scheduled = new ArrayList<>();
+    }
+
+    @NotNull
+    public HuskSync getPlugin() {
+        return plugin;
+    }
+
+    @NotNull
+    public PerformanceMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Run the tasks scheduled so far, returning how many were run
+    public int runScheduledTasks() {
+        final List<Runnable> tasks;
+        synchronized (scheduled) {
+            tasks = new ArrayList<>(scheduled);
+            scheduled.clear();
+        }
+        tasks.forEach(Runnable::run);
+        return tasks.size();
+    }
+
+    private void schedule(@NotNull Runnable runnable) {
+        synchronized (scheduled) {
+            scheduled.add(runnable);
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        return switch (method.getName()) {
+            case "getPlugin" -> plugin;
+            case "getSettings" -> settings;
+            case "getPerformanceMetrics" -> metrics;
+            case "getGson" -> gson;
+            case "getDataAdapter" -> dataAdapter;
+            case "getAsyncTask" -> new Task.Async(plugin, (Runnable) args[0], (long) args[1]) {
+                @Override
+                public void run() {
+                    schedule(runnable);
+                }
+            };
+            case "getSyncTask" -> new Task.Sync(plugin, (Runnable) args[0], (long) args[1]) {
+                @Override
+                public void run() {
+                    schedule(runnable);
+                }
+            };
+            case "log" -> null;
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "toString" -> "TestPlugin";
+            default -> {
+                if (method.isDefault()) {
+                    yield InvocationHandler.invokeDefault(proxy, method, args);
+                }
+                throw new UnsupportedOperationException(method.getName() + " is not supported by the test plugin");
+            }
+        };
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.adapter;
+
+import net.william278.desertwell.util.Version;
+import net.william278.husksync.TestPlugin;
+import net.william278.husksync.data.DataSnapshot;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+@DisplayName("Binary Adapter Tests")
+public class BinaryAdapterTests {
+
+    private final TestPlugin plugin = new TestPlugin();
+
+    @ParameterizedTest(name = "Compressed: {0}")
+    @DisplayName("Test Binary Snapshot Round Trip")
+    @ValueSource(booleans = {false, true})
+    public void testRoundTrip(boolean compress) {
+        final BinaryAdapter adapter = new BinaryAdapter(plugin.getPlugin(), compress);
+        final DataSnapshot.Packed snapshot = createSnapshot();
+        final byte[] frame = adapter.toBytes(snapshot);
+        Assertions.assertArrayEquals(new byte[]{0x00, 'H', 'S', 'B', (byte) (compress ? 3 : 2)},
+                Arrays.copyOf(frame, 5));
+        assertSnapshotEquals(snapshot, adapter.fromBytes(frame, DataSnapshot.Packed.class));
+    }
+
+    @Test
+    @DisplayName("Test Reading Binary Snapshots Without Binary Sections")
+    public void testReadFrameWithoutBinarySections() {
+        final BinaryAdapter adapter = new BinaryAdapter(plugin.getPlugin(), false);
+        final DataSnapshot.Packed snapshot = createSnapshot(Map.of());
+
+        // Frames written before binary sections were introduced lack the flag and the binary section count
+        final byte[] frame = adapter.toBytes(snapshot);
+        final byte[] legacyFrame = Arrays.copyOf(frame, frame.length - Integer.BYTES);
+        legacyFrame[4] = 0;
+        assertSnapshotEquals(snapshot, adapter.fromBytes(legacyFrame, DataSnapshot.Packed.class));
+    }
+
+    @ParameterizedTest(name = "Compressed: {0}")
+    @DisplayName("Test Reading Legacy JSON Snapshots")
+    @ValueSource(booleans = {false, true})
+    public void testReadLegacySnapshot(boolean compress) {
+        final DataAdapter legacy = compress
+                ? new SnappyGsonAdapter(plugin.getPlugin())
+                : new GsonAdapter(plugin.getPlugin());
+        final DataSnapshot.Packed snapshot = createSnapshot();
+        final byte[] bytes = legacy.toBytes(snapshot);
+        final BinaryAdapter adapter = new BinaryAdapter(plugin.getPlugin(), compress);
+        assertSnapshotEquals(snapshot, adapter.fromBytes(bytes, DataSnapshot.Packed.class));
+        Assertions.assertEquals(legacy.bytesToString(bytes), adapter.bytesToString(bytes));
+    }
+
+    @ParameterizedTest(name = "Compressed: {0}")
+    @DisplayName("Test Converting Binary Snapshots To JSON")
+    @ValueSource(booleans = {false, true})
+    public void testBytesToString(boolean compress) {
+        final BinaryAdapter adapter = new BinaryAdapter(plugin.getPlugin(), compress);
+        final DataSnapshot.Packed snapshot = createSnapshot();
+        final String json = adapter.bytesToString(adapter.toBytes(snapshot));
+        assertSnapshotEquals(snapshot, adapter.fromJson(json, DataSnapshot.Packed.class));
+    }
+
+    @ParameterizedTest(name = "Compressed: {0}")
+    @DisplayName("Test Reading Truncated Binary Snapshots")
+    @ValueSource(booleans = {false, true})
+    public void testReadTruncatedFrame(boolean compress) {
+        final BinaryAdapter adapter = new BinaryAdapter(plugin.getPlugin(), compress);
+        final byte[] frame = adapter.toBytes(createSnapshot());
+        Assertions.assertThrows(DataAdapter.AdaptionException.class, () -> adapter.fromBytes(
+                Arrays.copyOf(frame, frame.length / 2), DataSnapshot.Packed.class
+        ));
+    }
+
+    @ParameterizedTest(name = "Compressed: {0}")
+    @DisplayName("Test Adapting Other Types")
+    @ValueSource(booleans = {false, true})
+    public void testOtherTypes(boolean compress) {
+        final BinaryAdapter adapter = new BinaryAdapter(plugin.getPlugin(), compress);
+        final TestAdaptable adaptable = new TestAdaptable("value");
+        Assertions.assertEquals(adaptable.value, adapter.fromBytes(adapter.toBytes(adaptable), TestAdaptable.class)
+                .value);
+        Assertions.assertThrows(DataAdapter.AdaptionException.class,
+                () -> adapter.fromBytes(adapter.toBytes(createSnapshot()), TestAdaptable.class));
+    }
+
+    private static void assertSnapshotEquals(@NotNull DataSnapshot.Packed expected,
+                                             @NotNull DataSnapshot.Packed actual) {
+        Assertions.assertEquals(expected.getId(), actual.getId());
+        Assertions.assertEquals(expected.isPinned(), actual.isPinned());
+        Assertions.assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        Assertions.assertEquals(expected.getSaveCause(), actual.getSaveCause());
+        Assertions.assertEquals(expected.getMinecraftVersion().toString(), actual.getMinecraftVersion().toString());
+        Assertions.assertEquals(expected.getPlatformType(), actual.getPlatformType());
+        Assertions.assertEquals(expected.getFormatVersion(), actual.getFormatVersion());
+        Assertions.assertEquals(expected.getOriginServer(), actual.getOriginServer());
+        Assertions.assertEquals(expected.getSerializedData(), actual.getSerializedData());
+        Assertions.assertEquals(
+                expected.getSerializedData().keySet().stream().toList(),
+                actual.getSerializedData().keySet().stream().toList()
+        );
+        Assertions.assertEquals(
+                expected.getSerializedBinaryData().keySet().stream().toList(),
+                actual.getSerializedBinaryData().keySet().stream().toList()
+        );
+        expected.getSerializedBinaryData().forEach((identifier, section) -> Assertions.assertArrayEquals(
+                section, actual.getSerializedBinaryData().get(identifier)
+        ));
+    }
+
+    @NotNull
+    private static DataSnapshot.Packed createSnapshot() {
+        final Map<String, byte[]> binaryData = new LinkedHashMap<>();
+        final byte[] inventory = new byte[2048];
+        Arrays.fill(inventory, 0, 1024, (byte) 0xa5);
+        binaryData.put("husksync:inventory", inventory);
+        binaryData.put("husksync:ender_chest", new byte[0]);
+        return createSnapshot(binaryData);
+    }
+
+    @NotNull
+    private static DataSnapshot.Packed createSnapshot(@NotNull Map<String, byte[]> binaryData) {
+        final Map<String, String> data = new LinkedHashMap<>();
+        data.put("husksync:health", "{\"health\":20.0,\"max_health\":20.0}");
+        data.put("husksync:advancements", "[{\"key\":\"minecraft:story/root\",\"name\":\"Ünïcödé ✓ 日本\"}]");
+        data.put("husksync:empty", "");
+        return DataSnapshot.Packed.from(
+                UUID.randomUUID(), true,
+                OffsetDateTime.of(2023, 9, 1, 12, 30, 15, 123456789, ZoneOffset.ofHours(2)),
+                DataSnapshot.SaveCause.WORLD_SAVE, data, binaryData,
+                Version.fromString("1.20.1"), "bukkit", 6, "survival"
+        );
+    }
+
+    // An adaptable type other than a snapshot
+    private static final class TestAdaptable implements Adaptable {
+
+        private String value;
+
+        @SuppressWarnings("unused")
+        private TestAdaptable() {
+        }
+
+        private TestAdaptable(@NotNull String value) {
+            this.value = value;
+        }
+
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+@DisplayName("Identifier Map Tests")
+public class IdentifierMapTests {
+
+    private IdentifierRegistry registry;
+    private Identifier first;
+    private Identifier second;
+    private Identifier third;
+    private Identifier unregistered;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new IdentifierRegistry();
+        first = registry.register(Identifier.from("husksync_test", "first"));
+        second = registry.register(Identifier.from("husksync_test", "second"));
+        third = registry.register(Identifier.from("husksync_test", "third"));
+        unregistered = Identifier.from("husksync_test", "unregistered");
+    }
+
+    @Test
+    @DisplayName("Test Putting, Getting & Removing Registered Identifiers")
+    public void testRegisteredEntries() {
+        final IdentifierMap<String> map = new IdentifierMap<>(registry);
+        Assertions.assertNull(map.put(second, "a"));
+        Assertions.assertEquals("a", map.put(second, "b"));
+        Assertions.assertEquals("b", map.get(second));
+        Assertions.assertEquals("b", map.get(Identifier.from("husksync_test", "second")));
+        Assertions.assertTrue(map.containsKey(second));
+        Assertions.assertFalse(map.containsKey(first));
+        Assertions.assertEquals(1, map.size());
+
+        Assertions.assertEquals("b", map.remove(second));
+        Assertions.assertNull(map.remove(second));
+        Assertions.assertNull(map.get(second));
+        Assertions.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test Putting, Getting & Removing Unregistered Identifiers")
+    public void testUnregisteredEntries() {
+        final IdentifierMap<String> map = new IdentifierMap<>(registry);
+        Assertions.assertNull(map.put(unregistered, "a"));
+        Assertions.assertEquals("a", map.put(unregistered, "b"));
+        Assertions.assertEquals("b", map.get(unregistered));
+        Assertions.assertTrue(map.containsKey(unregistered));
+        Assertions.assertEquals(1, map.size());
+
+        Assertions.assertEquals("b", map.remove(unregistered));
+        Assertions.assertNull(map.get(unregistered));
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertNull(map.get("husksync_test:unregistered"));
+    }
+
+    @Test
+    @DisplayName("Test Null Values Are Rejected")
+    public void testNullValues() {
+        final IdentifierMap<String> map = new IdentifierMap<>(registry);
+        Assertions.assertThrows(NullPointerException.class, () -> map.put(first, null));
+        Assertions.assertThrows(NullPointerException.class, () -> map.put(unregistered, null));
+
+        map.put(first, "a");
+        final Map.Entry<Identifier, String> entry = map.entrySet().iterator().next();
+        Assertions.assertThrows(NullPointerException.class, () -> entry.setValue(null));
+        entry.setValue("b");
+        Assertions.assertEquals("b", map.get(first));
+    }
+
+    @Test
+    @DisplayName("Test Iterating In Registration Order")
+    public void testIterationOrder() {
+        final IdentifierMap<String> map = new IdentifierMap<>(registry);
+        map.put(unregistered, "d");
+        map.put(third, "c");
+        map.put(first, "a");
+        map.put(second, "b");
+        Assertions.assertEquals(List.of(first, second, third, unregistered), new ArrayList<>(map.keySet()));
+        Assertions.assertEquals(List.of("a", "b", "c", "d"), new ArrayList<>(map.values()));
+    }
+
+    @Test
+    @DisplayName("Test Removing Entries While Iterating")
+    public void testIteratorRemoval() {
+        final IdentifierMap<String> map = new IdentifierMap<>(registry);
+        map.put(first, "a");
+        map.put(third, "c");
+        map.put(unregistered, "d");
+
+        // Remove the last registered entry, then the first unregistered entry after crossing into the fallback map
+        final Iterator<Map.Entry<Identifier, String>> iterator = map.entrySet().iterator();
+        Assertions.assertThrows(IllegalStateException.class, iterator::remove);
+        Assertions.assertEquals(first, iterator.next().getKey());
+        Assertions.assertEquals(third, iterator.next().getKey());
+        iterator.remove();
+        Assertions.assertThrows(IllegalStateException.class, iterator::remove);
+        Assertions.assertEquals(unregistered, iterator.next().getKey());
+        iterator.remove();
+        Assertions.assertFalse(iterator.hasNext());
+        Assertions.assertThrows(NoSuchElementException.class, iterator::next);
+
+        Assertions.assertEquals(Map.of(first, "a"), new HashMap<>(map));
+        Assertions.assertEquals(1, map.size());
+    }
+
+    @Test
+    @DisplayName("Test Putting Identifiers Registered After The Map Was Created")
+    public void testLateRegistration() {
+        final IdentifierMap<String> map = new IdentifierMap<>(registry);
+        map.put(first, "a");
+        final Identifier late = registry.register(Identifier.from("husksync_test", "late"));
+        Assertions.assertNull(map.get(late));
+        map.put(late, "e");
+        Assertions.assertEquals("e", map.get(late));
+        Assertions.assertEquals("a", map.get(first));
+        Assertions.assertEquals(List.of(first, late), new ArrayList<>(map.keySet()));
+        Assertions.assertEquals(2, map.size());
+    }
+
+    @Test
+    @DisplayName("Test Clearing The Map")
+    public void testClear() {
+        final IdentifierMap<String> map = new IdentifierMap<>(registry);
+        map.put(first, "a");
+        map.put(unregistered, "d");
+        map.clear();
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertFalse(map.entrySet().iterator().hasNext());
+        map.put(second, "b");
+        Assertions.assertEquals(Map.of(second, "b"), new HashMap<>(map));
+    }
+
+    @Test
+    @DisplayName("Test Equality With Other Maps")
+    public void testEquality() {
+        final IdentifierMap<String> map = new IdentifierMap<>(registry);
+        map.put(first, "a");
+        map.put(unregistered, "d");
+        Assertions.assertEquals(Map.of(first, "a", unregistered, "d"), map);
+        Assertions.assertEquals(Map.of(first, "a", unregistered, "d").hashCode(), map.hashCode());
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+@DisplayName("Identifier Registry Tests")
+public class IdentifierRegistryTests {
+
+    @Test
+    @DisplayName("Test Registering Identifiers In Order")
+    public void testRegistrationOrder() {
+        final IdentifierRegistry registry = new IdentifierRegistry();
+        final Identifier first = registry.register(Identifier.from("husksync_test", "first"));
+        final Identifier second = registry.register(Identifier.from("husksync_test", "second"));
+        Assertions.assertEquals(2, registry.size());
+        Assertions.assertEquals(0, registry.getOrdinal(first));
+        Assertions.assertEquals(1, registry.getOrdinal(second));
+        Assertions.assertSame(first, registry.get(0));
+        Assertions.assertSame(second, registry.get(1));
+        Assertions.assertNull(registry.get(2));
+        Assertions.assertNull(registry.get(-1));
+    }
+
+    @Test
+    @DisplayName("Test Registering Duplicate Identifiers")
+    public void testDuplicateRegistration() {
+        final IdentifierRegistry registry = new IdentifierRegistry();
+        final Identifier registered = registry.register(Identifier.from("husksync_test", "first"));
+        final Identifier duplicate = Identifier.from("husksync_test", "first");
+        Assertions.assertSame(registered, registry.register(duplicate));
+        Assertions.assertEquals(1, registry.size());
+        Assertions.assertEquals(0, registry.getOrdinal(duplicate));
+    }
+
+    @Test
+    @DisplayName("Test Getting Identifiers By Key")
+    public void testGetByKey() {
+        final IdentifierRegistry registry = new IdentifierRegistry();
+        final Identifier registered = registry.register(Identifier.from("husksync_test", "first"));
+        Assertions.assertEquals(Optional.of(registered), registry.get("husksync_test:first"));
+        Assertions.assertEquals(Optional.empty(), registry.get("husksync_test:second"));
+    }
+
+    @Test
+    @DisplayName("Test Ordinals Of Unregistered Identifiers")
+    public void testUnregisteredOrdinal() {
+        final IdentifierRegistry registry = new IdentifierRegistry();
+        Assertions.assertEquals(-1, registry.getOrdinal(Identifier.from("husksync_test", "first")));
+    }
+
+    @Test
+    @DisplayName("Test Ordinals Of Identifiers Registered In Another Registry")
+    public void testForeignOrdinal() {
+        final IdentifierRegistry registry = new IdentifierRegistry();
+        final IdentifierRegistry other = new IdentifierRegistry();
+        final Identifier first = registry.register(Identifier.from("husksync_test", "first"));
+        final Identifier second = registry.register(Identifier.from("husksync_test", "second"));
+
+        // The second identifier is given ordinal 0 by the other registry, which clashes with the first identifier
+        other.register(second);
+        Assertions.assertEquals(0, registry.getOrdinal(first));
+        Assertions.assertEquals(1, registry.getOrdinal(second));
+        Assertions.assertEquals(-1, other.getOrdinal(first));
+    }
+
+}
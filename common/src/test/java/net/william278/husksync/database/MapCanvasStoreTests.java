@@ -0,0 +1,124 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.database;
+
+import net.william278.desertwell.util.Version;
+import net.william278.husksync.data.DataSnapshot;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+@DisplayName("Map Canvas Store Tests")
+public class MapCanvasStoreTests {
+
+    private static final String HASH = "0123456789abcdef".repeat(4);
+
+    @Test
+    @DisplayName("Test Finding Canvas Hashes In Text NBT")
+    public void testFindTextHashes() {
+        final String items = "{items:[{id:\"minecraft:filled_map\",tag:{\"husksync:map_data\":{\""
+                             + MapCanvasStore.HASH_KEY + "\":\"" + HASH + "\"}}}]}";
+        Assertions.assertEquals(Set.of(HASH), MapCanvasStore.getReferencedHashes(createSnapshot(items)));
+    }
+
+    @Test
+    @DisplayName("Test Finding Canvas Hashes In Binary Slotted Items")
+    public void testFindBinaryHashes() throws IOException {
+        final byte[] map = writeGzipNbt(MapCanvasStore.HASH_KEY, HASH);
+        final byte[] other = writeGzipNbt("id", "minecraft:stone");
+        final byte[] items = encodeSlotted(null, other, map, null);
+        Assertions.assertEquals(Set.of(HASH), MapCanvasStore.getReferencedHashes(createBinarySnapshot(items)));
+    }
+
+    @Test
+    @DisplayName("Test Finding Canvas Hashes In A Binary Compound")
+    public void testFindBinaryCompoundHashes() throws IOException {
+        final byte[] items = writeGzipNbt(MapCanvasStore.HASH_KEY, HASH);
+        Assertions.assertEquals(Set.of(HASH), MapCanvasStore.getReferencedHashes(createBinarySnapshot(items)));
+    }
+
+    @Test
+    @DisplayName("Test No Canvas Hashes In Binary Items Without Maps")
+    public void testNoBinaryHashes() throws IOException {
+        final byte[] items = encodeSlotted(writeGzipNbt("id", "minecraft:stone"), null);
+        Assertions.assertTrue(MapCanvasStore.getReferencedHashes(createBinarySnapshot(items)).isEmpty());
+    }
+
+    @NotNull
+    private static DataSnapshot.Packed createSnapshot(@NotNull String inventory) {
+        return DataSnapshot.Packed.from(
+                UUID.randomUUID(), false, OffsetDateTime.now(), DataSnapshot.SaveCause.DISCONNECT,
+                Map.of("husksync:inventory", inventory), Version.fromString("1.20.1"), "bukkit", 6, "test"
+        );
+    }
+
+    @NotNull
+    private static DataSnapshot.Packed createBinarySnapshot(byte[] inventory) {
+        return DataSnapshot.Packed.from(
+                UUID.randomUUID(), false, OffsetDateTime.now(), DataSnapshot.SaveCause.DISCONNECT, Map.of(),
+                Map.of("husksync:inventory", inventory), Version.fromString("1.20.1"), "bukkit", 6, "test"
+        );
+    }
+
+    // Write a gzip-compressed binary NBT compound, holding a nested compound with a single string tag
+    private static byte[] writeGzipNbt(@NotNull String key, @NotNull String value) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeByte(10);
+            out.writeUTF("");
+            out.writeByte(10);
+            out.writeUTF("tag");
+            out.writeByte(8);
+            out.writeUTF(key);
+            out.writeUTF(value);
+            out.writeByte(0);
+            out.writeByte(0);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Encode item slots in the slotted binary format, followed by a held item slot
+    private static byte[] encodeSlotted(byte[]... slots) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(0x01);
+            out.writeInt(slots.length);
+            for (byte[] slot : slots) {
+                out.writeInt(slot == null ? 0 : slot.length);
+                if (slot != null) {
+                    out.write(slot);
+                }
+            }
+            out.writeInt(0);
+        }
+        return bytes.toByteArray();
+    }
+
+}
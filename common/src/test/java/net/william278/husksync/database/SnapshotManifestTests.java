@@ -0,0 +1,145 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.database;
+
+import net.william278.desertwell.util.Version;
+import net.william278.husksync.TestPlugin;
+import net.william278.husksync.adapter.DataAdapter;
+import net.william278.husksync.data.DataSnapshot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@DisplayName("Snapshot Manifest Tests")
+public class SnapshotManifestTests {
+
+    private static final Map<String, String> SECTIONS = Map.of(
+            "husksync:health", "{\"health\":20.0}",
+            "husksync:hunger", "{\"food_level\":20}"
+    );
+    private static final Map<String, byte[]> BINARY_SECTIONS = Map.of(
+            "husksync:inventory", new byte[]{0x01, 0x00, 0x00, 0x00, 0x00, (byte) 0xff}
+    );
+
+    @Test
+    @DisplayName("Test Hashing Content")
+    public void testContentHash() {
+        Assertions.assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                ContentHash.sha256(new byte[0]));
+        Assertions.assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                ContentHash.sha256("abc".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @DisplayName("Test Encoding & Resolving Manifests")
+    public void testEncodeAndResolve() throws DataAdapter.AdaptionException {
+        final TestPlugin plugin = new TestPlugin();
+        final DataSnapshot.Packed snapshot = createSnapshot(SECTIONS, BINARY_SECTIONS);
+        final SnapshotManifest manifest = SnapshotManifest.of(plugin.getPlugin(), snapshot);
+
+        // The stored manifest holds the hash of each section in place of its content
+        final DataSnapshot.Packed stored = plugin.getPlugin().getDataAdapter()
+                .fromBytes(manifest.stored(), DataSnapshot.Packed.class);
+        Assertions.assertEquals(manifest.hashes(), SnapshotManifest.getHashes(stored));
+        Assertions.assertEquals(SECTIONS.keySet(), stored.getSerializedData().keySet());
+        Assertions.assertEquals(BINARY_SECTIONS.keySet(), stored.getSerializedBinaryData().keySet());
+        SECTIONS.forEach((identifier, section) -> {
+            final byte[] bytes = section.getBytes(StandardCharsets.UTF_8);
+            Assertions.assertEquals(ContentHash.sha256(bytes), manifest.hashes().get(identifier));
+            Assertions.assertArrayEquals(bytes, manifest.getSection(identifier));
+        });
+        BINARY_SECTIONS.forEach((identifier, section) -> {
+            Assertions.assertEquals(ContentHash.sha256(section), manifest.hashes().get(identifier));
+            Assertions.assertArrayEquals(section, manifest.getSection(identifier));
+        });
+        Assertions.assertEquals(manifest.stored().length + SECTIONS.values().stream()
+                .mapToInt(section -> section.getBytes(StandardCharsets.UTF_8).length).sum()
+                + BINARY_SECTIONS.values().stream().mapToInt(section -> section.length).sum(), manifest.size());
+
+        // Resolving the stored manifest with the content of its sections restores the snapshot
+        final Map<String, byte[]> content = new LinkedHashMap<>();
+        manifest.hashes().forEach((identifier, hash) -> content.put(hash, manifest.getSection(identifier)));
+        final DataSnapshot.Packed resolved = SnapshotManifest.resolve(stored, content);
+        Assertions.assertEquals(SECTIONS, resolved.getSerializedData());
+        Assertions.assertEquals(BINARY_SECTIONS.keySet(), resolved.getSerializedBinaryData().keySet());
+        BINARY_SECTIONS.forEach((identifier, section) -> Assertions.assertArrayEquals(
+                section, resolved.getSerializedBinaryData().get(identifier)
+        ));
+        Assertions.assertEquals(snapshot.getId(), resolved.getId());
+        Assertions.assertEquals(snapshot.isPinned(), resolved.isPinned());
+        Assertions.assertEquals(snapshot.getTimestamp().toInstant(), resolved.getTimestamp().toInstant());
+        Assertions.assertEquals(snapshot.getSaveCause(), resolved.getSaveCause());
+        Assertions.assertEquals(snapshot.getOriginServer(), resolved.getOriginServer());
+    }
+
+    @Test
+    @DisplayName("Test Sharing Identical Sections")
+    public void testIdenticalSections() throws DataAdapter.AdaptionException {
+        final TestPlugin plugin = new TestPlugin();
+        final SnapshotManifest first = SnapshotManifest.of(plugin.getPlugin(),
+                createSnapshot(SECTIONS, BINARY_SECTIONS));
+        final SnapshotManifest second = SnapshotManifest.of(plugin.getPlugin(),
+                createSnapshot(SECTIONS, BINARY_SECTIONS));
+        Assertions.assertEquals(first.hashes(), second.hashes());
+    }
+
+    @Test
+    @DisplayName("Test Resolving Manifests With Missing Sections")
+    public void testMissingSection() {
+        final DataSnapshot.Packed stored = createSnapshot(Map.of("husksync:inventory", "0".repeat(64)), Map.of());
+        final DataAdapter.AdaptionException exception = Assertions.assertThrows(DataAdapter.AdaptionException.class,
+                () -> SnapshotManifest.resolve(stored, Map.of()));
+        Assertions.assertTrue(exception.getMessage().contains("husksync:inventory"));
+        Assertions.assertTrue(exception.getMessage().contains(stored.getId().toString()));
+    }
+
+    @Test
+    @DisplayName("Test Encoding & Decoding Sections")
+    public void testEncodeAndDecodeSections() throws IOException {
+        final byte[] section = ("{\"statistics\":\"" + "minecraft:jump ".repeat(256) + "\",\"name\":\"Ünïcödé ✓\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        for (boolean compress : List.of(false, true)) {
+            final byte[] encoded = SnapshotManifest.encodeSection(section, compress);
+            Assertions.assertEquals(compress ? 1 : 0, encoded[0]);
+            Assertions.assertArrayEquals(section, SnapshotManifest.decodeSection(encoded));
+        }
+        Assertions.assertTrue(SnapshotManifest.encodeSection(section, true).length
+                              < SnapshotManifest.encodeSection(section, false).length);
+        Assertions.assertArrayEquals(new byte[0],
+                SnapshotManifest.decodeSection(SnapshotManifest.encodeSection(new byte[0], true)));
+    }
+
+    private static DataSnapshot.Packed createSnapshot(Map<String, String> sections,
+                                                      Map<String, byte[]> binarySections) {
+        return DataSnapshot.Packed.from(
+                UUID.randomUUID(), false, OffsetDateTime.now(), DataSnapshot.SaveCause.DISCONNECT, sections,
+                binarySections, Version.fromString("1.20.1"), "bukkit", 6, "test"
+        );
+    }
+
+}
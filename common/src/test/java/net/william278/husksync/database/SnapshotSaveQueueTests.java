@@ -0,0 +1,299 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.database;
+
+import net.william278.desertwell.util.Version;
+import net.william278.husksync.HuskSync;
+import net.william278.husksync.TestPlugin;
+import net.william278.husksync.data.DataSnapshot;
+import net.william278.husksync.user.User;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.stream.IntStream;
+
+@DisplayName("Snapshot Save Queue Tests")
+public class SnapshotSaveQueueTests {
+
+    private TestPlugin plugin;
+    private TestDatabase database;
+    private SnapshotSaveQueue queue;
+    private User first;
+    private User second;
+
+    @BeforeEach
+    public void setUp() {
+        plugin = new TestPlugin();
+        database = new TestDatabase(plugin.getPlugin());
+        queue = new SnapshotSaveQueue(plugin.getPlugin(), database);
+        first = new User(UUID.randomUUID(), "first");
+        second = new User(UUID.randomUUID(), "second");
+    }
+
+    @Test
+    @DisplayName("Test Coalescing Queued Snapshots")
+    public void testCoalescing() {
+        final DataSnapshot.Packed superseded = createSnapshot(false);
+        final DataSnapshot.Packed latest = createSnapshot(false);
+        final DataSnapshot.Packed other = createSnapshot(false);
+        queue.queue(first, superseded);
+        queue.queue(first, latest);
+        queue.queue(second, other);
+        Assertions.assertEquals(2, queue.getQueuedCount());
+        Assertions.assertEquals(1, plugin.getMetrics().getCount("save_queue.coalesced"));
+        Assertions.assertTrue(database.written.isEmpty());
+
+        Assertions.assertEquals(1, plugin.runScheduledTasks());
+        Assertions.assertEquals(List.of(latest.getId(), other.getId()), database.written);
+        Assertions.assertEquals(0, queue.getQueuedCount());
+    }
+
+    @Test
+    @DisplayName("Test Keeping Queued Pinned Snapshots")
+    public void testPinnedSnapshots() {
+        final DataSnapshot.Packed pinned = createSnapshot(true);
+        final DataSnapshot.Packed superseded = createSnapshot(false);
+        final DataSnapshot.Packed latest = createSnapshot(false);
+        queue.queue(first, pinned);
+        queue.queue(first, superseded);
+        queue.queue(first, latest);
+        Assertions.assertEquals(2, queue.getQueuedCount());
+
+        plugin.runScheduledTasks();
+        Assertions.assertEquals(List.of(pinned.getId(), latest.getId()), database.written);
+    }
+
+    @Test
+    @DisplayName("Test Keeping Queued Death Snapshots")
+    public void testDeathSnapshots() {
+        final DataSnapshot.Packed death = createSnapshot(false, DataSnapshot.SaveCause.DEATH);
+        final DataSnapshot.Packed superseded = createSnapshot(false);
+        final DataSnapshot.Packed latest = createSnapshot(false);
+        final DataSnapshot.Packed disconnect = createSnapshot(false, DataSnapshot.SaveCause.DISCONNECT);
+        queue.queue(first, death);
+        queue.queue(first, superseded);
+        queue.queue(first, latest);
+        Assertions.assertEquals(2, queue.getQueuedCount());
+
+        // Death snapshots back up a player's drops, so a save on disconnect writes them first rather than dropping them
+        queue.save(first, disconnect);
+        Assertions.assertEquals(List.of(death.getId(), disconnect.getId()), database.written);
+        Assertions.assertEquals(0, queue.getQueuedCount());
+    }
+
+    @Test
+    @DisplayName("Test Saved Snapshots Superseding Queued Snapshots")
+    public void testSaveSupersedesQueued() {
+        final DataSnapshot.Packed superseded = createSnapshot(false);
+        final DataSnapshot.Packed pinned = createSnapshot(true);
+        final DataSnapshot.Packed other = createSnapshot(false);
+        final DataSnapshot.Packed saved = createSnapshot(false);
+        queue.queue(first, superseded);
+        queue.queue(first, pinned);
+        queue.queue(second, other);
+
+        // Queued pinned snapshots are written before the saved snapshot; unpinned ones are dropped
+        queue.save(first, saved);
+        Assertions.assertEquals(List.of(pinned.getId(), saved.getId()), database.written);
+        Assertions.assertEquals(1, queue.getQueuedCount());
+
+        plugin.runScheduledTasks();
+        Assertions.assertEquals(List.of(pinned.getId(), saved.getId(), other.getId()), database.written);
+        Assertions.assertEquals(0, queue.getQueuedCount());
+    }
+
+    @Test
+    @DisplayName("Test Flushing Queued Snapshots In Batches")
+    public void testBatches() {
+        final List<UUID> queued = IntStream.range(0, 130).mapToObj(i -> {
+            final DataSnapshot.Packed snapshot = createSnapshot(false);
+            queue.queue(new User(UUID.randomUUID(), "user" + i), snapshot);
+            return snapshot.getId();
+        }).toList();
+        Assertions.assertEquals(130, queue.getQueuedCount());
+
+        plugin.runScheduledTasks();
+        Assertions.assertEquals(queued.subList(0, 128), database.written);
+        Assertions.assertEquals(2, queue.getQueuedCount());
+        plugin.runScheduledTasks();
+        Assertions.assertEquals(queued, database.written);
+        Assertions.assertEquals(0, queue.getQueuedCount());
+    }
+
+    @Test
+    @DisplayName("Test Draining The Queue")
+    public void testDrain() {
+        final DataSnapshot.Packed queued = createSnapshot(false);
+        final DataSnapshot.Packed afterDrain = createSnapshot(false);
+        queue.queue(first, queued);
+        queue.drain();
+        Assertions.assertEquals(List.of(queued.getId()), database.written);
+
+        // Snapshots queued after the queue is drained are written immediately
+        queue.queue(first, afterDrain);
+        Assertions.assertEquals(List.of(queued.getId(), afterDrain.getId()), database.written);
+        plugin.runScheduledTasks();
+        Assertions.assertEquals(List.of(queued.getId(), afterDrain.getId()), database.written);
+        Assertions.assertEquals(0, queue.getQueuedCount());
+    }
+
+    @Test
+    @DisplayName("Test Draining Snapshots Awaiting Save Events")
+    public void testDrainAwaitingSaveEvents() {
+        final DataSnapshot.Packed queued = createSnapshot(false);
+        final DataSnapshot.Packed saved = createSnapshot(false);
+        database.queueSnapshot(first, queued);
+        database.addSnapshot(second, saved);
+        Assertions.assertTrue(database.written.isEmpty());
+
+        // Snapshots whose save event hasn't fired yet are still saved when the save queue is drained
+        database.drainSaveQueue();
+        Assertions.assertEquals(Set.of(queued.getId(), saved.getId()), Set.copyOf(database.written));
+    }
+
+    @NotNull
+    private static DataSnapshot.Packed createSnapshot(boolean pinned) {
+        return createSnapshot(pinned, DataSnapshot.SaveCause.WORLD_SAVE);
+    }
+
+    @NotNull
+    private static DataSnapshot.Packed createSnapshot(boolean pinned, @NotNull DataSnapshot.SaveCause cause) {
+        return DataSnapshot.Packed.from(
+                UUID.randomUUID(), pinned, OffsetDateTime.now(), cause, Map.of(),
+                Version.fromString("1.20.1"), "bukkit", 6, "test"
+        );
+    }
+
+    // A database recording the IDs of the snapshots written to it, in order
+    private static final class TestDatabase extends Database {
+
+        private final List<UUID> written = Collections.synchronizedList(new ArrayList<>());
+
+        private TestDatabase(@NotNull HuskSync plugin) {
+            super(plugin);
+        }
+
+        @Override
+        protected void addAndRotateSnapshot(@NotNull User user, @NotNull DataSnapshot.Packed snapshot) {
+            written.add(snapshot.getId());
+        }
+
+        @Override
+        protected boolean addAndRotateEncodedSnapshots(@NotNull List<EncodedSnapshot> snapshots,
+                                                       boolean rotateLatest) {
+            snapshots.forEach(encoded -> written.add(encoded.snapshot().getId()));
+            return true;
+        }
+
+        @Override
+        public void initialize() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void ensureUser(@NotNull User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<User> getUser(@NotNull UUID uuid) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<User> getUserByName(@NotNull String username) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<DataSnapshot.Packed> getLatestSnapshot(@NotNull User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected Optional<byte[]> getMapCanvas(@NotNull String hash) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void saveMapCanvases(@NotNull Map<String, byte[]> canvases) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public List<DataSnapshot.Packed> getAllSnapshots(@NotNull User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public List<DataSnapshot.Header> getSnapshotHeaders(@NotNull User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<DataSnapshot.Packed> getSnapshot(@NotNull User user, @NotNull UUID versionUuid) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void rotateSnapshots(@NotNull User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean deleteSnapshot(@NotNull User user, @NotNull UUID versionUuid) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void rotateLatestSnapshot(@NotNull User user, @NotNull OffsetDateTime within) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void createSnapshot(@NotNull User user, @NotNull DataSnapshot.Packed data) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateSnapshot(@NotNull User user, @NotNull DataSnapshot.Packed snapshot) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void wipeDatabase() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void terminate() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+
+@DisplayName("Redis Message Tests")
+public class RedisMessageTests {
+
+    private static final int HEADER_LENGTH = 34;
+
+    @ParameterizedTest(name = "{0}")
+    @DisplayName("Test Message Frame Round Trip")
+    @EnumSource(RedisMessageType.class)
+    public void testRoundTrip(RedisMessageType type) {
+        final UUID target = UUID.randomUUID();
+        final UUID correlationId = UUID.randomUUID();
+        final byte[] payload = "payload ✓".getBytes(StandardCharsets.UTF_8);
+        final byte[] frame = RedisMessage.create(type, target, correlationId, payload).toBytes();
+        Assertions.assertEquals(HEADER_LENGTH + payload.length, frame.length);
+
+        final RedisMessage message = RedisMessage.fromBytes(frame).orElseThrow();
+        Assertions.assertEquals(type, message.getType());
+        Assertions.assertEquals(target, message.getTargetUuid());
+        Assertions.assertEquals(correlationId, message.getCorrelationId());
+        Assertions.assertArrayEquals(payload, message.getPayload());
+    }
+
+    @Test
+    @DisplayName("Test Messages Without A Correlation ID Or Payload")
+    public void testNoCorrelationIdOrPayload() {
+        final UUID target = UUID.randomUUID();
+        final byte[] frame = RedisMessage.create(RedisMessageType.USER_DATA_READY, target, new byte[0]).toBytes();
+        Assertions.assertEquals(HEADER_LENGTH, frame.length);
+
+        final RedisMessage message = RedisMessage.fromBytes(frame).orElseThrow();
+        Assertions.assertEquals(target, message.getTargetUuid());
+        Assertions.assertEquals(new UUID(0L, 0L), message.getCorrelationId());
+        Assertions.assertEquals(0, message.getPayload().length);
+    }
+
+    @Test
+    @DisplayName("Test Frame Headers")
+    public void testHeader() {
+        final RedisMessage message = RedisMessage.create(RedisMessageType.RETURN_USER_DATA, UUID.randomUUID(),
+                UUID.randomUUID(), new byte[]{1, 2, 3});
+        final byte[] header = message.getHeader();
+        Assertions.assertEquals(HEADER_LENGTH, header.length);
+        Assertions.assertEquals(1, header[0]);
+        Assertions.assertEquals(RedisMessageType.RETURN_USER_DATA.ordinal(), header[1]);
+        Assertions.assertArrayEquals(header, Arrays.copyOf(message.toBytes(), HEADER_LENGTH));
+    }
+
+    @Test
+    @DisplayName("Test Reading Invalid Frames")
+    public void testInvalidFrames() {
+        final byte[] frame = RedisMessage.create(RedisMessageType.UPDATE_USER_DATA, UUID.randomUUID(),
+                new byte[]{1, 2, 3}).toBytes();
+        Assertions.assertEquals(Optional.empty(), RedisMessage.fromBytes(new byte[0]));
+        Assertions.assertEquals(Optional.empty(), RedisMessage.fromBytes(Arrays.copyOf(frame, HEADER_LENGTH - 1)));
+
+        final byte[] unknownVersion = frame.clone();
+        unknownVersion[0] = 2;
+        Assertions.assertEquals(Optional.empty(), RedisMessage.fromBytes(unknownVersion));
+
+        final byte[] unknownType = frame.clone();
+        unknownType[1] = (byte) RedisMessageType.values().length;
+        Assertions.assertEquals(Optional.empty(), RedisMessage.fromBytes(unknownType));
+        unknownType[1] = -1;
+        Assertions.assertEquals(Optional.empty(), RedisMessage.fromBytes(unknownType));
+
+        // JSON messages sent by servers running an older version aren't read as frames
+        final byte[] json = "{\"target_uuid\":\"00000000-0000-0000-0000-000000000000\",\"payload\":\"\"}"
+                .getBytes(StandardCharsets.UTF_8);
+        Assertions.assertEquals(Optional.empty(), RedisMessage.fromBytes(json));
+    }
+
+}
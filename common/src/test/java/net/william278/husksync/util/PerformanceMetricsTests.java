@@ -0,0 +1,131 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@DisplayName("Performance Metrics Tests")
+public class PerformanceMetricsTests {
+
+    @Test
+    @DisplayName("Test Timer Percentiles")
+    public void testPercentiles() {
+        final PerformanceMetrics metrics = new PerformanceMetrics();
+        IntStream.rangeClosed(1, 100).map(i -> 101 - i)
+                .forEach(millis -> metrics.record("test", TimeUnit.MILLISECONDS.toNanos(millis)));
+
+        final PerformanceMetrics.Timer timer = metrics.getTimer("test").orElseThrow();
+        Assertions.assertEquals(100, timer.getCount());
+        Assertions.assertEquals(1d, timer.getPercentile(0));
+        Assertions.assertEquals(1d, timer.getPercentile(1));
+        Assertions.assertEquals(50d, timer.getPercentile(50));
+        Assertions.assertEquals(95d, timer.getPercentile(95));
+        Assertions.assertEquals(99d, timer.getPercentile(99));
+        Assertions.assertEquals(100d, timer.getPercentile(100));
+    }
+
+    @Test
+    @DisplayName("Test Timer Percentiles Of A Single Sample")
+    public void testSingleSample() {
+        final PerformanceMetrics metrics = new PerformanceMetrics();
+        metrics.record("test", TimeUnit.MICROSECONDS.toNanos(1500));
+        final PerformanceMetrics.Timer timer = metrics.getTimer("test").orElseThrow();
+        Assertions.assertEquals(1.5d, timer.getPercentile(50));
+        Assertions.assertEquals(1.5d, timer.getPercentile(100));
+    }
+
+    @Test
+    @DisplayName("Test Timer Percentiles Use The Most Recent Samples")
+    public void testSampleWindow() {
+        final PerformanceMetrics metrics = new PerformanceMetrics();
+        for (int i = 0; i < 1024; i++) {
+            metrics.record("test", TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        for (int i = 0; i < 1024; i++) {
+            metrics.record("test", TimeUnit.MILLISECONDS.toNanos(2));
+        }
+        final PerformanceMetrics.Timer timer = metrics.getTimer("test").orElseThrow();
+        Assertions.assertEquals(2048, timer.getCount());
+        Assertions.assertEquals(2d, timer.getPercentile(50));
+        Assertions.assertEquals(2d, timer.getPercentile(100));
+    }
+
+    @Test
+    @DisplayName("Test Timers Totalling Durations Per Tick")
+    public void testTicks() {
+        final PerformanceMetrics metrics = new PerformanceMetrics();
+        Assertions.assertTrue(metrics.addToTick("test", TimeUnit.MILLISECONDS.toNanos(1)));
+        Assertions.assertFalse(metrics.addToTick("test", TimeUnit.MILLISECONDS.toNanos(2)));
+        Assertions.assertTrue(metrics.getTimer("test").isEmpty());
+
+        metrics.completeTick("test");
+        metrics.completeTick("test");
+        Assertions.assertTrue(metrics.addToTick("test", TimeUnit.MILLISECONDS.toNanos(4)));
+        metrics.completeTick("test");
+
+        final PerformanceMetrics.Timer timer = metrics.getTimer("test").orElseThrow();
+        Assertions.assertEquals(2, timer.getCount());
+        Assertions.assertEquals(3d, timer.getPercentile(50));
+        Assertions.assertEquals(4d, timer.getPercentile(100));
+    }
+
+    @Test
+    @DisplayName("Test Missing Timers")
+    public void testMissingTimer() {
+        Assertions.assertTrue(new PerformanceMetrics().getTimer("test").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test Counters")
+    public void testCounters() {
+        final PerformanceMetrics metrics = new PerformanceMetrics();
+        Assertions.assertEquals(0, metrics.getCount("test"));
+        metrics.increment("test");
+        metrics.add("test", 41);
+        Assertions.assertEquals(42, metrics.getCount("test"));
+    }
+
+    @Test
+    @DisplayName("Test Metric Summaries")
+    public void testSummary() {
+        final PerformanceMetrics metrics = new PerformanceMetrics();
+        Assertions.assertTrue(metrics.getSummary().isEmpty());
+        metrics.increment("b.counter");
+        metrics.add("a.counter", 3);
+        metrics.record("a.timer", TimeUnit.MILLISECONDS.toNanos(4));
+        metrics.registerGauge("z.gauge", () -> 7);
+        metrics.registerGauge("c.gauge", () -> 5);
+        Assertions.assertEquals(List.of(
+                "c.gauge: 5",
+                "z.gauge: 7",
+                "a.counter: 3",
+                "b.counter: 1",
+                "a.timer: " + metrics.getTimer("a.timer").orElseThrow()
+        ), metrics.getSummary());
+        Assertions.assertTrue(metrics.getTimer("a.timer").orElseThrow().toString().startsWith("n=1, p50=4"));
+    }
+
+}
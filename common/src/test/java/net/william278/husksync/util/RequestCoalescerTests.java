@@ -0,0 +1,152 @@
+/*
+ * This file is part of HuskSync, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.husksync.util;
+
+import net.william278.husksync.TestPlugin;
+import net.william278.husksync.config.Settings;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+@DisplayName("Request Coalescer Tests")
+public class RequestCoalescerTests {
+
+    private static final String METRIC = "coalesced.test";
+
+    @Test
+    @DisplayName("Test Sharing In-Flight Requests")
+    public void testInFlightRequests() {
+        final TestPlugin plugin = createPlugin(60_000);
+        final RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(plugin.getPlugin(), METRIC);
+        final CompletableFuture<String> request = new CompletableFuture<>();
+        final AtomicInteger requests = new AtomicInteger();
+
+        final CompletableFuture<String> first = coalescer.request("key", count(requests, () -> request));
+        final CompletableFuture<String> second = coalescer.request("key", count(requests, () -> request));
+        Assertions.assertFalse(first.isDone());
+        request.complete("value");
+        Assertions.assertEquals("value", first.join());
+        Assertions.assertEquals("value", second.join());
+        Assertions.assertEquals(1, requests.get());
+        Assertions.assertEquals(1, plugin.getMetrics().getCount(METRIC));
+    }
+
+    @Test
+    @DisplayName("Test Reusing Completed Requests Within The Window")
+    public void testCompletedRequests() {
+        final TestPlugin plugin = createPlugin(60_000);
+        final RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(plugin.getPlugin(), METRIC);
+        final AtomicInteger requests = new AtomicInteger();
+
+        Assertions.assertEquals("first", coalescer.request("key", count(requests,
+                () -> CompletableFuture.completedFuture("first"))).join());
+        Assertions.assertEquals("first", coalescer.request("key", count(requests,
+                () -> CompletableFuture.completedFuture("second"))).join());
+        Assertions.assertEquals("other", coalescer.request("other", count(requests,
+                () -> CompletableFuture.completedFuture("other"))).join());
+        Assertions.assertEquals(2, requests.get());
+    }
+
+    @Test
+    @DisplayName("Test Not Reusing Completed Requests Without A Window")
+    public void testNoWindow() {
+        final TestPlugin plugin = createPlugin(0);
+        final RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(plugin.getPlugin(), METRIC);
+        final AtomicInteger requests = new AtomicInteger();
+
+        coalescer.request("key", count(requests, () -> CompletableFuture.completedFuture("first"))).join();
+        Assertions.assertEquals("second", coalescer.request("key", count(requests,
+                () -> CompletableFuture.completedFuture("second"))).join());
+        Assertions.assertEquals(2, requests.get());
+        Assertions.assertEquals(0, plugin.getMetrics().getCount(METRIC));
+    }
+
+    @Test
+    @DisplayName("Test Not Reusing Failed Requests")
+    public void testFailedRequests() {
+        final TestPlugin plugin = createPlugin(60_000);
+        final RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(plugin.getPlugin(), METRIC);
+        final AtomicInteger requests = new AtomicInteger();
+
+        final CompletableFuture<String> failed = coalescer.request("key", count(requests,
+                () -> CompletableFuture.failedFuture(new IllegalStateException("failed"))));
+        Assertions.assertThrows(CompletionException.class, failed::join);
+        final CompletableFuture<String> thrown = coalescer.request("key", count(requests, () -> {
+            throw new IllegalStateException("thrown");
+        }));
+        Assertions.assertThrows(CompletionException.class, thrown::join);
+        Assertions.assertEquals("value", coalescer.request("key", count(requests,
+                () -> CompletableFuture.completedFuture("value"))).join());
+        Assertions.assertEquals(3, requests.get());
+    }
+
+    @Test
+    @DisplayName("Test Invalidating Requests")
+    public void testInvalidate() {
+        final TestPlugin plugin = createPlugin(60_000);
+        final RequestCoalescer<String, String> coalescer = new RequestCoalescer<>(plugin.getPlugin(), METRIC);
+        final AtomicInteger requests = new AtomicInteger();
+
+        coalescer.request("key", count(requests, () -> CompletableFuture.completedFuture("stale"))).join();
+        coalescer.invalidate("key");
+        Assertions.assertEquals("fresh", coalescer.request("key", count(requests,
+                () -> CompletableFuture.completedFuture("fresh"))).join());
+        Assertions.assertEquals(2, requests.get());
+
+        // Invalidating an in-flight request still completes the callers already sharing it
+        final CompletableFuture<String> request = new CompletableFuture<>();
+        coalescer.invalidate("key");
+        final CompletableFuture<String> inFlight = coalescer.request("key", count(requests, () -> request));
+        coalescer.invalidate("key");
+        final CompletableFuture<String> next = coalescer.request("key", count(requests,
+                () -> CompletableFuture.completedFuture("next")));
+        request.complete("in-flight");
+        Assertions.assertEquals("in-flight", inFlight.join());
+        Assertions.assertEquals("next", next.join());
+        Assertions.assertEquals(4, requests.get());
+    }
+
+    // Count the number of times a request is started
+    @NotNull
+    private static <V> Supplier<CompletableFuture<V>> count(@NotNull AtomicInteger requests,
+                                                            @NotNull Supplier<CompletableFuture<V>> request) {
+        return () -> {
+            requests.incrementAndGet();
+            return request.get();
+        };
+    }
+
+    @NotNull
+    private static TestPlugin createPlugin(int windowMillis) {
+        return new TestPlugin(new Settings() {
+            @Override
+            public int getRequestCoalesceWindowMilliseconds() {
+                return windowMillis;
+            }
+        });
+    }
+
+}